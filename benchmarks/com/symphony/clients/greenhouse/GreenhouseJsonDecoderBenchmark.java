@@ -0,0 +1,138 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.greenhouse;
+
+import com.symphony.models.Application;
+import com.symphony.models.Candidate;
+import com.symphony.models.Interview;
+import com.symphony.simulator.HarvestDataset;
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Decodes full 500 record pages of interviews, applications and candidates, with the streaming decoder
+ * and with the org.json path it replaced (whole body to a String, JSONArray, model JSONObject constructors)
+ * Run with mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.symphony.clients.greenhouse.GreenhouseJsonDecoderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class GreenhouseJsonDecoderBenchmark {
+  private static final int PAGE_SIZE = 500;
+
+  private byte[] interviewPage;
+  private byte[] applicationPage;
+  private byte[] candidatePage;
+
+  @Setup
+  public void setUpPages() throws IOException {
+    HarvestDataset dataset = new HarvestDataset(PAGE_SIZE * 2, 2, 42);
+
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    GreenhouseJsonEncoder.writeInterviews(stream, dataset.getInterviews().subList(0, PAGE_SIZE));
+    interviewPage = stream.toByteArray();
+
+    stream.reset();
+    GreenhouseJsonEncoder.writeApplications(stream,
+        dataset.getApplications().subList(0, Math.min(PAGE_SIZE, dataset.getApplications().size())));
+    applicationPage = stream.toByteArray();
+
+    stream.reset();
+    GreenhouseJsonEncoder.writeCandidates(stream,
+        dataset.getCandidates().subList(0, Math.min(PAGE_SIZE, dataset.getCandidates().size())));
+    candidatePage = stream.toByteArray();
+  }
+
+  @Benchmark
+  public int streamingInterviews(Blackhole blackhole) throws IOException {
+    return GreenhouseJsonDecoder.readInterviews(new ByteArrayInputStream(interviewPage), blackhole::consume);
+  }
+
+  @Benchmark
+  public int jsonObjectInterviews(Blackhole blackhole) {
+    JSONArray array = new JSONArray(new String(interviewPage, StandardCharsets.UTF_8));
+    for(int index = 0; index < array.length(); index++) {
+      blackhole.consume(new Interview(array.getJSONObject(index)));
+    }
+    return array.length();
+  }
+
+  @Benchmark
+  public int streamingApplications(Blackhole blackhole) throws IOException {
+    return GreenhouseJsonDecoder.readApplications(new ByteArrayInputStream(applicationPage), blackhole::consume);
+  }
+
+  @Benchmark
+  public int jsonObjectApplications(Blackhole blackhole) {
+    JSONArray array = new JSONArray(new String(applicationPage, StandardCharsets.UTF_8));
+    for(int index = 0; index < array.length(); index++) {
+      blackhole.consume(new Application(array.getJSONObject(index)));
+    }
+    return array.length();
+  }
+
+  @Benchmark
+  public int streamingCandidates(Blackhole blackhole) throws IOException {
+    return GreenhouseJsonDecoder.readCandidates(new ByteArrayInputStream(candidatePage), blackhole::consume);
+  }
+
+  @Benchmark
+  public int jsonObjectCandidates(Blackhole blackhole) {
+    JSONArray array = new JSONArray(new String(candidatePage, StandardCharsets.UTF_8));
+    for(int index = 0; index < array.length(); index++) {
+      blackhole.consume(new Candidate(array.getJSONObject(index)));
+    }
+    return array.length();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(GreenhouseJsonDecoderBenchmark.class.getSimpleName()).build()).run();
+  }
+}
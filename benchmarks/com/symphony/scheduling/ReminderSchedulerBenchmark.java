@@ -0,0 +1,166 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.scheduling;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.SimpleTrigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.StdSchedulerFactory;
+
+import java.util.Date;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Schedules and then cancels a million reminders, on the timing wheel and on the in-memory Quartz
+ * scheduler the bot used before it
+ * The wheel is never started - the benchmark thread drains it in place of the driver thread, so
+ * bucket placement and removal are measured just like Quartz's inline job store work
+ * Run with mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.symphony.scheduling.ReminderSchedulerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ReminderSchedulerBenchmark {
+  private static final int OPERATIONS = 1_000_000;
+  private static final long SPREAD_MILLIS = TimeUnit.DAYS.toMillis(14);
+
+  private String[] ids;
+  private Date[] dates;
+
+  private ReminderScheduler reminderScheduler;
+  private Scheduler quartzScheduler;
+
+  @Setup(Level.Trial)
+  public void setUpReminders() {
+    ids = new String[OPERATIONS];
+    dates = new Date[OPERATIONS];
+
+    //Interviews are spread over the coming two weeks, like the bot's schedule
+    Random random = new Random(42);
+    long now = System.currentTimeMillis();
+    for(int index = 0; index < OPERATIONS; index++) {
+      ids[index] = Integer.toString(index);
+      dates[index] = new Date(now + TimeUnit.MINUTES.toMillis(5) + (long) (random.nextDouble() * SPREAD_MILLIS));
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void setUpSchedulers() throws SchedulerException {
+    reminderScheduler = new ReminderScheduler(id -> { }, 1, TimeUnit.SECONDS, 512, 1);
+
+    //Same in-memory job store the bot ran Quartz with, under its own name so iterations don't share it
+    Properties properties = new Properties();
+    properties.setProperty("org.quartz.scheduler.instanceName", "benchmark-" + System.nanoTime());
+    properties.setProperty("org.quartz.threadPool.threadCount", "1");
+    properties.setProperty("org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore");
+    quartzScheduler = new StdSchedulerFactory(properties).getScheduler();
+    quartzScheduler.start();
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDownSchedulers() throws SchedulerException {
+    reminderScheduler.stop();
+    quartzScheduler.shutdown(false);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(OPERATIONS)
+  public boolean timingWheel() {
+    for(int index = 0; index < OPERATIONS; index++) {
+      reminderScheduler.schedule(ids[index], dates[index]);
+    }
+    reminderScheduler.transfer();
+
+    for(int index = 0; index < OPERATIONS; index++) {
+      reminderScheduler.cancel(ids[index]);
+    }
+    reminderScheduler.transfer();
+    return reminderScheduler.isScheduled(ids[0]);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(OPERATIONS)
+  public boolean quartz() throws SchedulerException {
+    //Same job and trigger the bot built for each interview
+    for(int index = 0; index < OPERATIONS; index++) {
+      JobDetail jobDetail = JobBuilder.newJob(NoopJob.class).withIdentity(ids[index], ids[index]).build();
+      SimpleTrigger trigger = TriggerBuilder.newTrigger()
+          .withIdentity("trigger" + ids[index], ids[index])
+          .startAt(dates[index])
+          .withSchedule(SimpleScheduleBuilder.simpleSchedule())
+          .build();
+
+      if(quartzScheduler.checkExists(jobDetail.getKey())) {
+        quartzScheduler.deleteJob(jobDetail.getKey());
+      }
+      quartzScheduler.scheduleJob(jobDetail, trigger);
+    }
+    for(int index = 0; index < OPERATIONS; index++) {
+      quartzScheduler.deleteJob(new JobKey(ids[index], ids[index]));
+    }
+    return quartzScheduler.checkExists(new JobKey(ids[0], ids[0]));
+  }
+
+  public static class NoopJob implements Job {
+    @Override
+    public void execute(JobExecutionContext context) {
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ReminderSchedulerBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -26,39 +26,52 @@ package com.symphony;
 
 import com.symphony.api.pod.model.Stream;
 import com.symphony.api.pod.model.User;
+import com.symphony.clients.greenhouse.CachingGreenhouseClient;
+import com.symphony.clients.greenhouse.GreenhouseCircuitOpenException;
 import com.symphony.clients.greenhouse.GreenhouseClient;
 import com.symphony.clients.greenhouse.IGreenhouseClient;
+import com.symphony.clients.symphony.CachingSymphonyClient;
 import com.symphony.clients.symphony.ISymphonyClient;
 import com.symphony.clients.symphony.SymphonyClient;
+import com.symphony.clients.symphony.SymphonyDatafeedConsumer;
+import com.symphony.clients.symphony.SymphonyMessageCoalescer;
+import com.symphony.clients.symphony.SymphonyMessageDispatcher;
+import com.symphony.clients.symphony.SymphonyPresence;
+import com.symphony.clients.symphony.SymphonyPresenceCache;
+import com.symphony.clients.symphony.SymphonyRateLimiter;
+import com.symphony.clients.symphony.SymphonyUserDirectory;
 import com.symphony.configurations.IConfigurationProvider;
 import com.symphony.configurations.greenhouse.IGreenhouseConfigurationProvider;
 import com.symphony.configurations.symphony.ISymphonyConfigurationProvider;
+import com.symphony.escalation.ReminderEscalator;
 import com.symphony.formatters.DateUtil;
 import com.symphony.formatters.GreenhouseMessageMLFormatter;
+import com.symphony.formatters.MessageML;
 import com.symphony.models.Application;
 import com.symphony.models.Candidate;
 import com.symphony.models.Interview;
 import com.symphony.models.Interviewer;
+import com.symphony.outbox.OutboxEntry;
+import com.symphony.outbox.ReminderOutbox;
+import com.symphony.scheduling.ReminderScheduler;
+import com.symphony.sync.InterviewSyncEngine;
+import com.symphony.sync.ScheduleReconciler;
+import com.symphony.webhooks.GreenhouseWebhookEvent;
 
-import org.quartz.Job;
-import org.quartz.JobBuilder;
-import org.quartz.JobDataMap;
-import org.quartz.JobDetail;
-import org.quartz.JobExecutionContext;
-import org.quartz.JobExecutionException;
-import org.quartz.Scheduler;
-import org.quartz.SchedulerException;
-import org.quartz.SimpleScheduleBuilder;
-import org.quartz.SimpleTrigger;
-import org.quartz.TriggerBuilder;
-import org.quartz.impl.StdSchedulerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Clock;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by ryan.dsouza on 7/21/16.
@@ -69,59 +82,267 @@ import java.util.List;
 public class SymphonyGreenhouseBot implements Runnable {
 
   private static final Logger LOG = LoggerFactory.getLogger(SymphonyGreenhouseBot.class);
-  private static final String INTERVIEW_ID_TAG = "interviewId";
-  private static final String BOT_TAG = "botClass";
-  private static final String TRIGGER_TAG = "trigger+";
 
-  private final Scheduler quartzScheduler;
+  /** Prefixes the reminder id of an interview's presence check, ahead of its notification */
+  private static final String PRESENCE_CHECK_PREFIX = "presence-check:";
+
+  /** Backoff between attempts at a reminder whose send failed, doubling up to the max */
+  private static final long MIN_RETRY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  private static final long MAX_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  private final ReminderScheduler reminderScheduler;
 
   private final IGreenhouseClient greenhouseClient;
   private final ISymphonyClient symphonyClient;
   private final IConfigurationProvider configurationProvider;
-
-  private final HashMap<String, User> symphonyUsers;
+  private final Clock clock;
+  private final InterviewSyncEngine interviewSyncEngine;
+  private final ScheduleReconciler scheduleReconciler;
+
+  private final SymphonyUserDirectory userDirectory;
+  private final SymphonyPresenceCache presenceCache;
+  private final SymphonyMessageDispatcher messageDispatcher;
+  private final SymphonyMessageCoalescer reminderCoalescer;
+  private final ReminderOutbox outbox;
+  private final ReminderEscalator reminderEscalator;
+  private final Map<Integer, Integer> failedAttempts;
+  private boolean userDirectoryWarmedUp;
 
   public SymphonyGreenhouseBot(IGreenhouseClient greenhouseClient,
       ISymphonyClient symphonyClient,
       IConfigurationProvider configurationProvider) {
+    this(greenhouseClient, symphonyClient, configurationProvider, Clock.systemUTC());
+  }
+
+  /**
+   * @param greenhouseClient
+   * @param symphonyClient
+   * @param configurationProvider
+   * @param clock the time every reminder is due against - set back when replaying a recording,
+   * so the recorded interviews are still upcoming
+   */
+  public SymphonyGreenhouseBot(IGreenhouseClient greenhouseClient,
+      ISymphonyClient symphonyClient,
+      IConfigurationProvider configurationProvider,
+      Clock clock) {
     this.greenhouseClient = greenhouseClient;
     this.symphonyClient = symphonyClient;
     this.configurationProvider = configurationProvider;
-    this.symphonyUsers = new HashMap<String, User>();
-
-    try {
-      this.quartzScheduler = StdSchedulerFactory.getDefaultScheduler();
-      this.quartzScheduler.start();
-    } catch (SchedulerException exception) {
-      throw new RuntimeException("Error instantiating Quartz scheduler", exception);
-    }
+    this.clock = clock;
+    this.userDirectory = new SymphonyUserDirectory(symphonyClient,
+        configurationProvider.minutesToRememberSymphonyUsers(),
+        configurationProvider.minutesToRememberMissingSymphonyUsers(), TimeUnit.MINUTES);
+    this.presenceCache = new SymphonyPresenceCache(symphonyClient,
+        configurationProvider.secondsToCachePresence(), TimeUnit.SECONDS);
+    SymphonyRateLimiter rateLimiter = new SymphonyRateLimiter(configurationProvider.maxMessagesPerSecond(),
+        configurationProvider.maxMessagesPerSecondPerStream(), configurationProvider.messageBurst());
+    this.messageDispatcher = new SymphonyMessageDispatcher(symphonyClient, rateLimiter,
+        configurationProvider.messageDispatcherThreads(), configurationProvider.messageDispatcherQueueSize());
+    this.reminderCoalescer = new SymphonyMessageCoalescer(messageDispatcher,
+        configurationProvider.secondsToCoalesceReminders(), TimeUnit.SECONDS, clock);
+    this.outbox = new ReminderOutbox(configurationProvider.getOutboxFile());
+
+    int minutesBetweenEscalations = configurationProvider.minutesBetweenEscalations();
+    this.reminderEscalator = minutesBetweenEscalations > 0 ?
+        new ReminderEscalator(messageDispatcher, minutesBetweenEscalations, TimeUnit.MINUTES, clock) : null;
+    this.interviewSyncEngine = new InterviewSyncEngine(greenhouseClient, configurationProvider, clock);
+    this.scheduleReconciler = new ScheduleReconciler();
+    this.failedAttempts = new ConcurrentHashMap<>();
+
+    this.reminderScheduler = new ReminderScheduler(this::handleScheduledInterview, 1, TimeUnit.SECONDS,
+        512, configurationProvider.reminderSchedulerThreads(), clock);
+    this.reminderScheduler.start();
 
     this.greenhouseClient.authenticate();
     LOG.debug("Authenticated Greenhouse Client");
 
     this.symphonyClient.authenticate();
     LOG.debug("Authenticated Symphony Client");
+
+    replayOutbox();
+
+    //Replies to reminders stop their escalation
+    if(reminderEscalator != null) {
+      reminderEscalator.setBotUserId(symphonyClient.getBotUserId());
+      new SymphonyDatafeedConsumer(symphonyClient, reminderEscalator::onMessages).start();
+      LOG.debug("Started reading the datafeed for acknowledgements");
+    }
   }
 
   public SymphonyGreenhouseBot(IGreenhouseConfigurationProvider greenhouseConfigurationProvider,
       ISymphonyConfigurationProvider symphonyConfigurationProvider,
       IConfigurationProvider configurationProvider) {
-    this(new GreenhouseClient(greenhouseConfigurationProvider),
-        new SymphonyClient(symphonyConfigurationProvider),configurationProvider);
+    this(new CachingGreenhouseClient(new GreenhouseClient(greenhouseConfigurationProvider),
+            greenhouseConfigurationProvider),
+        new CachingSymphonyClient(new SymphonyClient(symphonyConfigurationProvider), configurationProvider),
+        configurationProvider);
   }
 
   @Override
   public void run() {
-    this.checkGreenhouseForUpdatesAndPostInSymphony();
+    //An exception escaping would stop the executor from ever polling again
+    try {
+      this.checkGreenhouseForUpdatesAndPostInSymphony();
+    } catch (RuntimeException exception) {
+      LOG.error("Error checking Greenhouse for updates", exception);
+    }
+  }
+
+  /**
+   * Syncs the upcoming interviews and handles the ones that changed (sends notifications)
+   * The schedule is reconciled against what was scheduled, so only real changes are handled
+   */
+  private synchronized void checkGreenhouseForUpdatesAndPostInSymphony() {
+    long start = System.nanoTime();
+    interviewSyncEngine.sync();
+
+    //Before the first reminders go out, so none of them wait on looking up users
+    if(!userDirectoryWarmedUp) {
+      warmUpUserDirectory();
+      userDirectoryWarmedUp = true;
+    }
+
+    ScheduleReconciler.Reconciliation reconciliation =
+        scheduleReconciler.reconcile(interviewSyncEngine.getSchedule());
+    for(Integer interviewId : reconciliation.getCancelled()) {
+      unscheduleInterview(String.valueOf(interviewId));
+    }
+    for(Interview interview : reconciliation.getMoved()) {
+      updateEscalation(interview);
+    }
+
+    List<Interview> interviews = reconciliation.getChangedInterviews();
+    handleInterviews(interviews);
+    outbox.compactIfNeeded();
+
+    LOG.info("Handled " + interviews.size() + " changed interviews " + reconciliation + " in " +
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+  }
+
+  /**
+   * Sends the reminders a previous run logged but never got sent - unless their interview started
+   */
+  private void replayOutbox() {
+    Date now = new Date(clock.millis());
+    for(OutboxEntry entry : outbox.getPendingEntries()) {
+      if(entry.getStartDate() != null && entry.getStartDate().before(now)) {
+        LOG.info("Dropping reminder for an interview that already started " + entry);
+        outbox.markDone(entry);
+        continue;
+      }
+
+      if(!outbox.claim(entry)) {
+        continue;
+      }
+
+      LOG.info("Resending reminder " + entry);
+      messageDispatcher.dispatch(entry.getStreamId(), MessageML.fromString(entry.getMessageML()),
+          entry.getStartDate())
+          .whenComplete((message, exception) -> {
+            if(exception != null) {
+              //The first poll may have skipped the interview while this was in flight, so it
+              //goes back on the wheel - the retry finds the released entry and sends it again
+              LOG.error("Error resending reminder " + entry, exception);
+              retrySending(entry.getInterviewId(), outbox.release(entry));
+            } else {
+              outbox.markDone(entry);
+            }
+          });
+    }
+  }
+
+  /**
+   * Looks up the interviewers of every interview in the next few hours ahead of time
+   */
+  private void warmUpUserDirectory() {
+    Date warmUpUntil = new Date(clock.millis() +
+        TimeUnit.HOURS.toMillis(configurationProvider.hoursOfInterviewersToWarmUp()));
+
+    List<String> emailAddresses = new ArrayList<>(configurationProvider.getTestRecipientEmailAddresses());
+    for(Interview interview : interviewSyncEngine.getSchedule()) {
+      if(interview.getStartDate() != null && interview.getStartDate().before(warmUpUntil)) {
+        for(Interviewer interviewer : interview.getInterviewers()) {
+          emailAddresses.add(interviewer.getEmail());
+        }
+      }
+    }
+
+    userDirectory.warmUp(emailAddresses);
+  }
+
+  /**
+   * Handles an interview webhook as soon as it arrives, rather than on the next poll
+   * Merged into the sync engine's schedule so the next poll doesn't handle it again
+   * @param event
+   */
+  public synchronized void handleWebhookEvent(GreenhouseWebhookEvent event) {
+    String interviewId = String.valueOf(event.getInterviewId());
+
+    if(event.isDeletion()) {
+      interviewSyncEngine.remove(event.getInterviewId());
+      scheduleReconciler.remove(event.getInterviewId());
+      unscheduleInterview(interviewId);
+      return;
+    }
+
+    Interview interview = event.getInterview();
+    if(interview == null) {
+      //Whatever is cached is older than the event
+      if(greenhouseClient instanceof CachingGreenhouseClient) {
+        ((CachingGreenhouseClient) greenhouseClient).getInterviewCache().invalidate(interviewId);
+      }
+      interview = greenhouseClient.getScheduledInterview(interviewId);
+    }
+
+    if(interview != null && interviewSyncEngine.merge(interview)) {
+      ScheduleReconciler.Operation operation = scheduleReconciler.reconcile(interview);
+      if(operation == ScheduleReconciler.Operation.MOVE) {
+        updateEscalation(interview);
+      }
+      if(operation != ScheduleReconciler.Operation.NONE) {
+        LOG.debug("Handling interview from webhook " + event);
+        handleInterview(interview);
+      }
+    }
   }
 
   /**
-   * Gets all interviews starting now and handles them (sends notifications)
+   * Handles a batch of interviews - the ones due now are enriched together and sent right away
+   * @param interviews
    */
-  private void checkGreenhouseForUpdatesAndPostInSymphony() {
-    ArrayList<Interview> interviews = greenhouseClient.getScheduledInterviewsStartingAfterNow();
+  private void handleInterviews(List<Interview> interviews) {
+    List<Interview> interviewsToSendNow = new ArrayList<>();
+    List<Interview> interviewsDueSoon = new ArrayList<>();
+
+    //Reminders are handed to the coalescer up to its window early, and it holds them until due
+    int minutesToCoalesce =
+        (int) TimeUnit.SECONDS.toMinutes(configurationProvider.secondsToCoalesceReminders() + 59);
     for(Interview interview : interviews) {
-      handleInterview(interview);
+      if(isDueWithin(interview, minutesToCoalesce)) {
+        interviewsToSendNow.add(interview);
+      } else if(isDueWithin(interview, configurationProvider.minutesEarlierForOfflineInterviewers())) {
+        interviewsDueSoon.add(interview);
+      } else {
+        scheduleInterview(interview);
+      }
+    }
+
+    //Offline interviewers are reminded early, so the reminder is waiting when they sign in
+    //Interviews already inside that window are checked now - the rest get a presence check scheduled
+    if(!interviewsDueSoon.isEmpty()) {
+      Map<Long, SymphonyPresence> presences = getPresencesForInterviews(interviewsDueSoon);
+      for(Interview interview : interviewsDueSoon) {
+        if(hasUserWithPresence(interview, presences, SymphonyPresence.OFFLINE)) {
+          interviewsToSendNow.add(interview);
+        } else {
+          scheduleInterview(interview);
+        }
+      }
+    }
+
+    if(!interviewsToSendNow.isEmpty()) {
+      LOG.debug("Sending " + interviewsToSendNow.size() + " interviews now");
+      handleSendingMessages(interviewsToSendNow);
     }
   }
 
@@ -130,140 +351,356 @@ public class SymphonyGreenhouseBot implements Runnable {
    * @param interview
    */
   private void handleInterview(Interview interview) {
+    handleInterviews(Collections.singletonList(interview));
+  }
 
-    //Get our stream of users
-    List<User> users = getUsersForInterview(interview);
-    Stream stream = symphonyClient.getStreamWithUsers(users);
-
-    Date timeNow = new Date();
-    Date interviewDate = interview.getStartDate();
+  /**
+   * Returns true if the interview starts within the next X minutes and needs its message now
+   * @param interview
+   * @return
+   */
+  private boolean isDueNow(Interview interview) {
+    return isDueWithin(interview, 0);
+  }
 
+  /**
+   * Returns whether the interview's reminder is due within extra minutes from now
+   * @param interview
+   * @param extraMinutes
+   * @return
+   */
+  private boolean isDueWithin(Interview interview, int extraMinutes) {
     int minutesBeforeToSendMessage = configurationProvider.minutesBeforeInterviewToSendMessage();
-    int timeUntilInterview = DateUtil.getMinutesBetweenDates(timeNow, interviewDate);
+    int timeUntilInterview = DateUtil.getMinutesBetweenDates(new Date(clock.millis()), interview.getStartDate());
+    return timeUntilInterview >= 0 && timeUntilInterview <= minutesBeforeToSendMessage + 1 + extraMinutes;
+  }
+
+  /**
+   * Looks up the presence of everyone reminded about the interviews, in one request
+   * @param interviews
+   * @return presences keyed by Symphony user id
+   */
+  private Map<Long, SymphonyPresence> getPresencesForInterviews(List<Interview> interviews) {
+    resolveSymphonyUsers(interviews);
+
+    Set<Long> userIds = new HashSet<>();
+    for(Interview interview : interviews) {
+      for(User user : getUsersForInterview(interview)) {
+        if(user != null) {
+          userIds.add(user.getId());
+        }
+      }
+    }
+
+    try {
+      return presenceCache.getPresences(userIds);
+    } catch (RuntimeException exception) {
+      //Presence only tunes delivery, so reminders still go out without it
+      LOG.error("Error getting presence for " + userIds.size() + " users", exception);
+      return new HashMap<>();
+    }
+  }
+
+  /**
+   * Returns whether anyone reminded about the interview has the presence
+   * @param interview
+   * @param presences
+   * @param presence
+   * @return
+   */
+  private boolean hasUserWithPresence(Interview interview, Map<Long, SymphonyPresence> presences,
+      SymphonyPresence presence) {
+    for(User user : getUsersForInterview(interview)) {
+      if(user != null && presences.get(user.getId()) == presence) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Adds the interview to the scheduler to send X minutes before it starts
+   * Interviews that already happened are ignored
+   * @param interview
+   */
+  private void scheduleInterview(Interview interview) {
+    Date interviewDate = interview.getStartDate();
 
     //If the interview already happened
-    if(timeUntilInterview < 0) {
+    if(DateUtil.getMinutesBetweenDates(new Date(clock.millis()), interviewDate) < 0) {
+      failedAttempts.remove(interview.getId());
       return;
     }
-    //If less than X minutes, send the message now
-    else if(timeUntilInterview <= minutesBeforeToSendMessage + 1) {
-      LOG.debug("Sending interview now " + interview);
-      handleSendingMessage(interview, stream.getId());
-    }
-    //Otherwise, add it to the scheduler to send 30 minutes before the interview
-    else {
-      Date dateToSendMessageAt =
-          DateUtil.getDateForMinutesBefore(interviewDate, minutesBeforeToSendMessage + 1);
-
-      JobDetail interviewJobDetail = JobBuilder.newJob(GreenhouseMessageSender.class)
-          .withIdentity(interview.getIdString(), interview.getIdString()).build();
-      interviewJobDetail.getJobDataMap().put(INTERVIEW_ID_TAG, interview.getIdString());
-      interviewJobDetail.getJobDataMap().put(BOT_TAG, this);
-
-      SimpleTrigger interviewJobTrigger = TriggerBuilder.newTrigger()
-          .withIdentity(TRIGGER_TAG + interview.getIdString(), interview.getIdString())
-          .startAt(dateToSendMessageAt)
-          .withSchedule(SimpleScheduleBuilder.simpleSchedule())
-          .build();
-
-      try {
-        //If we've already scheduled a job
-        if(quartzScheduler.checkExists(interviewJobDetail.getKey())) {
-
-          //Get the job
-          JobDataMap jobDataMap =
-              quartzScheduler.getJobDetail(interviewJobDetail.getKey()).getJobDataMap();
-          SymphonyGreenhouseBot instance = (SymphonyGreenhouseBot) jobDataMap.get(BOT_TAG);
-          String interviewId = jobDataMap.getString(INTERVIEW_ID_TAG);
-
-          if(interviewId != null && instance != null) {
-            Interview oldInterview = instance.greenhouseClient.getScheduledInterview(interviewId);
-
-            //If the start dates aren't the same, delete it so it can be replaced
-            if(!oldInterview.getStartDate().equals(oldInterview)) {
-              LOG.debug("Replacing " + interviewJobDetail.getKey());
-              quartzScheduler.deleteJob(interviewJobDetail.getKey());
-            }
-          }
-        }
 
-        //Add our new job to the scheduler
-        quartzScheduler.scheduleJob(interviewJobDetail, interviewJobTrigger);
-        LOG.debug("Scheduling interview notification for later " +
-            dateToSendMessageAt + "\t" + interview);
-      } catch (SchedulerException exception) {
-        LOG.error("Error scheduling job", exception);
-      }
+    Date dateToSendMessageAt = getSendDate(interview);
+
+    //Handed over a coalescing window early, so reminders due together go out as one message on time
+    Date dateToHandOverAt = new Date(dateToSendMessageAt.getTime() -
+        TimeUnit.SECONDS.toMillis(configurationProvider.secondsToCoalesceReminders()));
+
+    //Replaces the interview's earlier notification, if it had one
+    if(reminderScheduler.schedule(interview.getIdString(), dateToHandOverAt)) {
+      LOG.debug("Rescheduling interview notification for later " +
+          dateToSendMessageAt + "\t" + interview);
+    } else {
+      LOG.debug("Scheduling interview notification for later " +
+          dateToSendMessageAt + "\t" + interview);
+    }
+
+    //Checks ahead of the notification whether to send it early, for offline interviewers
+    int minutesEarlier = configurationProvider.minutesEarlierForOfflineInterviewers();
+    Date dateToCheckPresenceAt = DateUtil.getDateForMinutesBefore(dateToSendMessageAt, minutesEarlier);
+    if(minutesEarlier > 0 && dateToCheckPresenceAt.after(new Date(clock.millis()))) {
+      reminderScheduler.schedule(PRESENCE_CHECK_PREFIX + interview.getIdString(), dateToCheckPresenceAt);
+    } else {
+      reminderScheduler.cancel(PRESENCE_CHECK_PREFIX + interview.getIdString());
     }
   }
 
   /**
-   * Returns the Users to notify for an interview
+   * Returns when the interview's notification is due to be sent
    * @param interview
    * @return
    */
-  private List<User> getUsersForInterview(Interview interview) {
-    List<User> users = new ArrayList<>();
+  private Date getSendDate(Interview interview) {
+    return DateUtil.getDateForMinutesBefore(interview.getStartDate(),
+        configurationProvider.minutesBeforeInterviewToSendMessage() + 1);
+  }
 
-    for(Interviewer interviewer : interview.getInterviewers()) {
-      String email = interviewer.getEmail();
-      User symphonyUser = this.symphonyUsers.get(email);
-      if(symphonyUser == null) {
-        symphonyUser = symphonyClient.getUserForEmailAddress(email);
-        this.symphonyUsers.put(email, symphonyUser);
-        //users.add(symphonyUser);
-      }
+  /**
+   * Removes the scheduled notification for an interview, if there is one
+   * @param interviewId
+   */
+  private void unscheduleInterview(String interviewId) {
+    if(reminderScheduler.cancel(interviewId)) {
+      LOG.debug("Unscheduled interview notification for " + interviewId);
     }
+    reminderScheduler.cancel(PRESENCE_CHECK_PREFIX + interviewId);
+    failedAttempts.remove(Integer.parseInt(interviewId));
+    if(reminderEscalator != null) {
+      reminderEscalator.cancel(Integer.parseInt(interviewId));
+    }
+  }
 
-    //TODO: Remove - just for testing
-    users.add(symphonyClient.getUserForEmailAddress("christiane@symphony.com"));
-    users.add(symphonyClient.getUserForEmailAddress("ryan.dsouza@symphony.com"));
+  /**
+   * Brings the escalation of a moved interview up to date - an interview moved out of the reminder
+   * window stops escalating until its new reminder goes out
+   * @param interview
+   */
+  private void updateEscalation(Interview interview) {
+    if(reminderEscalator == null) {
+      return;
+    }
 
-    return users;
+    if(isDueNow(interview)) {
+      reminderEscalator.replace(interview);
+    } else {
+      reminderEscalator.cancel(interview.getId());
+    }
+  }
+
+  /**
+   * Handles an interview whose notification came due, with its latest details from the schedule
+   * The schedule is kept current by polls and webhooks, so this makes no Greenhouse calls
+   * @param interviewId
+   */
+  private void handleScheduledInterview(String interviewId) {
+    if(interviewId.startsWith(PRESENCE_CHECK_PREFIX)) {
+      checkPresenceBeforeNotification(interviewId.substring(PRESENCE_CHECK_PREFIX.length()));
+      return;
+    }
+
+    Interview interview = interviewSyncEngine.getInterview(Integer.parseInt(interviewId));
+    if(interview != null) {
+      handleInterview(interview);
+    } else {
+      LOG.info("Dropping notification for interview no longer in the schedule: " + interviewId);
+    }
+  }
+
+  /**
+   * Sends an interview's notification now if any of its interviewers is offline, so it is waiting
+   * when they sign in - the notification scheduled for later is then skipped as already sent
+   * @param interviewId
+   */
+  private void checkPresenceBeforeNotification(String interviewId) {
+    Interview interview = interviewSyncEngine.getInterview(Integer.parseInt(interviewId));
+    if(interview == null || !isDueWithin(interview, configurationProvider.minutesEarlierForOfflineInterviewers())) {
+      return;
+    }
+
+    List<Interview> interviews = Collections.singletonList(interview);
+    if(hasUserWithPresence(interview, getPresencesForInterviews(interviews), SymphonyPresence.OFFLINE)) {
+      LOG.debug("Sending notification early for offline interviewers " + interview);
+      handleSendingMessages(interviews);
+    }
   }
 
   /**
-   * Gets the Application and Candidate for the Interview, sends to Symphony right away
+   * Returns the Users to notify for an interview
    * @param interview
-   * @param streamId
+   * @return
    */
-  private void handleSendingMessage(Interview interview, String streamId) {
+  private List<User> getUsersForInterview(Interview interview) {
+    List<User> users = new ArrayList<>();
+
+    resolveSymphonyUsers(Collections.singletonList(interview));
 
-    //Greenhouse Application
-    Application application =
-        greenhouseClient.getApplication(String.valueOf(interview.getApplicationId()));
+    //Test recipients stand in for the interviewers when configured
+    List<String> emailAddresses = configurationProvider.getTestRecipientEmailAddresses();
+    if(emailAddresses.isEmpty()) {
+      emailAddresses = new ArrayList<>();
+      for(Interviewer interviewer : interview.getInterviewers()) {
+        emailAddresses.add(interviewer.getEmail());
+      }
+    }
 
-    //Greenhouse Candidate
-    Candidate candidate =
-        greenhouseClient.getCandidate(String.valueOf(application.getCandidateId()));
+    for(String emailAddress : emailAddresses) {
+      User symphonyUser = this.userDirectory.get(emailAddress);
+      if(symphonyUser != null) {
+        users.add(symphonyUser);
+      }
+    }
 
-    //Formatter for ML
-    GreenhouseMessageMLFormatter greenhouseMessageMLFormatter =
-        new GreenhouseMessageMLFormatter(interview, candidate, application);
+    return users;
+  }
 
-    symphonyClient.sendMessage(streamId, greenhouseMessageMLFormatter.getMessageML());
+  /**
+   * Loads the Users for every email address in the interviews into the directory
+   * Email addresses are deduplicated across the interviews and the unknown ones resolved in one batch
+   * @param interviews
+   */
+  private void resolveSymphonyUsers(List<Interview> interviews) {
+    Set<String> emailAddresses = new HashSet<>(configurationProvider.getTestRecipientEmailAddresses());
+    for(Interview interview : interviews) {
+      for(Interviewer interviewer : interview.getInterviewers()) {
+        emailAddresses.add(interviewer.getEmail());
+      }
+    }
+    this.userDirectory.getAll(emailAddresses);
   }
 
   /**
-   * Job for sending a message regarding an interview at a later time
+   * Gets the Applications and Candidates for the Interviews in two batches, sends to Symphony right away
+   * While Greenhouse's circuit is open the whole batch goes back on the wheel to try again later
+   * @param interviews
    */
-  public static class GreenhouseMessageSender implements Job {
+  private void handleSendingMessages(List<Interview> interviews) {
+    Map<Integer, Application> applications;
+    Map<Integer, Candidate> candidates;
+    try {
+      //Greenhouse Applications
+      Set<Integer> applicationIds = new HashSet<>();
+      for(Interview interview : interviews) {
+        applicationIds.add(interview.getApplicationId());
+      }
+      applications = greenhouseClient.getApplications(applicationIds);
 
-    public GreenhouseMessageSender() {
+      //Greenhouse Candidates
+      Set<Integer> candidateIds = new HashSet<>();
+      for(Application application : applications.values()) {
+        candidateIds.add(application.getCandidateId());
+      }
+      candidates = greenhouseClient.getCandidates(candidateIds);
+    } catch (GreenhouseCircuitOpenException exception) {
+      LOG.error("Greenhouse unavailable, retrying " + interviews.size() + " reminders later", exception);
+      for(Interview interview : interviews) {
+        retrySending(interview);
+      }
+      return;
     }
 
-    @Override
-    public void execute(JobExecutionContext context) throws JobExecutionException {
-      JobDataMap jobDataMap = context.getJobDetail().getJobDataMap();
-      SymphonyGreenhouseBot instance = (SymphonyGreenhouseBot) jobDataMap.get(BOT_TAG);
-      String interviewId = jobDataMap.getString(INTERVIEW_ID_TAG);
+    //Symphony Users and their presence
+    Map<Long, SymphonyPresence> presences = getPresencesForInterviews(interviews);
 
-      if(interviewId != null && instance != null) {
-        Interview interview = instance.greenhouseClient.getScheduledInterview(interviewId);
-        instance.handleInterview(interview);
-      } else {
-        instance.LOG.error("Interview id or instance is null: " + jobDataMap);
+    List<Interview> interviewsToSend = new ArrayList<>();
+    List<GreenhouseMessageMLFormatter> formatters = new ArrayList<>();
+    List<OutboxEntry> reminders = new ArrayList<>();
+    for(Interview interview : interviews) {
+      Application application = applications.get(interview.getApplicationId());
+      Candidate candidate = application == null ? null : candidates.get(application.getCandidateId());
+      if(candidate == null) {
+        LOG.error("Missing application or candidate for interview: " + interview);
+        retrySending(interview);
+        continue;
+      }
+
+      //Get our stream of users - the pod failing to answer is retried like a failed send
+      List<User> users = getUsersForInterview(interview);
+      if(users.isEmpty()) {
+        LOG.error("No Symphony users for interview: " + interview);
+        retrySending(interview);
+        continue;
+      }
+      Stream stream = symphonyClient.getStreamWithUsers(users);
+      if(stream == null) {
+        LOG.error("Missing stream for interview: " + interview);
+        retrySending(interview);
+        continue;
       }
+
+      //Formatter for ML
+      GreenhouseMessageMLFormatter greenhouseMessageMLFormatter =
+          new GreenhouseMessageMLFormatter(interview, candidate, application);
+
+      interviewsToSend.add(interview);
+      formatters.add(greenhouseMessageMLFormatter);
+      reminders.add(new OutboxEntry(-1, interview.getId(), interview.getStartDate(),
+          configurationProvider.minutesBeforeInterviewToSendMessage(), stream.getId(),
+          greenhouseMessageMLFormatter.getMessageML().toString()));
     }
+
+    //Logged before sending, so they are sent again after a crash - but never twice
+    //The whole batch shares one fsync, rather than one per reminder
+    List<OutboxEntry> outboxEntries = outbox.appendAll(reminders);
+
+    for(int index = 0; index < outboxEntries.size(); index++) {
+      Interview interview = interviewsToSend.get(index);
+      GreenhouseMessageMLFormatter greenhouseMessageMLFormatter = formatters.get(index);
+      OutboxEntry outboxEntry = outboxEntries.get(index);
+      if(outboxEntry == null) {
+        LOG.debug("Already sent or sending reminder for interview: " + interview);
+        continue;
+      }
+      failedAttempts.remove(interview.getId());
+
+      //Held until due and merged with other reminders due to the same stream, then sent on the
+      //dispatcher's threads - busy interviewers get a chime, so the reminder is not lost under their meeting
+      boolean chime = hasUserWithPresence(interview, presences, SymphonyPresence.BUSY);
+      String streamId = reminders.get(index).getStreamId();
+      reminderCoalescer.add(streamId, greenhouseMessageMLFormatter, chime, getSendDate(interview))
+          .whenComplete((message, exception) -> {
+            if(exception != null) {
+              LOG.error("Error sending message for interview: " + interview, exception);
+              retrySending(interview.getId(), outbox.release(outboxEntry));
+            } else {
+              outbox.markDone(outboxEntry);
+              if(reminderEscalator != null) {
+                reminderEscalator.escalate(streamId, greenhouseMessageMLFormatter);
+              }
+            }
+          });
+    }
+  }
+
+  /**
+   * Handles the interview again after a backoff, for a reminder that failed before it was logged
+   * @param interview
+   */
+  private void retrySending(Interview interview) {
+    retrySending(interview.getId(), failedAttempts.merge(interview.getId(), 1, Integer::sum));
+  }
+
+  /**
+   * Handles the interview again after a backoff, so a reminder whose send failed is retried
+   * Retries stop once the interview starts, as it is no longer due
+   * @param interviewId
+   * @param attempts how many times the reminder was tried so far
+   */
+  private void retrySending(int interviewId, int attempts) {
+    long backoffMillis = MIN_RETRY_MILLIS << Math.min(Math.max(0, attempts - 1), 10);
+    Date retryAt = new Date(clock.millis() + Math.min(backoffMillis, MAX_RETRY_MILLIS));
+    reminderScheduler.schedule(String.valueOf(interviewId), retryAt);
+    LOG.info("Retrying reminder for interview " + interviewId + " at " + retryAt);
   }
 }
\ No newline at end of file
@@ -24,7 +24,11 @@
 
 package com.symphony;
 
+import com.symphony.clients.greenhouse.AsyncGreenhouseClient;
+import com.symphony.clients.greenhouse.CachingGreenhouseClient;
 import com.symphony.clients.greenhouse.GreenhouseClient;
+import com.symphony.clients.greenhouse.IGreenhouseClient;
+import com.symphony.clients.symphony.CachingSymphonyClient;
 import com.symphony.clients.symphony.ISymphonyClient;
 import com.symphony.clients.symphony.SymphonyClient;
 import com.symphony.configurations.IConfigurationProvider;
@@ -32,6 +36,8 @@ import com.symphony.configurations.SimpleConfigurationProvider;
 import com.symphony.configurations.greenhouse.GreenhouseConfigurationProvider;
 import com.symphony.configurations.greenhouse.IGreenhouseConfigurationProvider;
 import com.symphony.configurations.symphony.SymphonyConfigurationProvider;
+import com.symphony.fixtures.HttpFixtures;
+import com.symphony.webhooks.GreenhouseWebhookServer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,17 +57,33 @@ public class SymphonyGreenhouseBotApp {
 
   public static void main(String[] ryan) {
 
+    IConfigurationProvider configurationProvider = new SimpleConfigurationProvider();
+
+    //Records or replays every HTTP call when configured to, i.e. to replay a busy poll offline
+    HttpFixtures fixtures = HttpFixtures.fromConfiguration(configurationProvider);
+    Runtime.getRuntime().addShutdownHook(new Thread(fixtures::close));
+
     IGreenhouseConfigurationProvider greenhouseConfigurationProvider = new GreenhouseConfigurationProvider();
-    GreenhouseClient greenhouseClient = new GreenhouseClient(greenhouseConfigurationProvider);
+    IGreenhouseClient greenhouseClient = new CachingGreenhouseClient(
+        new GreenhouseClient(new AsyncGreenhouseClient(greenhouseConfigurationProvider, fixtures)),
+        greenhouseConfigurationProvider);
 
     SymphonyConfigurationProvider symphonyConfigurationProvider = new SymphonyConfigurationProvider();
-    ISymphonyClient symphonyClient = new SymphonyClient(symphonyConfigurationProvider);
+    ISymphonyClient symphonyClient = new CachingSymphonyClient(
+        new SymphonyClient(symphonyConfigurationProvider, fixtures), configurationProvider);
 
-    IConfigurationProvider configurationProvider = new SimpleConfigurationProvider();
+    //Replays read the time from a clock set back to the recording, so its interviews are upcoming
+    SymphonyGreenhouseBot greenhouseBot = new SymphonyGreenhouseBot(greenhouseClient, symphonyClient,
+        configurationProvider, fixtures.getClock());
 
-    SymphonyGreenhouseBot greenhouseBot = new SymphonyGreenhouseBot(greenhouseClient, symphonyClient, configurationProvider);
+    //With webhooks pushing changes as they happen, the poll only has to catch missed webhooks
+    int minutesBetweenPolls = configurationProvider.minutesBeforeInterviewToSendMessage();
+    if(greenhouseConfigurationProvider.getWebhookPort() > 0) {
+      new GreenhouseWebhookServer(greenhouseConfigurationProvider, greenhouseBot::handleWebhookEvent).start();
+      minutesBetweenPolls = configurationProvider.minutesBetweenReconciliationPolls();
+    }
 
     Executors.newScheduledThreadPool(1).scheduleWithFixedDelay(greenhouseBot, 0,
-        configurationProvider.minutesBeforeInterviewToSendMessage(), TimeUnit.MINUTES);
+        minutesBetweenPolls, TimeUnit.MINUTES);
   }
 }
\ No newline at end of file
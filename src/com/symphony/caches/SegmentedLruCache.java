@@ -0,0 +1,214 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.caches;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread safe, size bounded cache with a time to live per entry
+ *
+ * Eviction is a segmented LRU: new entries start in a probation segment and are promoted to a
+ * protected segment when read again. Entries read only once are evicted first, so a burst of
+ * one-off lookups can't push out the entries that keep getting hit.
+ */
+
+public class SegmentedLruCache<K, V> {
+
+  /** Share of the capacity reserved for entries that were read more than once */
+  private static final double PROTECTED_SHARE = 0.8;
+
+  private final int maxEntries;
+  private final int maxProtectedEntries;
+  private final long ttlNanos;
+
+  private final LinkedHashMap<K, Entry<V>> probation;
+  private final LinkedHashMap<K, Entry<V>> protectedSegment;
+
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+  private long expirationCount;
+
+  public SegmentedLruCache(int maxEntries, long ttl, TimeUnit ttlUnit) {
+    if(maxEntries < 1) {
+      throw new IllegalArgumentException("Cache must hold at least one entry");
+    }
+
+    this.maxEntries = maxEntries;
+    this.maxProtectedEntries = (int) (maxEntries * PROTECTED_SHARE);
+    this.ttlNanos = ttlUnit.toNanos(ttl);
+    this.probation = new LinkedHashMap<>();
+    this.protectedSegment = new LinkedHashMap<>();
+  }
+
+  /**
+   * Returns the live value for the key, or null if it is missing or expired
+   * @param key
+   * @return
+   */
+  public synchronized V get(K key) {
+    long now = System.nanoTime();
+
+    Entry<V> entry = protectedSegment.remove(key);
+    if(entry == null) {
+      entry = probation.remove(key);
+      if(entry != null && !entry.isExpired(now)) {
+        promote(key, entry);
+        hitCount++;
+        return entry.value;
+      }
+    } else if(!entry.isExpired(now)) {
+      protectedSegment.put(key, entry);
+      hitCount++;
+      return entry.value;
+    }
+
+    if(entry != null) {
+      expirationCount++;
+    }
+    missCount++;
+    return null;
+  }
+
+  /**
+   * Adds or replaces the value for the key, evicting the least valuable entry if full
+   * @param key
+   * @param value
+   */
+  public synchronized void put(K key, V value) {
+    if(value == null) {
+      return;
+    }
+
+    Entry<V> entry = new Entry<>(value, System.nanoTime() + ttlNanos);
+    if(protectedSegment.containsKey(key)) {
+      protectedSegment.put(key, entry);
+      return;
+    }
+
+    probation.remove(key);
+    probation.put(key, entry);
+    evictIfFull();
+  }
+
+  /**
+   * Removes the key from the cache
+   * @param key
+   */
+  public synchronized void invalidate(K key) {
+    if(protectedSegment.remove(key) == null) {
+      probation.remove(key);
+    }
+  }
+
+  /**
+   * Removes every entry from the cache
+   */
+  public synchronized void invalidateAll() {
+    probation.clear();
+    protectedSegment.clear();
+  }
+
+  public synchronized int size() {
+    return probation.size() + protectedSegment.size();
+  }
+
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  public synchronized long getExpirationCount() {
+    return expirationCount;
+  }
+
+  /**
+   * Moves an entry that was read again into the protected segment, demoting the protected
+   * segment's least recently used entry back to probation if it is full
+   */
+  private void promote(K key, Entry<V> entry) {
+    protectedSegment.put(key, entry);
+    if(protectedSegment.size() > maxProtectedEntries) {
+      Iterator<Map.Entry<K, Entry<V>>> iterator = protectedSegment.entrySet().iterator();
+      Map.Entry<K, Entry<V>> demoted = iterator.next();
+      iterator.remove();
+      probation.put(demoted.getKey(), demoted.getValue());
+    }
+  }
+
+  /**
+   * Evicts the least recently used entries on probation, falling back to the protected segment
+   * Expired entries are dropped lazily when they are next read
+   */
+  private void evictIfFull() {
+    while(size() > maxEntries) {
+      LinkedHashMap<K, Entry<V>> segment = probation.isEmpty() ? protectedSegment : probation;
+      Iterator<K> iterator = segment.keySet().iterator();
+      iterator.next();
+      iterator.remove();
+      evictionCount++;
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "SegmentedLruCache{" +
+        "size=" + size() +
+        ", maxEntries=" + maxEntries +
+        ", hits=" + hitCount +
+        ", misses=" + missCount +
+        ", evictions=" + evictionCount +
+        ", expirations=" + expirationCount +
+        '}';
+  }
+
+  /**
+   * A cached value and the time it expires at
+   */
+  private static final class Entry<V> {
+    private final V value;
+    private final long expiresAtNanos;
+
+    private Entry(V value, long expiresAtNanos) {
+      this.value = value;
+      this.expiresAtNanos = expiresAtNanos;
+    }
+
+    private boolean isExpired(long now) {
+      return now - expiresAtNanos >= 0;
+    }
+  }
+}
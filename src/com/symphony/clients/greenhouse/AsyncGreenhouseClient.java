@@ -0,0 +1,715 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.symphony.clients.greenhouse;
+
+import com.symphony.clients.greenhouse.GreenhouseRateLimiter.Priority;
+import com.symphony.configurations.greenhouse.IGreenhouseConfigurationProvider;
+import com.symphony.fixtures.HttpFixtures;
+import com.symphony.formatters.DateUtil;
+import com.symphony.models.Application;
+import com.symphony.models.Candidate;
+import com.symphony.models.Interview;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Interacts with the Greenhouse API without blocking the caller
+ *
+ * Requests run on a dedicated pool whose size caps the number of requests in flight.
+ * Pages of list requests are fetched on a separate prefetch pool, so a list request
+ * waiting on its pages never starves the pool it runs on.
+ *
+ * Each endpoint has its own circuit breaker, so an outage fails fast instead of piling up
+ * calls. When hedging is enabled, a lookup by id slower than its endpoint's p95 gets a
+ * duplicate request and whichever answers first wins.
+ */
+
+public final class AsyncGreenhouseClient implements IAsyncGreenhouseClient {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AsyncGreenhouseClient.class);
+
+  private static final int MAX_RETURN = 500;
+
+  /** Most ids Harvest accepts in a single candidate_ids filter */
+  private static final int MAX_IDS_PER_REQUEST = 50;
+
+  /** Lookups slower than this percentile of their endpoint's recent latencies get hedged */
+  private static final double HEDGE_PERCENTILE = 95;
+
+  private static final ResponseHandler<GreenhouseResponse<ArrayList<Interview>>> INTERVIEWS_HANDLER =
+      decodingHandler(stream -> {
+        ArrayList<Interview> interviews = new ArrayList<Interview>();
+        GreenhouseJsonDecoder.readInterviews(stream, interviews::add);
+        return interviews;
+      });
+
+  private static final ResponseHandler<GreenhouseResponse<ArrayList<Application>>> APPLICATIONS_HANDLER =
+      decodingHandler(stream -> {
+        ArrayList<Application> applications = new ArrayList<Application>();
+        GreenhouseJsonDecoder.readApplications(stream, applications::add);
+        return applications;
+      });
+
+  private static final ResponseHandler<GreenhouseResponse<ArrayList<Candidate>>> CANDIDATES_HANDLER =
+      decodingHandler(stream -> {
+        ArrayList<Candidate> candidates = new ArrayList<Candidate>();
+        GreenhouseJsonDecoder.readCandidates(stream, candidates::add);
+        return candidates;
+      });
+
+  private static final ResponseHandler<GreenhouseResponse<Interview>> INTERVIEW_HANDLER =
+      decodingHandler(stream -> GreenhouseJsonDecoder.readInterview(stream));
+
+  private static final ResponseHandler<GreenhouseResponse<Application>> APPLICATION_HANDLER =
+      decodingHandler(stream -> GreenhouseJsonDecoder.readApplication(stream));
+
+  private static final ResponseHandler<GreenhouseResponse<Candidate>> CANDIDATE_HANDLER =
+      decodingHandler(stream -> GreenhouseJsonDecoder.readCandidate(stream));
+
+  private final IGreenhouseConfigurationProvider configurationProvider;
+  private final GreenhouseHttpTransport transport;
+  private final ExecutorService requestExecutor;
+  private final ExecutorService pagePrefetcher;
+  private final String apiCredentialEncoded;
+  private final String baseURL;
+  private final SingleFlight singleFlight;
+  private final ConcurrentMap<String, GreenhouseCircuitBreaker> circuitBreakers;
+  private final ConcurrentMap<String, GreenhouseLatencyTracker> latencyTrackers;
+  private final ScheduledExecutorService hedgeTimer;
+  private final AtomicLong hedgedRequests;
+  private final AtomicLong hedgeWins;
+
+  public AsyncGreenhouseClient(IGreenhouseConfigurationProvider configurationProvider) {
+    this(configurationProvider, HttpFixtures.off());
+  }
+
+  public AsyncGreenhouseClient(IGreenhouseConfigurationProvider configurationProvider,
+      HttpFixtures fixtures) {
+    this.configurationProvider = configurationProvider;
+    this.transport = new GreenhouseHttpTransport(configurationProvider, fixtures);
+    this.requestExecutor = Executors.newFixedThreadPool(
+        Math.max(1, configurationProvider.getMaxConcurrentRequests()),
+        daemonThreadFactory("greenhouse-request"));
+    this.pagePrefetcher = Executors.newFixedThreadPool(
+        Math.max(1, configurationProvider.getPagePrefetchDepth()),
+        daemonThreadFactory("greenhouse-page-prefetcher"));
+    this.apiCredentialEncoded = getApiCredentialEncoded();
+    this.baseURL = getBaseURL();
+    this.singleFlight = new SingleFlight();
+    this.circuitBreakers = new ConcurrentHashMap<>();
+    this.latencyTrackers = new ConcurrentHashMap<>();
+    this.hedgeTimer = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("greenhouse-hedge-timer"));
+    this.hedgedRequests = new AtomicLong();
+    this.hedgeWins = new AtomicLong();
+  }
+
+  /**
+   * Authenticates the Greenhouse client
+   * @return
+   */
+  @Override
+  public CompletableFuture<Void> authenticateAsync() {
+    return CompletableFuture.runAsync(() -> {
+      String fullURL = getApplicationsURL() + "?per_page=2";
+      ArrayList<Application> applications = makeGetRequest(fullURL, Priority.INTERACTIVE, APPLICATIONS_HANDLER).getBody();
+
+      if(applications.size() < 1) {
+        throw new RuntimeException("Greenhouse client not authenticated");
+      }
+    }, requestExecutor);
+  }
+
+  /**
+   * Returns a full application given the applicationId
+   * @param applicationId
+   * @return
+   */
+  @Override
+  public CompletableFuture<Application> getApplicationAsync(String applicationId) {
+    String fullURL = getApplicationURL() + applicationId;
+    return singleFlightGet(fullURL, APPLICATION_HANDLER);
+  }
+
+  /**
+   * Returns a full Candidate given the candidateId
+   * @param candidateId
+   * @return
+   */
+  @Override
+  public CompletableFuture<Candidate> getCandidateAsync(String candidateId) {
+    String fullURL = getCandidateURL() + candidateId;
+    return singleFlightGet(fullURL, CANDIDATE_HANDLER);
+  }
+
+  /**
+   * Returns the applications for the applicationIds, keyed by id
+   * Harvest can't filter applications by id, so they are all requested in parallel
+   * Applications that fail to load are left out, rather than failing the whole batch - unless
+   * the circuit is open, when the batch fails with a GreenhouseCircuitOpenException to try later
+   * @param applicationIds
+   * @return
+   */
+  @Override
+  public CompletableFuture<Map<Integer, Application>> getApplicationsAsync(
+      Collection<Integer> applicationIds) {
+    List<CompletableFuture<Application>> requests = new ArrayList<>();
+    for(Integer applicationId : new LinkedHashSet<>(applicationIds)) {
+      requests.add(getApplicationAsync(String.valueOf(applicationId))
+          .exceptionally(exception -> {
+            GreenhouseCircuitOpenException.rethrowIfOpen(exception);
+            LOG.error("Error getting application " + applicationId, exception);
+            return null;
+          }));
+    }
+
+    return CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[requests.size()]))
+        .thenApply(done -> {
+          Map<Integer, Application> applications = new HashMap<>();
+          for(CompletableFuture<Application> request : requests) {
+            Application application = request.join();
+            if(application != null) {
+              applications.put(application.getId(), application);
+            }
+          }
+          return applications;
+        });
+  }
+
+  /**
+   * Returns the candidates for the candidateIds, keyed by id
+   * Ids are sent in chunks of the most Harvest accepts per request, with the chunks in parallel
+   * Candidates in a chunk that fails to load are left out, rather than failing the whole batch -
+   * unless the circuit is open, when the batch fails with a GreenhouseCircuitOpenException
+   * @param candidateIds
+   * @return
+   */
+  @Override
+  public CompletableFuture<Map<Integer, Candidate>> getCandidatesAsync(Collection<Integer> candidateIds) {
+    List<Integer> uniqueIds = new ArrayList<>(new LinkedHashSet<>(candidateIds));
+    List<CompletableFuture<ArrayList<Candidate>>> requests = new ArrayList<>();
+
+    for(int start = 0; start < uniqueIds.size(); start += MAX_IDS_PER_REQUEST) {
+      List<Integer> chunk = uniqueIds.subList(start, Math.min(start + MAX_IDS_PER_REQUEST, uniqueIds.size()));
+      StringBuilder parameter = new StringBuilder("candidate_ids=");
+      for(int i = 0; i < chunk.size(); i++) {
+        parameter.append(i == 0 ? "" : ",").append(chunk.get(i));
+      }
+
+      String fullURL = getPaginatedURL(getCandidatesURL(), parameter.toString());
+      requests.add(singleFlightGet(fullURL, CANDIDATES_HANDLER)
+          .exceptionally(exception -> {
+            GreenhouseCircuitOpenException.rethrowIfOpen(exception);
+            LOG.error("Error getting candidates " + chunk, exception);
+            return new ArrayList<>();
+          }));
+    }
+
+    return CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[requests.size()]))
+        .thenApply(done -> {
+          Map<Integer, Candidate> candidates = new HashMap<>();
+          for(CompletableFuture<ArrayList<Candidate>> request : requests) {
+            for(Candidate candidate : request.join()) {
+              candidates.put(candidate.getId(), candidate);
+            }
+          }
+          return candidates;
+        });
+  }
+
+  /**
+   * Returns interview given the interviewId
+   * @param interviewId
+   * @return
+   */
+  @Override
+  public CompletableFuture<Interview> getScheduledInterviewAsync(String interviewId) {
+    String fullURL = getScheduledInterviewsURL() + "/" + interviewId;
+    return singleFlightGet(fullURL, INTERVIEW_HANDLER);
+  }
+
+  /**
+   * Returns interviews created after the date
+   * @param date
+   * @return
+   */
+  @Override
+  public CompletableFuture<ArrayList<Interview>> getScheduledInterviewsCreatedAfterAsync(Date date) {
+    String parameter = "created_after=" + DateUtil.getEpochStringFromDate(date);
+    return getScheduledInterviewsAsync(parameter);
+  }
+
+  /**
+   * Returns interviews updated after the date
+   * @param date
+   * @return
+   */
+  @Override
+  public CompletableFuture<ArrayList<Interview>> getScheduledInterviewsUpdatedAfterAsync(Date date) {
+    String parameter = "updated_after=" + DateUtil.getEpochStringFromDate(date);
+    return getScheduledInterviewsAsync(parameter);
+  }
+
+  /**
+   * Returns interviews starting after the date
+   * @param date
+   * @return
+   */
+  @Override
+  public CompletableFuture<ArrayList<Interview>> getScheduledInterviewsStartingAfterAsync(Date date) {
+    String parameter = "starts_after=" + DateUtil.getEpochStringFromDate(date);
+    return getScheduledInterviewsAsync(parameter);
+  }
+
+  /**
+   * Returns interviews starting after one date and before another
+   * @param after
+   * @param before
+   * @return
+   */
+  @Override
+  public CompletableFuture<ArrayList<Interview>> getScheduledInterviewsStartingBetweenAsync(Date after,
+      Date before) {
+    String parameter = "starts_after=" + DateUtil.getEpochStringFromDate(after) +
+        "&starts_before=" + DateUtil.getEpochStringFromDate(before);
+    return getScheduledInterviewsAsync(parameter);
+  }
+
+  /**
+   * Returns all scheduled interviews
+   * @return
+   */
+  @Override
+  public CompletableFuture<ArrayList<Interview>> getScheduledInterviewsAsync() {
+    return getScheduledInterviewsAsync((String) null);
+  }
+
+  /**
+   * Private helper method for getting interviews on the request pool
+   * @param parameter
+   * @return
+   */
+  private CompletableFuture<ArrayList<Interview>> getScheduledInterviewsAsync(String parameter) {
+    return CompletableFuture.supplyAsync(() -> getScheduledInterviews(parameter), requestExecutor);
+  }
+
+  /**
+   * Private helper method for getting interviews
+   * Follows the Link headers through every page, fetching and decoding upcoming pages in parallel
+   * @param parameter
+   * @return
+   */
+  private ArrayList<Interview> getScheduledInterviews(String parameter) {
+    String firstPageURL = getPaginatedURL(getScheduledInterviewsURL(), parameter);
+    int prefetchDepth = Math.max(1, this.configurationProvider.getPagePrefetchDepth());
+
+    ArrayList<Interview> interviews = new ArrayList<Interview>();
+    Deque<Future<GreenhouseResponse<ArrayList<Interview>>>> prefetchedPages = new ArrayDeque<>();
+
+    GreenhouseResponse<ArrayList<Interview>> page = makeGetRequest(firstPageURL, Priority.BULK, INTERVIEWS_HANDLER);
+
+    //When Harvest tells us the last page, every page URL is known up front and can be fetched in parallel
+    String nextPageURL = page.getNextPageURL();
+    int lastPageNumber = GreenhouseResponse.getPageNumber(page.getLastPageURL());
+    int nextPageNumber = GreenhouseResponse.getPageNumber(nextPageURL);
+    boolean knowsAllPages = nextPageURL != null && nextPageNumber > 0 && lastPageNumber > 0;
+
+    int pageCount = 0;
+    try {
+      while(page != null) {
+        pageCount++;
+
+        //Keep the prefetch window full before collecting this page
+        if(knowsAllPages) {
+          while(prefetchedPages.size() < prefetchDepth && nextPageNumber <= lastPageNumber) {
+            String pageURL = GreenhouseResponse.getURLForPage(nextPageURL, nextPageNumber++);
+            prefetchedPages.add(pagePrefetcher.submit(() -> makeGetRequest(pageURL, Priority.BULK, INTERVIEWS_HANDLER)));
+          }
+        } else if(nextPageURL != null) {
+          String pageURL = nextPageURL;
+          prefetchedPages.add(pagePrefetcher.submit(() -> makeGetRequest(pageURL, Priority.BULK, INTERVIEWS_HANDLER)));
+        }
+
+        interviews.addAll(page.getBody());
+
+        page = prefetchedPages.isEmpty() ? null : prefetchedPages.poll().get();
+        if(page != null && !knowsAllPages) {
+          nextPageURL = page.getNextPageURL();
+        }
+      }
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while fetching scheduled interviews", exception);
+    } catch (ExecutionException exception) {
+      throw new RuntimeException("Error fetching scheduled interviews page", exception.getCause());
+    } finally {
+      for(Future<GreenhouseResponse<ArrayList<Interview>>> prefetchedPage : prefetchedPages) {
+        prefetchedPage.cancel(true);
+      }
+    }
+
+    LOG.info("Fetched " + interviews.size() + " scheduled interviews across " + pageCount + " pages");
+    return interviews;
+  }
+
+  /**
+   * Returns how many lookups shared an identical in-flight request instead of making their own
+   * @return
+   */
+  public long getCoalescedRequestCount() {
+    return singleFlight.getCoalescedCalls();
+  }
+
+  /**
+   * Returns how many lookups went through request coalescing
+   * @return
+   */
+  public long getCoalescableRequestCount() {
+    return singleFlight.getCalls();
+  }
+
+  /**
+   * Returns the circuit breaker of every endpoint called so far, keyed by endpoint
+   * @return
+   */
+  public Map<String, GreenhouseCircuitBreaker> getCircuitBreakers() {
+    return Collections.unmodifiableMap(circuitBreakers);
+  }
+
+  /**
+   * Returns how many duplicate requests were sent for slow lookups
+   * @return
+   */
+  public long getHedgedRequestCount() {
+    return hedgedRequests.get();
+  }
+
+  /**
+   * Returns how many duplicate requests answered before the request they duplicated
+   * @return
+   */
+  public long getHedgeWinCount() {
+    return hedgeWins.get();
+  }
+
+  /**
+   * Returns the share of duplicate requests that answered first, 0 when none were sent
+   * @return
+   */
+  public double getHedgeWinRate() {
+    long hedged = hedgedRequests.get();
+    return hedged == 0 ? 0 : (double) hedgeWins.get() / hedged;
+  }
+
+  /**
+   * Private helper method for an interactive GET whose concurrent duplicates share one request
+   * @param fullURL
+   * @param responseHandler
+   * @return
+   */
+  private <T> CompletableFuture<T> singleFlightGet(String fullURL,
+      ResponseHandler<GreenhouseResponse<T>> responseHandler) {
+    return singleFlight.execute(fullURL, () -> hedgedGet(fullURL, responseHandler));
+  }
+
+  /**
+   * Private helper method for an interactive GET that is sent a second time if the first
+   * is slower than the endpoint usually is, answering with whichever succeeds first
+   * @param fullURL
+   * @param responseHandler
+   * @return
+   */
+  private <T> CompletableFuture<T> hedgedGet(String fullURL,
+      ResponseHandler<GreenhouseResponse<T>> responseHandler) {
+    CompletableFuture<T> primary = CompletableFuture.supplyAsync(
+        () -> makeGetRequest(fullURL, Priority.INTERACTIVE, responseHandler).getBody(), requestExecutor);
+
+    long hedgeDelayMillis = getHedgeDelayMillis(getEndpoint(fullURL));
+    if(hedgeDelayMillis < 0) {
+      return primary;
+    }
+
+    //The result only fails once every request sent for it has failed
+    CompletableFuture<T> result = new CompletableFuture<>();
+    AtomicInteger outstandingRequests = new AtomicInteger(1);
+    primary.whenComplete((body, throwable) ->
+        completeHedged(result, outstandingRequests, body, throwable, false));
+
+    ScheduledFuture<?> hedge = hedgeTimer.schedule(() -> {
+      if(result.isDone()) {
+        return;
+      }
+
+      outstandingRequests.incrementAndGet();
+      hedgedRequests.incrementAndGet();
+      LOG.debug("Hedging GET request slower than " + hedgeDelayMillis + "ms: " + fullURL);
+      CompletableFuture.supplyAsync(
+          () -> makeGetRequest(fullURL, Priority.INTERACTIVE, responseHandler).getBody(), requestExecutor)
+          .whenComplete((body, throwable) -> completeHedged(result, outstandingRequests, body, throwable, true));
+    }, hedgeDelayMillis, TimeUnit.MILLISECONDS);
+
+    result.whenComplete((body, throwable) -> hedge.cancel(false));
+    return result;
+  }
+
+  private <T> void completeHedged(CompletableFuture<T> result, AtomicInteger outstandingRequests,
+      T body, Throwable throwable, boolean isHedge) {
+    if(throwable == null) {
+      if(result.complete(body) && isHedge) {
+        hedgeWins.incrementAndGet();
+      }
+    } else if(outstandingRequests.decrementAndGet() == 0) {
+      result.completeExceptionally(throwable);
+    }
+  }
+
+  /**
+   * Private helper method for deciding how long to wait before hedging a lookup
+   * @param endpoint
+   * @return the delay, or -1 when the lookup shouldn't be hedged
+   */
+  private long getHedgeDelayMillis(String endpoint) {
+    if(!configurationProvider.isHedgingEnabled()) {
+      return -1;
+    }
+
+    long percentileMillis = getLatencyTracker(endpoint).getPercentileMillis(HEDGE_PERCENTILE);
+    if(percentileMillis < 0) {
+      return -1;
+    }
+    return Math.max(percentileMillis, configurationProvider.getHedgeMinDelayMillis());
+  }
+
+  /**
+   * Private helper method for making a GET request, decoding the response as it streams in
+   * @param fullURL
+   * @param priority
+   * @param responseHandler
+   * @return
+   */
+  private <T> GreenhouseResponse<T> makeGetRequest(String fullURL,
+      Priority priority, ResponseHandler<GreenhouseResponse<T>> responseHandler) {
+    String endpoint = getEndpoint(fullURL);
+    GreenhouseCircuitBreaker circuitBreaker = getCircuitBreaker(endpoint);
+    if(!circuitBreaker.tryAcquire()) {
+      throw new GreenhouseCircuitOpenException("Greenhouse circuit open, failing fast: " + fullURL);
+    }
+
+    LOG.debug("Making GET request to: " + fullURL);
+    long start = System.nanoTime();
+    try {
+      GreenhouseResponse<T> response =
+          this.transport.get(fullURL, "Basic " + this.apiCredentialEncoded, priority, responseHandler);
+      circuitBreaker.onSuccess();
+      getLatencyTracker(endpoint).record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      return response;
+    } catch (RuntimeException exception) {
+      if(isHarvestFailure(exception)) {
+        circuitBreaker.onFailure();
+      } else {
+        circuitBreaker.onSuccess();
+      }
+      throw exception;
+    }
+  }
+
+  /**
+   * Private helper method for telling failures of Harvest apart from requests Harvest turned
+   * down, i.e. a 404 for an unknown id, which say nothing about Harvest's health
+   * @param exception
+   * @return
+   */
+  private static boolean isHarvestFailure(RuntimeException exception) {
+    for(Throwable cause = exception; cause != null; cause = cause.getCause()) {
+      if(cause instanceof HttpResponseException) {
+        return ((HttpResponseException) cause).getStatusCode() >= 500;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Private helper method for naming the endpoint of a URL, with ids replaced so every
+   * lookup by id shares one endpoint, i.e. candidates/{id}
+   * @param fullURL
+   * @return
+   */
+  private String getEndpoint(String fullURL) {
+    String path = fullURL.startsWith(baseURL) ? fullURL.substring(baseURL.length()) : fullURL;
+    int queryStart = path.indexOf('?');
+    if(queryStart >= 0) {
+      path = path.substring(0, queryStart);
+    }
+    return path.replaceAll("/\\d+", "/{id}");
+  }
+
+  private GreenhouseCircuitBreaker getCircuitBreaker(String endpoint) {
+    return circuitBreakers.computeIfAbsent(endpoint, name -> new GreenhouseCircuitBreaker(name,
+        configurationProvider.getCircuitBreakerFailureThreshold(),
+        configurationProvider.getCircuitBreakerOpenSeconds()));
+  }
+
+  private GreenhouseLatencyTracker getLatencyTracker(String endpoint) {
+    return latencyTrackers.computeIfAbsent(endpoint, name -> new GreenhouseLatencyTracker());
+  }
+
+  /**
+   * Private helper method for creating a handler that decodes a successful response body
+   * straight from the stream, failing on any non-2xx status
+   * @param bodyDecoder
+   * @return
+   */
+  private static <T> ResponseHandler<GreenhouseResponse<T>> decodingHandler(BodyDecoder<T> bodyDecoder) {
+    return response -> {
+      int statusCode = response.getStatusLine().getStatusCode();
+      HttpEntity entity = response.getEntity();
+      if(statusCode < 200 || statusCode >= 300) {
+        EntityUtils.consume(entity);
+        throw new HttpResponseException(statusCode, response.getStatusLine().getReasonPhrase());
+      }
+
+      Header linkHeader = response.getFirstHeader("Link");
+      T body = null;
+      if(entity != null) {
+        try(InputStream stream = entity.getContent()) {
+          body = bodyDecoder.decode(stream);
+        }
+      }
+      return new GreenhouseResponse<T>(body, linkHeader == null ? null : linkHeader.getValue());
+    };
+  }
+
+  /**
+   * Decodes a response body
+   */
+  private interface BodyDecoder<T> {
+    T decode(InputStream stream) throws IOException;
+  }
+
+  /**
+   * Private helper method for building the URL of the first page of a list request
+   * @param url
+   * @param parameters
+   * @return
+   */
+  private String getPaginatedURL(String url, String parameters) {
+    String fullURL = url + "?per_page=" + MAX_RETURN;
+    if(parameters != null && !parameters.isEmpty()) {
+      fullURL += "&" + parameters;
+    }
+    return fullURL;
+  }
+
+  /**
+   * Helper method for encoding the API Credentials
+   * @return
+   */
+  private String getApiCredentialEncoded() {
+    String apiCredential = this.configurationProvider.getApiToken() + ":";
+    final byte[] apiCredentialBytes = apiCredential.getBytes(StandardCharsets.UTF_8);
+    return Base64.getEncoder().encodeToString(apiCredentialBytes);
+  }
+
+  /**
+   * Helper method for reading the configured base URL, making sure it ends in a slash
+   * @return
+   */
+  private String getBaseURL() {
+    String url = this.configurationProvider.getBaseURL();
+    return url.endsWith("/") ? url : url + "/";
+  }
+
+  /**
+   * Helper method for naming the threads of a pool - daemons so they never keep the bot alive
+   * @param prefix
+   * @return
+   */
+  private static ThreadFactory daemonThreadFactory(String prefix) {
+    AtomicInteger threadCount = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + "-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private String getDepartments() {
+    return baseURL + "departments";
+  }
+
+  private String getCandidateURL() {
+    return baseURL + "candidates/";
+  }
+
+  private String getCandidatesURL() {
+    return baseURL + "candidates";
+  }
+
+  private String getApplicationURL() {
+    return baseURL + "applications/";
+  }
+
+  private String getApplicationsURL() {
+    return baseURL + "applications";
+  }
+
+  private String getScheduledInterviewsURL() {
+    return baseURL + "scheduled_interviews";
+  }
+
+}
\ No newline at end of file
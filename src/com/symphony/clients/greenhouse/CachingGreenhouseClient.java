@@ -0,0 +1,220 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.greenhouse;
+
+import com.symphony.caches.SegmentedLruCache;
+import com.symphony.configurations.greenhouse.IGreenhouseConfigurationProvider;
+import com.symphony.models.Application;
+import com.symphony.models.Candidate;
+import com.symphony.models.Interview;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches Greenhouse lookups in front of another IGreenhouseClient
+ *
+ * Candidates often have several interviews on the same onsite day, so their Application and
+ * Candidate get looked up again and again. Interviews returned by list calls are cached too,
+ * so looking one up right after a poll doesn't hit Greenhouse again.
+ */
+
+public final class CachingGreenhouseClient implements IGreenhouseClient {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CachingGreenhouseClient.class);
+
+  private final IGreenhouseClient greenhouseClient;
+
+  private final SegmentedLruCache<String, Application> applicationCache;
+  private final SegmentedLruCache<String, Candidate> candidateCache;
+  private final SegmentedLruCache<String, Interview> interviewCache;
+
+  public CachingGreenhouseClient(IGreenhouseClient greenhouseClient,
+      IGreenhouseConfigurationProvider configurationProvider) {
+    this.greenhouseClient = greenhouseClient;
+
+    int maxEntries = configurationProvider.getCacheMaxEntries();
+    this.applicationCache = new SegmentedLruCache<>(maxEntries,
+        configurationProvider.getApplicationCacheTtlSeconds(), TimeUnit.SECONDS);
+    this.candidateCache = new SegmentedLruCache<>(maxEntries,
+        configurationProvider.getCandidateCacheTtlSeconds(), TimeUnit.SECONDS);
+    this.interviewCache = new SegmentedLruCache<>(maxEntries,
+        configurationProvider.getInterviewCacheTtlSeconds(), TimeUnit.SECONDS);
+  }
+
+  @Override
+  public void authenticate() {
+    greenhouseClient.authenticate();
+  }
+
+  @Override
+  public Application getApplication(String applicationId) {
+    Application application = applicationCache.get(applicationId);
+    if(application == null) {
+      application = greenhouseClient.getApplication(applicationId);
+      applicationCache.put(applicationId, application);
+    }
+    return application;
+  }
+
+  @Override
+  public Candidate getCandidate(String candidateId) {
+    Candidate candidate = candidateCache.get(candidateId);
+    if(candidate == null) {
+      candidate = greenhouseClient.getCandidate(candidateId);
+      candidateCache.put(candidateId, candidate);
+    }
+    return candidate;
+  }
+
+  @Override
+  public Map<Integer, Application> getApplications(Collection<Integer> applicationIds) {
+    Map<Integer, Application> applications = new HashMap<>();
+    Set<Integer> missingIds = new LinkedHashSet<>();
+    for(Integer applicationId : applicationIds) {
+      Application application = applicationCache.get(String.valueOf(applicationId));
+      if(application == null) {
+        missingIds.add(applicationId);
+      } else {
+        applications.put(applicationId, application);
+      }
+    }
+
+    if(!missingIds.isEmpty()) {
+      for(Application application : greenhouseClient.getApplications(missingIds).values()) {
+        applicationCache.put(String.valueOf(application.getId()), application);
+        applications.put(application.getId(), application);
+      }
+    }
+    return applications;
+  }
+
+  @Override
+  public Map<Integer, Candidate> getCandidates(Collection<Integer> candidateIds) {
+    Map<Integer, Candidate> candidates = new HashMap<>();
+    Set<Integer> missingIds = new LinkedHashSet<>();
+    for(Integer candidateId : candidateIds) {
+      Candidate candidate = candidateCache.get(String.valueOf(candidateId));
+      if(candidate == null) {
+        missingIds.add(candidateId);
+      } else {
+        candidates.put(candidateId, candidate);
+      }
+    }
+
+    if(!missingIds.isEmpty()) {
+      for(Candidate candidate : greenhouseClient.getCandidates(missingIds).values()) {
+        candidateCache.put(String.valueOf(candidate.getId()), candidate);
+        candidates.put(candidate.getId(), candidate);
+      }
+    }
+    return candidates;
+  }
+
+  @Override
+  public Interview getScheduledInterview(String interviewId) {
+    Interview interview = interviewCache.get(interviewId);
+    if(interview == null) {
+      interview = greenhouseClient.getScheduledInterview(interviewId);
+      interviewCache.put(interviewId, interview);
+    }
+    return interview;
+  }
+
+  @Override
+  public ArrayList<Interview> getScheduledInterviews() {
+    return cacheInterviews(greenhouseClient.getScheduledInterviews());
+  }
+
+  @Override
+  public ArrayList<Interview> getScheduledInterviewsStartingAfterNow() {
+    return cacheInterviews(greenhouseClient.getScheduledInterviewsStartingAfterNow());
+  }
+
+  @Override
+  public ArrayList<Interview> getScheduledInterviewsStartingAfter(Date date) {
+    return cacheInterviews(greenhouseClient.getScheduledInterviewsStartingAfter(date));
+  }
+
+  @Override
+  public ArrayList<Interview> getScheduledInterviewsStartingBetween(Date after, Date before) {
+    return cacheInterviews(greenhouseClient.getScheduledInterviewsStartingBetween(after, before));
+  }
+
+  @Override
+  public ArrayList<Interview> getScheduledInterviewsCreatedAfter(Date date) {
+    return cacheInterviews(greenhouseClient.getScheduledInterviewsCreatedAfter(date));
+  }
+
+  @Override
+  public ArrayList<Interview> getScheduledInterviewsUpdatedAfter(Date date) {
+    return cacheInterviews(greenhouseClient.getScheduledInterviewsUpdatedAfter(date));
+  }
+
+  public SegmentedLruCache<String, Application> getApplicationCache() {
+    return applicationCache;
+  }
+
+  public SegmentedLruCache<String, Candidate> getCandidateCache() {
+    return candidateCache;
+  }
+
+  public SegmentedLruCache<String, Interview> getInterviewCache() {
+    return interviewCache;
+  }
+
+  /**
+   * Logs the hit, miss and eviction counters of every cache
+   */
+  public void logStatistics() {
+    LOG.debug("Application cache: " + applicationCache);
+    LOG.debug("Candidate cache: " + candidateCache);
+    LOG.debug("Interview cache: " + interviewCache);
+  }
+
+  /**
+   * Private helper method for remembering every interview returned by a list call
+   * List calls happen once per poll, so this is also where the cache counters get logged
+   * @param interviews
+   * @return
+   */
+  private ArrayList<Interview> cacheInterviews(ArrayList<Interview> interviews) {
+    for(Interview interview : interviews) {
+      interviewCache.put(interview.getIdString(), interview);
+    }
+    logStatistics();
+    return interviews;
+  }
+}
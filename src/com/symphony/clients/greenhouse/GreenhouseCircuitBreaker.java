@@ -0,0 +1,164 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.greenhouse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops calling a Harvest endpoint that keeps failing
+ *
+ * After enough consecutive failures the circuit opens and calls fail fast without touching
+ * the network. Once the open period is over a single probe call is let through - if it
+ * succeeds the circuit closes again, otherwise it stays open for another period.
+ */
+
+public final class GreenhouseCircuitBreaker {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GreenhouseCircuitBreaker.class);
+
+  public enum State {
+    /** Calls go through */
+    CLOSED,
+    /** Calls fail fast */
+    OPEN,
+    /** One probe call is let through to see if the endpoint recovered */
+    HALF_OPEN
+  }
+
+  private final String endpoint;
+  private final int failureThreshold;
+  private final long openNanos;
+  private final Map<State, Long> transitions;
+
+  private State state;
+  private int consecutiveFailures;
+  private long openedAtNanos;
+  private boolean probeInFlight;
+  private long rejectedCalls;
+
+  public GreenhouseCircuitBreaker(String endpoint, int failureThreshold, int openSeconds) {
+    this.endpoint = endpoint;
+    this.failureThreshold = Math.max(1, failureThreshold);
+    this.openNanos = TimeUnit.SECONDS.toNanos(Math.max(1, openSeconds));
+    this.transitions = new EnumMap<>(State.class);
+    this.state = State.CLOSED;
+  }
+
+  /**
+   * Returns true if a call may be made now, in which case its outcome must be reported
+   * with onSuccess or onFailure
+   * @return
+   */
+  public synchronized boolean tryAcquire() {
+    if(state == State.OPEN) {
+      if(System.nanoTime() - openedAtNanos < openNanos) {
+        rejectedCalls++;
+        return false;
+      }
+      transitionTo(State.HALF_OPEN);
+    }
+
+    if(state == State.HALF_OPEN) {
+      if(probeInFlight) {
+        rejectedCalls++;
+        return false;
+      }
+      probeInFlight = true;
+    }
+    return true;
+  }
+
+  /**
+   * Reports that a call got an answer from Harvest
+   */
+  public synchronized void onSuccess() {
+    consecutiveFailures = 0;
+    probeInFlight = false;
+    if(state != State.CLOSED) {
+      transitionTo(State.CLOSED);
+    }
+  }
+
+  /**
+   * Reports that a call failed to get an answer from Harvest
+   */
+  public synchronized void onFailure() {
+    probeInFlight = false;
+    consecutiveFailures++;
+
+    if(state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+      openedAtNanos = System.nanoTime();
+      transitionTo(State.OPEN);
+    }
+  }
+
+  public String getEndpoint() {
+    return endpoint;
+  }
+
+  public synchronized State getState() {
+    return state;
+  }
+
+  /**
+   * Returns how many times the circuit has moved into the state
+   * @param state
+   * @return
+   */
+  public synchronized long getTransitionCount(State state) {
+    Long count = transitions.get(state);
+    return count == null ? 0 : count;
+  }
+
+  /**
+   * Returns how many calls failed fast instead of being made
+   * @return
+   */
+  public synchronized long getRejectedCalls() {
+    return rejectedCalls;
+  }
+
+  private void transitionTo(State newState) {
+    LOG.warn("Greenhouse circuit for " + endpoint + " went from " + state + " to " + newState);
+    state = newState;
+    transitions.merge(newState, 1L, Long::sum);
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "GreenhouseCircuitBreaker{" +
+        "endpoint='" + endpoint + '\'' +
+        ", state=" + state +
+        ", transitions=" + transitions +
+        ", rejectedCalls=" + rejectedCalls +
+        '}';
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.greenhouse;
+
+import java.util.concurrent.CompletionException;
+
+/**
+ * Thrown instead of calling a Harvest endpoint whose circuit is open
+ *
+ * Harvest isn't answering, so the call was never made - callers should try again later
+ * rather than treat the work as failed.
+ */
+
+public class GreenhouseCircuitOpenException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public GreenhouseCircuitOpenException(String message) {
+    super(message);
+  }
+
+  /**
+   * Returns the open circuit that caused the throwable, if it was one
+   * @param throwable
+   * @return the exception, or null if the circuit wasn't open
+   */
+  public static GreenhouseCircuitOpenException find(Throwable throwable) {
+    for(Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+      if(cause instanceof GreenhouseCircuitOpenException) {
+        return (GreenhouseCircuitOpenException) cause;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Rethrows the throwable if it came from an open circuit, so a batch fails as a whole
+   * instead of leaving out every id it couldn't call
+   * @param throwable
+   */
+  static void rethrowIfOpen(Throwable throwable) {
+    if(find(throwable) != null) {
+      throw throwable instanceof CompletionException ?
+          (CompletionException) throwable : new CompletionException(throwable);
+    }
+  }
+}
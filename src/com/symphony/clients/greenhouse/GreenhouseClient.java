@@ -22,47 +22,46 @@
  *
  */
 
+
 package com.symphony.clients.greenhouse;
 
 import com.symphony.configurations.greenhouse.IGreenhouseConfigurationProvider;
-import com.symphony.formatters.DateUtil;
 import com.symphony.models.Application;
 import com.symphony.models.Candidate;
 import com.symphony.models.Interview;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.Collection;
 import java.util.Date;
-
-import javax.ws.rs.client.ClientBuilder;
-import javax.ws.rs.core.MediaType;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Created by ryan.dsouza on 7/19/16.
  *
  * Interacts with the Greenhouse API
+ * Blocking adapter over the AsyncGreenhouseClient, which does the actual work
  */
 
 public final class GreenhouseClient implements IGreenhouseClient {
 
-  private static final Logger LOG = LoggerFactory.getLogger(GreenhouseClient.class);
+  private final IAsyncGreenhouseClient asyncClient;
 
-  private static final String BASE_URL = "https://harvest.greenhouse.io/v1/";
-  private static final int MAX_RETURN = 500;
+  public GreenhouseClient(IGreenhouseConfigurationProvider configurationProvider) {
+    this(new AsyncGreenhouseClient(configurationProvider));
+  }
 
-  private final IGreenhouseConfigurationProvider configurationProvider;
-  private final String apiCredentialEncoded;
+  public GreenhouseClient(IAsyncGreenhouseClient asyncClient) {
+    this.asyncClient = asyncClient;
+  }
 
-  public GreenhouseClient(IGreenhouseConfigurationProvider configurationProvider) {
-    this.configurationProvider = configurationProvider;
-    this.apiCredentialEncoded = getApiCredentialEncoded();
+  /**
+   * Returns the non-blocking client this client waits on, for fanning out many requests at once
+   * @return
+   */
+  public IAsyncGreenhouseClient getAsyncClient() {
+    return asyncClient;
   }
 
   /**
@@ -70,14 +69,7 @@ public final class GreenhouseClient implements IGreenhouseClient {
    */
   @Override
   public void authenticate() {
-
-    String fullURL = getApplicationsURL() + "?limit=2";
-    JSONObject result = makeGetRequest(fullURL);
-    JSONArray resultArray = result.getJSONArray("array");
-
-    if(resultArray.length() < 1) {
-      throw new RuntimeException("Greenhouse client not authenticated");
-    }
+    await(asyncClient.authenticateAsync());
   }
 
   /**
@@ -87,9 +79,7 @@ public final class GreenhouseClient implements IGreenhouseClient {
    */
   @Override
   public Application getApplication(String applicationId) {
-    String fullURL = getApplicationURL() + applicationId;
-    JSONObject object = makeGetRequest(fullURL);
-    return new Application(object);
+    return await(asyncClient.getApplicationAsync(applicationId));
   }
 
   /**
@@ -99,9 +89,27 @@ public final class GreenhouseClient implements IGreenhouseClient {
    */
   @Override
   public Candidate getCandidate(String candidateId) {
-    String fullURL = getCandidateURL() + candidateId;
-    JSONObject object = makeGetRequest(fullURL);
-    return new Candidate(object);
+    return await(asyncClient.getCandidateAsync(candidateId));
+  }
+
+  /**
+   * Returns the applications for the applicationIds, keyed by id
+   * @param applicationIds
+   * @return
+   */
+  @Override
+  public Map<Integer, Application> getApplications(Collection<Integer> applicationIds) {
+    return await(asyncClient.getApplicationsAsync(applicationIds));
+  }
+
+  /**
+   * Returns the candidates for the candidateIds, keyed by id
+   * @param candidateIds
+   * @return
+   */
+  @Override
+  public Map<Integer, Candidate> getCandidates(Collection<Integer> candidateIds) {
+    return await(asyncClient.getCandidatesAsync(candidateIds));
   }
 
   /**
@@ -111,9 +119,7 @@ public final class GreenhouseClient implements IGreenhouseClient {
    */
   @Override
   public Interview getScheduledInterview(String interviewId) {
-    String fullURL = getScheduledInterviewsURL() + "/" + interviewId;
-    JSONObject object = makeGetRequest(fullURL);
-    return new Interview(object);
+    return await(asyncClient.getScheduledInterviewAsync(interviewId));
   }
 
   /**
@@ -123,8 +129,7 @@ public final class GreenhouseClient implements IGreenhouseClient {
    */
   @Override
   public ArrayList<Interview> getScheduledInterviewsCreatedAfter(Date date) {
-    String parameter = "created_after=" + DateUtil.getEpochStringFromDate(date);
-    return getScheduledInterviews(parameter);
+    return await(asyncClient.getScheduledInterviewsCreatedAfterAsync(date));
   }
 
   /**
@@ -134,8 +139,7 @@ public final class GreenhouseClient implements IGreenhouseClient {
    */
   @Override
   public ArrayList<Interview> getScheduledInterviewsUpdatedAfter(Date date) {
-    String parameter = "updated_after=" + DateUtil.getEpochStringFromDate(date);
-    return getScheduledInterviews(parameter);
+    return await(asyncClient.getScheduledInterviewsUpdatedAfterAsync(date));
   }
 
   /**
@@ -145,133 +149,51 @@ public final class GreenhouseClient implements IGreenhouseClient {
    */
   @Override
   public ArrayList<Interview> getScheduledInterviewsStartingAfter(Date date) {
-    String parameter = "starts_after=" + DateUtil.getEpochStringFromDate(date);
-    return getScheduledInterviews(parameter);
+    return await(asyncClient.getScheduledInterviewsStartingAfterAsync(date));
   }
 
   /**
-   * Return interviews starting after right now
+   * Returns interviews starting after one date and before another
+   * @param after
+   * @param before
    * @return
    */
   @Override
-  public ArrayList<Interview> getScheduledInterviewsStartingAfterNow() {
-    return this.getScheduledInterviewsStartingAfter(new Date());
+  public ArrayList<Interview> getScheduledInterviewsStartingBetween(Date after, Date before) {
+    return await(asyncClient.getScheduledInterviewsStartingBetweenAsync(after, before));
   }
 
   /**
-   * Returns all scheduled interviews
+   * Return interviews starting after right now
    * @return
    */
   @Override
-  public ArrayList<Interview> getScheduledInterviews() {
-    return getScheduledInterviews(null);
+  public ArrayList<Interview> getScheduledInterviewsStartingAfterNow() {
+    return this.getScheduledInterviewsStartingAfter(new Date());
   }
 
   /**
-   * Private helper method for getting interviews
-   * @param parameter
+   * Returns all scheduled interviews
    * @return
    */
-  private ArrayList<Interview> getScheduledInterviews(String parameter) {
-    String url = getScheduledInterviewsURL();
-
-    ArrayList<Interview> interviews = new ArrayList<Interview>();
-    JSONObject result = makeGetRequest(url, parameter);
-    JSONArray resultArray = result.getJSONArray("array");
-
-    for(int i = 0; i < resultArray.length(); i++) {
-      Interview interview = new Interview(resultArray.getJSONObject(i));
-      System.out.println(resultArray.getJSONObject(i));
-      interviews.add(interview);
-    }
-
-    return interviews;
+  @Override
+  public ArrayList<Interview> getScheduledInterviews() {
+    return await(asyncClient.getScheduledInterviewsAsync());
   }
 
   /**
-   * Private helper method for getting the JSON response for a GET request
-   * @param fullURL
+   * Private helper method for waiting on a request, rethrowing its failure unwrapped
+   * @param future
    * @return
    */
-  private JSONObject makeGetRequest(String fullURL) {
-
-    LOG.debug("Making GET request to: " + fullURL);
-    String responseContent = ClientBuilder.newClient()
-        .target(fullURL)
-        .request(MediaType.APPLICATION_JSON)
-        .header("Authorization", "Basic " + this.apiCredentialEncoded)
-        .get(String.class);
-
+  private static <T> T await(CompletableFuture<T> future) {
     try {
-      //Response is always an array
-      JSONArray jsonArray = new JSONArray(responseContent);
-      JSONObject response;
-
-      //If there is only one object in the array, get that object and return it
-      if(jsonArray.length() == 1) {
-        response = jsonArray.getJSONObject(0);
-      }
-      //If it's an actual array, put it in a JSON object
-      else {
-        response = new JSONObject();
-        response.put("array", jsonArray);
+      return future.join();
+    } catch (CompletionException exception) {
+      if(exception.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) exception.getCause();
       }
-      return response;
-    } catch (JSONException e) {
-      try {
-        JSONObject response = new JSONObject(responseContent);
-        return response;
-      }
-      catch (JSONException err) {
-        LOG.error("Error converting to object", err);
-      }
-    }
-    return null;
-  }
-
-  /**
-   * Private helper method for getting the JSON response of a GET request
-   * @param url
-   * @param parameters
-   * @return
-   */
-  private JSONObject makeGetRequest(String url, String parameters) {
-    String fullURL = url + "?per_page=" + MAX_RETURN;
-    if(parameters != null && !parameters.isEmpty()) {
-      fullURL += "&" + parameters;
+      throw exception;
     }
-
-    return makeGetRequest(fullURL);
   }
-
-  /**
-   * Helper method for encoding the API Credentials
-   * @return
-   */
-  private String getApiCredentialEncoded() {
-    String apiCredential = this.configurationProvider.getApiToken() + ":";
-    final byte[] apiCredentialBytes = apiCredential.getBytes(StandardCharsets.UTF_8);
-    return Base64.getEncoder().encodeToString(apiCredentialBytes);
-  }
-
-  private String getDepartments() {
-    return BASE_URL + "departments";
-  }
-
-  private String getCandidateURL() {
-    return BASE_URL + "candidates/";
-  }
-
-  private String getApplicationURL() {
-    return BASE_URL + "applications/";
-  }
-
-  private String getApplicationsURL() {
-    return BASE_URL + "applications";
-  }
-
-  private String getScheduledInterviewsURL() {
-    return BASE_URL + "scheduled_interviews";
-  }
-
-}
\ No newline at end of file
+}
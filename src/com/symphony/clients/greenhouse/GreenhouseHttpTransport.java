@@ -0,0 +1,248 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.greenhouse;
+
+import com.symphony.configurations.greenhouse.IGreenhouseConfigurationProvider;
+import com.symphony.fixtures.HttpFixtureRecord;
+import com.symphony.fixtures.HttpFixtures;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived HTTP transport shared by every Greenhouse request
+ *
+ * Keeps a bounded pool of keep-alive connections so repeated Harvest calls
+ * reuse an open TLS session instead of handshaking on every request.
+ * Every request is paced by a GreenhouseRateLimiter and retried when Harvest answers 429.
+ * Exchanges can be recorded to, or served back from, HttpFixtures.
+ */
+
+public final class GreenhouseHttpTransport {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GreenhouseHttpTransport.class);
+
+  private static final int MAX_RATE_LIMITED_ATTEMPTS = 5;
+
+  private final ThreadSafeClientConnManager connectionManager;
+  private final DefaultHttpClient httpClient;
+  private final ScheduledExecutorService idleConnectionEvictor;
+  private final GreenhouseRateLimiter rateLimiter;
+  private final HttpFixtures fixtures;
+
+  public GreenhouseHttpTransport(IGreenhouseConfigurationProvider configurationProvider) {
+    this(configurationProvider, HttpFixtures.off());
+  }
+
+  public GreenhouseHttpTransport(IGreenhouseConfigurationProvider configurationProvider,
+      HttpFixtures fixtures) {
+
+    this.connectionManager = new ThreadSafeClientConnManager();
+    this.connectionManager.setDefaultMaxPerRoute(configurationProvider.getMaxConnectionsPerRoute());
+    this.connectionManager.setMaxTotal(configurationProvider.getMaxConnectionsTotal());
+
+    HttpParams params = new BasicHttpParams();
+    HttpConnectionParams.setConnectionTimeout(params, configurationProvider.getConnectTimeoutMillis());
+    HttpConnectionParams.setSoTimeout(params, configurationProvider.getReadTimeoutMillis());
+    this.httpClient = new DefaultHttpClient(this.connectionManager, params);
+    this.rateLimiter = new GreenhouseRateLimiter(configurationProvider.getInitialRequestsPerSecond());
+    this.fixtures = fixtures;
+
+    //Periodically close connections the server dropped or that sat unused for too long
+    final long idleTimeoutSeconds = configurationProvider.getIdleConnectionTimeoutSeconds();
+    this.idleConnectionEvictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "greenhouse-idle-connection-evictor");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long evictionPeriodSeconds = Math.max(1, idleTimeoutSeconds / 2);
+    this.idleConnectionEvictor.scheduleWithFixedDelay(() -> {
+      connectionManager.closeExpiredConnections();
+      connectionManager.closeIdleConnections(idleTimeoutSeconds, TimeUnit.SECONDS);
+    }, evictionPeriodSeconds, evictionPeriodSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Makes a GET request on a pooled connection, handing the response to the handler
+   * The connection is returned to the pool once the handler has consumed the response
+   * @param fullURL
+   * @param authorization
+   * @param priority
+   * @param responseHandler
+   * @return
+   */
+  public <T> T get(String fullURL, String authorization, GreenhouseRateLimiter.Priority priority,
+      ResponseHandler<T> responseHandler) {
+
+    if(fixtures.isReplaying()) {
+      return replay(fullURL, responseHandler);
+    }
+
+    for(int attempt = 1; ; attempt++) {
+      HttpGet request = new HttpGet(fullURL);
+      request.setHeader("Accept", "application/json");
+      request.setHeader("Authorization", authorization);
+
+      try {
+        rateLimiter.acquire(priority);
+
+        long startedAtMillis = fixtures.getElapsedMillis();
+        ResponseHandler<T> rateLimitedHandler = response -> {
+          int statusCode = response.getStatusLine().getStatusCode();
+          rateLimiter.onResponse(statusCode,
+              getHeaderValue(response, "X-RateLimit-Limit"),
+              getHeaderValue(response, "X-RateLimit-Remaining"),
+              getHeaderValue(response, "Retry-After"));
+
+          if(statusCode == 429) {
+            EntityUtils.consume(response.getEntity());
+            throw new RateLimitedException();
+          }
+          if(fixtures.isRecording()) {
+            response = record(fullURL, startedAtMillis, response);
+          }
+          return responseHandler.handleResponse(response);
+        };
+
+        return this.httpClient.execute(request, rateLimitedHandler);
+      } catch (RateLimitedException exception) {
+        if(attempt >= MAX_RATE_LIMITED_ATTEMPTS) {
+          throw new RuntimeException("Still rate limited after " + attempt + " attempts: " + fullURL,
+              exception);
+        }
+        LOG.debug("Rate limited, retrying GET request to: " + fullURL);
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted waiting to make GET request to: " + fullURL, exception);
+      } catch (IOException exception) {
+        request.abort();
+        throw new RuntimeException("Error making GET request to: " + fullURL, exception);
+      }
+    }
+  }
+
+  public GreenhouseRateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  /**
+   * Closes every pooled connection and stops the idle connection evictor
+   */
+  public void shutdown() {
+    LOG.debug("Shutting down Greenhouse HTTP transport");
+    this.idleConnectionEvictor.shutdownNow();
+    this.connectionManager.shutdown();
+  }
+
+  /**
+   * Private helper method for answering a request from the recorded fixtures
+   * @param fullURL
+   * @param responseHandler
+   * @return
+   */
+  private <T> T replay(String fullURL, ResponseHandler<T> responseHandler) {
+    HttpFixtureRecord record = fixtures.replay(HttpFixtureRecord.GREENHOUSE, "GET", fullURL, null);
+    if(record == null) {
+      throw new RuntimeException("No recorded response for GET request to: " + fullURL);
+    }
+
+    try {
+      return responseHandler.handleResponse(
+          bufferedResponse(record.getStatusCode(), record.getHeaders(), record.getBody()));
+    } catch (IOException exception) {
+      throw new RuntimeException("Error replaying GET request to: " + fullURL, exception);
+    }
+  }
+
+  /**
+   * Private helper method for writing a response to the fixtures
+   * The body can only be read once, so it is buffered and handed on in a copy of the response
+   * @param fullURL
+   * @param startedAtMillis
+   * @param response
+   * @return the copy to hand to the response handler
+   * @throws IOException
+   */
+  private HttpResponse record(String fullURL, long startedAtMillis, HttpResponse response)
+      throws IOException {
+    HttpEntity entity = response.getEntity();
+    byte[] body = entity == null ? new byte[0] : EntityUtils.toByteArray(entity);
+
+    Map<String, String> headers = new LinkedHashMap<>();
+    for(Header header : response.getAllHeaders()) {
+      if(HttpFixtures.isRecordedHeader(header.getName())) {
+        headers.put(header.getName(), header.getValue());
+      }
+    }
+
+    int statusCode = response.getStatusLine().getStatusCode();
+    fixtures.record(HttpFixtureRecord.GREENHOUSE, "GET", fullURL, null, startedAtMillis, statusCode,
+        headers, body);
+    return bufferedResponse(statusCode, headers, body);
+  }
+
+  private static HttpResponse bufferedResponse(int statusCode, Map<String, String> headers, byte[] body) {
+    HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, null);
+    for(Map.Entry<String, String> header : headers.entrySet()) {
+      response.addHeader(header.getKey(), header.getValue());
+    }
+    response.setEntity(new ByteArrayEntity(body));
+    return response;
+  }
+
+  private static String getHeaderValue(HttpResponse response, String name) {
+    Header header = response.getFirstHeader(name);
+    return header == null ? null : header.getValue();
+  }
+
+  /**
+   * Thrown from inside the response handler when Harvest answers 429 so the request gets retried
+   */
+  private static final class RateLimitedException extends IOException {
+    private static final long serialVersionUID = 1L;
+  }
+}
@@ -0,0 +1,473 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.greenhouse;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.symphony.formatters.DateUtil;
+import com.symphony.models.Application;
+import com.symphony.models.Candidate;
+import com.symphony.models.Interview;
+import com.symphony.models.InterviewType;
+import com.symphony.models.Interviewer;
+import com.symphony.models.Organizer;
+import com.symphony.models.Tuple;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Decodes Harvest responses token by token, straight into models
+ *
+ * Unlike building an org.json tree, only the record currently being read is held in memory
+ */
+
+public final class GreenhouseJsonDecoder {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private GreenhouseJsonDecoder() {
+  }
+
+  /**
+   * Reads a single model from a JSON object
+   * The parser is positioned on the object's START_OBJECT token
+   */
+  public interface RecordReader<T> {
+    T read(JsonParser parser) throws IOException;
+  }
+
+  /**
+   * Reads an array of interviews, handing each to the consumer as soon as it is decoded
+   * @param stream
+   * @param consumer
+   * @return the number of interviews read
+   * @throws IOException
+   */
+  public static int readInterviews(InputStream stream, Consumer<Interview> consumer) throws IOException {
+    return readArray(stream, GreenhouseJsonDecoder::readInterview, consumer);
+  }
+
+  /**
+   * Reads an array of applications, handing each to the consumer as soon as it is decoded
+   * @param stream
+   * @param consumer
+   * @return the number of applications read
+   * @throws IOException
+   */
+  public static int readApplications(InputStream stream, Consumer<Application> consumer)
+      throws IOException {
+    return readArray(stream, GreenhouseJsonDecoder::readApplication, consumer);
+  }
+
+  /**
+   * Reads an array of candidates, handing each to the consumer as soon as it is decoded
+   * @param stream
+   * @param consumer
+   * @return the number of candidates read
+   * @throws IOException
+   */
+  public static int readCandidates(InputStream stream, Consumer<Candidate> consumer) throws IOException {
+    return readArray(stream, GreenhouseJsonDecoder::readCandidate, consumer);
+  }
+
+  public static Interview readInterview(InputStream stream) throws IOException {
+    return readSingle(stream, GreenhouseJsonDecoder::readInterview);
+  }
+
+  public static Application readApplication(InputStream stream) throws IOException {
+    return readSingle(stream, GreenhouseJsonDecoder::readApplication);
+  }
+
+  public static Candidate readCandidate(InputStream stream) throws IOException {
+    return readSingle(stream, GreenhouseJsonDecoder::readCandidate);
+  }
+
+  /**
+   * Reads every object of a top level array
+   * @param stream
+   * @param reader
+   * @param consumer
+   * @return the number of objects read
+   * @throws IOException
+   */
+  public static <T> int readArray(InputStream stream, RecordReader<T> reader, Consumer<T> consumer)
+      throws IOException {
+    try(JsonParser parser = JSON_FACTORY.createParser(stream)) {
+      if(parser.nextToken() != JsonToken.START_ARRAY) {
+        throw new JsonParseException(parser, "Expected an array of records");
+      }
+
+      int count = 0;
+      JsonToken token;
+      while((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+        if(token == JsonToken.START_OBJECT) {
+          consumer.accept(reader.read(parser));
+          count++;
+        } else {
+          parser.skipChildren();
+        }
+      }
+      return count;
+    }
+  }
+
+  /**
+   * Reads a single object - Harvest sometimes wraps single objects in an array
+   * @param stream
+   * @param reader
+   * @return the object, or null if there was none
+   * @throws IOException
+   */
+  public static <T> T readSingle(InputStream stream, RecordReader<T> reader) throws IOException {
+    try(JsonParser parser = JSON_FACTORY.createParser(stream)) {
+      JsonToken token = parser.nextToken();
+      if(token == JsonToken.START_ARRAY) {
+        token = parser.nextToken();
+      }
+      if(token != JsonToken.START_OBJECT) {
+        return null;
+      }
+      return reader.read(parser);
+    }
+  }
+
+  public static Interview readInterview(JsonParser parser) throws IOException {
+    Interview interview = new Interview();
+
+    while(parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+
+      switch(field) {
+        case "id":
+          interview.setId(parser.getValueAsInt(-1));
+          break;
+        case "application_id":
+          interview.setApplicationId(parser.getValueAsInt(-1));
+          break;
+        case "created_at":
+          interview.setCreatedAt(readDate(parser));
+          break;
+        case "updated_at":
+          interview.setUpdatedAt(readDate(parser));
+          break;
+        case "start":
+          interview.setStartDate(readDateTime(parser));
+          break;
+        case "end":
+          interview.setEndDate(readDateTime(parser));
+          break;
+        case "location":
+          interview.setLocation(readString(parser));
+          break;
+        case "status":
+          interview.setStatus(readString(parser));
+          break;
+        case "interviewers":
+          interview.setInterviewers(readInterviewers(parser));
+          break;
+        case "organizer":
+          interview.setOrganizer(readOrganizer(parser));
+          break;
+        case "interview":
+          interview.setInterviewType(readInterviewType(parser));
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+    return interview;
+  }
+
+  public static Application readApplication(JsonParser parser) throws IOException {
+    Application application = new Application();
+
+    while(parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+
+      switch(field) {
+        case "id":
+          application.setId(parser.getValueAsInt(-1));
+          break;
+        case "candidate_id":
+          application.setCandidateId(parser.getValueAsInt(-1));
+          break;
+        case "jobs":
+          application.setJobs(readNames(parser));
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+    return application;
+  }
+
+  public static Candidate readCandidate(JsonParser parser) throws IOException {
+    Candidate candidate = new Candidate();
+
+    while(parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+
+      switch(field) {
+        case "id":
+          candidate.setId(parser.getValueAsInt(-1));
+          break;
+        case "first_name":
+          candidate.setFirstName(readString(parser));
+          break;
+        case "last_name":
+          candidate.setLastName(readString(parser));
+          break;
+        case "company":
+          candidate.setCompany(readString(parser));
+          break;
+        case "title":
+          candidate.setTitle(readString(parser));
+          break;
+        case "created_at":
+          candidate.setCreatedAt(readDate(parser));
+          break;
+        case "photo_url":
+          candidate.setPhotoURL(readString(parser));
+          break;
+        case "phone_numbers":
+          candidate.setPhoneNumbers(readTuples(parser));
+          break;
+        case "email_addresses":
+          candidate.setEmailAddresses(readTuples(parser));
+          break;
+        case "website_addresses":
+          candidate.setWebsites(readTuples(parser));
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+    return candidate;
+  }
+
+  private static ArrayList<Interviewer> readInterviewers(JsonParser parser) throws IOException {
+    ArrayList<Interviewer> interviewers = new ArrayList<Interviewer>();
+    if(parser.getCurrentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return interviewers;
+    }
+
+    JsonToken token;
+    while((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+      //Null interviewers show up occasionally - skip them
+      if(token != JsonToken.START_OBJECT) {
+        parser.skipChildren();
+        continue;
+      }
+
+      Interviewer interviewer = new Interviewer();
+      while(parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+
+        switch(field) {
+          case "id":
+            interviewer.setId(parser.getValueAsInt(-1));
+            break;
+          case "name":
+            interviewer.setName(readString(parser));
+            break;
+          case "email":
+            interviewer.setEmail(readString(parser));
+            break;
+          case "scorecard_id":
+            interviewer.setScorecardId(readString(parser));
+            break;
+          default:
+            parser.skipChildren();
+        }
+      }
+      interviewers.add(interviewer);
+    }
+    return interviewers;
+  }
+
+  private static Organizer readOrganizer(JsonParser parser) throws IOException {
+    if(parser.getCurrentToken() != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return null;
+    }
+
+    Organizer organizer = new Organizer();
+    while(parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+
+      if(field.equals("id")) {
+        organizer.setId(parser.getValueAsInt(-1));
+      } else if(field.equals("name")) {
+        organizer.setName(readString(parser));
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return organizer;
+  }
+
+  private static InterviewType readInterviewType(JsonParser parser) throws IOException {
+    if(parser.getCurrentToken() != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return null;
+    }
+
+    InterviewType interviewType = new InterviewType();
+    while(parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+
+      if(field.equals("id")) {
+        interviewType.setId(parser.getValueAsInt(-1));
+      } else if(field.equals("name")) {
+        interviewType.setName(readString(parser));
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return interviewType;
+  }
+
+  /**
+   * Reads the "name" of every object in an array, i.e. the jobs of an application
+   */
+  private static List<String> readNames(JsonParser parser) throws IOException {
+    List<String> names = new ArrayList<>();
+    if(parser.getCurrentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return names;
+    }
+
+    JsonToken token;
+    while((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+      if(token != JsonToken.START_OBJECT) {
+        parser.skipChildren();
+        continue;
+      }
+
+      while(parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        if(field.equals("name")) {
+          names.add(readString(parser));
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Reads an array of {"value": ..., "type": ...} objects, i.e. a candidate's email addresses
+   */
+  private static ArrayList<Tuple<String, String>> readTuples(JsonParser parser) throws IOException {
+    ArrayList<Tuple<String, String>> tuples = new ArrayList<>();
+    if(parser.getCurrentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return tuples;
+    }
+
+    JsonToken token;
+    while((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+      if(token != JsonToken.START_OBJECT) {
+        parser.skipChildren();
+        continue;
+      }
+
+      String value = null;
+      String type = null;
+      while(parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        if(field.equals("value")) {
+          value = readString(parser);
+        } else if(field.equals("type")) {
+          type = readString(parser);
+        } else {
+          parser.skipChildren();
+        }
+      }
+      tuples.add(new Tuple<>(value, type));
+    }
+    return tuples;
+  }
+
+  /**
+   * Reads {"date_time": ...} objects such as an interview's start and end
+   */
+  private static Date readDateTime(JsonParser parser) throws IOException {
+    if(parser.getCurrentToken() != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return null;
+    }
+
+    Date date = null;
+    while(parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if(field.equals("date_time")) {
+        date = readDate(parser);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return date;
+  }
+
+  private static Date readDate(JsonParser parser) throws IOException {
+    String date = readString(parser);
+    return date == null ? null : DateUtil.getDateFromEpochString(date);
+  }
+
+  /**
+   * Reads a scalar as text - nulls, objects and arrays are read as null
+   */
+  private static String readString(JsonParser parser) throws IOException {
+    JsonToken token = parser.getCurrentToken();
+    if(token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return null;
+    }
+    if(token == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    return parser.getText();
+  }
+}
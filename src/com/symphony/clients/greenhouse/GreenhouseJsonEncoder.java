@@ -0,0 +1,258 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.greenhouse;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.symphony.formatters.DateUtil;
+import com.symphony.models.Application;
+import com.symphony.models.Candidate;
+import com.symphony.models.Interview;
+import com.symphony.models.Interviewer;
+import com.symphony.models.Tuple;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes models back out in the same JSON shape Harvest returns them in
+ *
+ * Anything written here can be read back with the GreenhouseJsonDecoder
+ */
+
+public final class GreenhouseJsonEncoder {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private GreenhouseJsonEncoder() {
+  }
+
+  /**
+   * Writes the interviews as a JSON array
+   * @param stream
+   * @param interviews
+   * @throws IOException
+   */
+  public static void writeInterviews(OutputStream stream, Collection<Interview> interviews)
+      throws IOException {
+    try(JsonGenerator generator = JSON_FACTORY.createGenerator(stream, JsonEncoding.UTF8)) {
+      generator.writeStartArray();
+      for(Interview interview : interviews) {
+        writeInterview(generator, interview);
+      }
+      generator.writeEndArray();
+    }
+  }
+
+  /**
+   * Writes the applications as a JSON array
+   * @param stream
+   * @param applications
+   * @throws IOException
+   */
+  public static void writeApplications(OutputStream stream, Collection<Application> applications)
+      throws IOException {
+    try(JsonGenerator generator = JSON_FACTORY.createGenerator(stream, JsonEncoding.UTF8)) {
+      generator.writeStartArray();
+      for(Application application : applications) {
+        writeApplication(generator, application);
+      }
+      generator.writeEndArray();
+    }
+  }
+
+  /**
+   * Writes the candidates as a JSON array
+   * @param stream
+   * @param candidates
+   * @throws IOException
+   */
+  public static void writeCandidates(OutputStream stream, Collection<Candidate> candidates)
+      throws IOException {
+    try(JsonGenerator generator = JSON_FACTORY.createGenerator(stream, JsonEncoding.UTF8)) {
+      generator.writeStartArray();
+      for(Candidate candidate : candidates) {
+        writeCandidate(generator, candidate);
+      }
+      generator.writeEndArray();
+    }
+  }
+
+  /**
+   * Writes a single interview as a JSON object
+   * @param stream
+   * @param interview
+   * @throws IOException
+   */
+  public static void writeInterview(OutputStream stream, Interview interview) throws IOException {
+    try(JsonGenerator generator = JSON_FACTORY.createGenerator(stream, JsonEncoding.UTF8)) {
+      writeInterview(generator, interview);
+    }
+  }
+
+  /**
+   * Writes a single application as a JSON object
+   * @param stream
+   * @param application
+   * @throws IOException
+   */
+  public static void writeApplication(OutputStream stream, Application application) throws IOException {
+    try(JsonGenerator generator = JSON_FACTORY.createGenerator(stream, JsonEncoding.UTF8)) {
+      writeApplication(generator, application);
+    }
+  }
+
+  /**
+   * Writes a single candidate as a JSON object
+   * @param stream
+   * @param candidate
+   * @throws IOException
+   */
+  public static void writeCandidate(OutputStream stream, Candidate candidate) throws IOException {
+    try(JsonGenerator generator = JSON_FACTORY.createGenerator(stream, JsonEncoding.UTF8)) {
+      writeCandidate(generator, candidate);
+    }
+  }
+
+  public static void writeInterview(JsonGenerator generator, Interview interview) throws IOException {
+    generator.writeStartObject();
+    generator.writeNumberField("id", interview.getId());
+    generator.writeNumberField("application_id", interview.getApplicationId());
+    writeDateField(generator, "created_at", interview.getCreatedAt());
+    writeDateField(generator, "updated_at", interview.getUpdatedAt());
+
+    generator.writeObjectFieldStart("start");
+    writeDateField(generator, "date_time", interview.getStartDate());
+    generator.writeEndObject();
+
+    generator.writeObjectFieldStart("end");
+    writeDateField(generator, "date_time", interview.getEndDate());
+    generator.writeEndObject();
+
+    writeStringField(generator, "location", interview.getLocation());
+    writeStringField(generator, "status",
+        interview.getStatus() == null ? null : interview.getStatus().name().toLowerCase());
+
+    if(interview.getInterviewType() != null) {
+      generator.writeObjectFieldStart("interview");
+      generator.writeNumberField("id", interview.getInterviewType().getId());
+      writeStringField(generator, "name", interview.getInterviewType().getName());
+      generator.writeEndObject();
+    }
+
+    if(interview.getOrganizer() != null) {
+      generator.writeObjectFieldStart("organizer");
+      generator.writeNumberField("id", interview.getOrganizer().getId());
+      writeStringField(generator, "name", interview.getOrganizer().getName());
+      generator.writeEndObject();
+    }
+
+    generator.writeArrayFieldStart("interviewers");
+    if(interview.getInterviewers() != null) {
+      for(Interviewer interviewer : interview.getInterviewers()) {
+        generator.writeStartObject();
+        generator.writeNumberField("id", interviewer.getId());
+        writeStringField(generator, "name", interviewer.getName());
+        writeStringField(generator, "email", interviewer.getEmail());
+        writeStringField(generator, "scorecard_id", interviewer.getScorecardId());
+        generator.writeEndObject();
+      }
+    }
+    generator.writeEndArray();
+
+    generator.writeEndObject();
+  }
+
+  public static void writeApplication(JsonGenerator generator, Application application)
+      throws IOException {
+    generator.writeStartObject();
+    generator.writeNumberField("id", application.getId());
+    generator.writeNumberField("candidate_id", application.getCandidateId());
+
+    generator.writeArrayFieldStart("jobs");
+    List<String> jobs = application.getJobs();
+    if(jobs != null) {
+      for(String job : jobs) {
+        generator.writeStartObject();
+        writeStringField(generator, "name", job);
+        generator.writeEndObject();
+      }
+    }
+    generator.writeEndArray();
+
+    generator.writeEndObject();
+  }
+
+  public static void writeCandidate(JsonGenerator generator, Candidate candidate) throws IOException {
+    generator.writeStartObject();
+    generator.writeNumberField("id", candidate.getId());
+    writeStringField(generator, "first_name", candidate.getFirstName());
+    writeStringField(generator, "last_name", candidate.getLastName());
+    writeStringField(generator, "company", candidate.getCompany());
+    writeStringField(generator, "title", candidate.getTitle());
+    writeDateField(generator, "created_at", candidate.getCreatedAt());
+    writeStringField(generator, "photo_url", candidate.getPhotoURL());
+    writeTuplesField(generator, "phone_numbers", candidate.getPhoneNumbers());
+    writeTuplesField(generator, "email_addresses", candidate.getEmailAddresses());
+    writeTuplesField(generator, "website_addresses", candidate.getWebsites());
+    generator.writeEndObject();
+  }
+
+  /**
+   * Writes {"value": ..., "type": ...} objects, i.e. a candidate's email addresses
+   */
+  private static void writeTuplesField(JsonGenerator generator, String field,
+      List<Tuple<String, String>> tuples) throws IOException {
+    generator.writeArrayFieldStart(field);
+    if(tuples != null) {
+      for(Tuple<String, String> tuple : tuples) {
+        generator.writeStartObject();
+        writeStringField(generator, "value", tuple.getVal1());
+        writeStringField(generator, "type", tuple.getVal2());
+        generator.writeEndObject();
+      }
+    }
+    generator.writeEndArray();
+  }
+
+  private static void writeDateField(JsonGenerator generator, String field, Date date)
+      throws IOException {
+    writeStringField(generator, field, date == null ? null : DateUtil.getEpochStringFromDate(date));
+  }
+
+  private static void writeStringField(JsonGenerator generator, String field, String value)
+      throws IOException {
+    if(value == null) {
+      generator.writeNullField(field);
+    } else {
+      generator.writeStringField(field, value);
+    }
+  }
+}
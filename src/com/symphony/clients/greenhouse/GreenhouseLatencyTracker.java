@@ -0,0 +1,73 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.greenhouse;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latencies of an endpoint's most recent calls, for deciding when a call is slow
+ */
+
+public final class GreenhouseLatencyTracker {
+
+  private static final int WINDOW_SIZE = 256;
+
+  /** Percentiles over fewer samples than this are too noisy to act on */
+  private static final int MIN_SAMPLES = 20;
+
+  private final long[] latencies;
+  private int next;
+  private int count;
+
+  public GreenhouseLatencyTracker() {
+    this.latencies = new long[WINDOW_SIZE];
+  }
+
+  public synchronized void record(long latencyMillis) {
+    latencies[next] = latencyMillis;
+    next = (next + 1) % latencies.length;
+    count = Math.min(count + 1, latencies.length);
+  }
+
+  /**
+   * Returns the percentile of the recent latencies, or -1 if there are too few yet
+   * @param percentile between 0 and 100
+   * @return
+   */
+  public long getPercentileMillis(double percentile) {
+    long[] sorted;
+    synchronized(this) {
+      if(count < MIN_SAMPLES) {
+        return -1;
+      }
+      sorted = Arrays.copyOf(latencies, count);
+    }
+
+    Arrays.sort(sorted);
+    int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.greenhouse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token bucket that paces requests to Harvest, adapting its rate to what Harvest reports
+ *
+ * The ceiling comes from the X-RateLimit-Limit header (requests per 10 second window) and
+ * X-RateLimit-Remaining caps how many requests may go out in a burst. The rate grows additively
+ * while responses succeed and halves on every 429, which also pauses all requests for the
+ * Retry-After period. Interactive requests always go ahead of waiting bulk requests.
+ */
+
+public final class GreenhouseRateLimiter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GreenhouseRateLimiter.class);
+
+  /** Harvest counts requests over a rolling 10 second window */
+  private static final int RATE_LIMIT_WINDOW_SECONDS = 10;
+
+  private static final double MIN_PERMITS_PER_SECOND = 0.1;
+  private static final double ADDITIVE_INCREASE = 0.1;
+  private static final double MULTIPLICATIVE_DECREASE = 0.5;
+
+  /** Upper bound on how long a waiter sleeps before re-checking, in case it missed a signal */
+  private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+  public enum Priority {
+    /** Needed to send a reminder on time, i.e. enriching an interview */
+    INTERACTIVE,
+    /** Background work that can wait, i.e. syncing the schedule */
+    BULK
+  }
+
+  private final ReentrantLock lock;
+  private final Condition permitsChanged;
+
+  private double permitsPerSecond;
+  private double maxPermitsPerSecond;
+  private double storedPermits;
+  private long lastRefillNanos;
+  private long blockedUntilNanos;
+  private int waitingInteractiveRequests;
+
+  public GreenhouseRateLimiter(double initialPermitsPerSecond) {
+    this.lock = new ReentrantLock();
+    this.permitsChanged = lock.newCondition();
+
+    this.permitsPerSecond = Math.max(MIN_PERMITS_PER_SECOND, initialPermitsPerSecond);
+    this.maxPermitsPerSecond = this.permitsPerSecond;
+    this.storedPermits = 1;
+    this.lastRefillNanos = System.nanoTime();
+    this.blockedUntilNanos = this.lastRefillNanos;
+  }
+
+  /**
+   * Blocks until a request of this priority may be sent
+   * @param priority
+   * @throws InterruptedException
+   */
+  public void acquire(Priority priority) throws InterruptedException {
+    lock.lock();
+    try {
+      if(priority == Priority.INTERACTIVE) {
+        waitingInteractiveRequests++;
+      }
+
+      try {
+        while(true) {
+          long now = System.nanoTime();
+          refill(now);
+
+          long waitNanos;
+          if(now - blockedUntilNanos < 0) {
+            waitNanos = blockedUntilNanos - now;
+          } else if(priority == Priority.BULK && waitingInteractiveRequests > 0) {
+            waitNanos = MAX_WAIT_NANOS;
+          } else if(storedPermits >= 1) {
+            storedPermits -= 1;
+            return;
+          } else {
+            waitNanos = (long) ((1 - storedPermits) / permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+          }
+
+          permitsChanged.awaitNanos(Math.max(1, Math.min(waitNanos, MAX_WAIT_NANOS)));
+        }
+      } finally {
+        if(priority == Priority.INTERACTIVE) {
+          waitingInteractiveRequests--;
+          permitsChanged.signalAll();
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Adapts the rate to a response from Harvest
+   * @param statusCode
+   * @param limitHeader value of X-RateLimit-Limit, or null
+   * @param remainingHeader value of X-RateLimit-Remaining, or null
+   * @param retryAfterHeader value of Retry-After, or null
+   */
+  public void onResponse(int statusCode, String limitHeader, String remainingHeader,
+      String retryAfterHeader) {
+    lock.lock();
+    try {
+      long now = System.nanoTime();
+      refill(now);
+
+      int limit = parseInt(limitHeader);
+      if(limit > 0) {
+        maxPermitsPerSecond = (double) limit / RATE_LIMIT_WINDOW_SECONDS;
+      }
+
+      if(statusCode == 429) {
+        permitsPerSecond = Math.max(MIN_PERMITS_PER_SECOND, permitsPerSecond * MULTIPLICATIVE_DECREASE);
+        storedPermits = 0;
+
+        int retryAfterSeconds = parseInt(retryAfterHeader);
+        if(retryAfterSeconds < 0) {
+          retryAfterSeconds = RATE_LIMIT_WINDOW_SECONDS;
+        }
+        blockedUntilNanos = Math.max(blockedUntilNanos, now + TimeUnit.SECONDS.toNanos(retryAfterSeconds));
+        LOG.warn("Greenhouse rate limited, pausing for " + retryAfterSeconds + "s and slowing to " +
+            permitsPerSecond + " requests/s");
+      } else {
+        permitsPerSecond = Math.min(maxPermitsPerSecond, permitsPerSecond + ADDITIVE_INCREASE);
+      }
+
+      //Never burst past what Harvest says is left in the current window
+      int remaining = parseInt(remainingHeader);
+      if(remaining >= 0) {
+        storedPermits = Math.min(storedPermits, remaining);
+      }
+
+      permitsChanged.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public double getPermitsPerSecond() {
+    lock.lock();
+    try {
+      return permitsPerSecond;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Adds the permits earned since the last refill, holding at most one second's worth
+   */
+  private void refill(long now) {
+    double elapsedSeconds = (double) (now - lastRefillNanos) / TimeUnit.SECONDS.toNanos(1);
+    storedPermits = Math.min(Math.max(1, permitsPerSecond), storedPermits + elapsedSeconds * permitsPerSecond);
+    lastRefillNanos = now;
+  }
+
+  private static int parseInt(String value) {
+    if(value == null) {
+      return -1;
+    }
+
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException exception) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.greenhouse;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The decoded body of a Greenhouse response along with its pagination links
+ *
+ * Harvest paginates with RFC 5988 Link headers, e.g.
+ * <https://harvest.greenhouse.io/v1/candidates?page=2&per_page=100>; rel="next"
+ */
+
+public final class GreenhouseResponse<T> {
+
+  private static final Pattern LINK_PATTERN = Pattern.compile("<([^>]*)>\\s*;\\s*rel=\"?([^\",;]+)\"?");
+  private static final Pattern PAGE_PATTERN = Pattern.compile("([?&])page=(\\d+)");
+
+  private final T body;
+  private final Map<String, String> links;
+
+  public GreenhouseResponse(T body, String linkHeader) {
+    this.body = body;
+    this.links = parseLinkHeader(linkHeader);
+  }
+
+  public T getBody() {
+    return body;
+  }
+
+  /**
+   * Returns the URL for the relation (i.e. "next" or "last"), or null if there is none
+   * @param relation
+   * @return
+   */
+  public String getLinkURL(String relation) {
+    return links.get(relation);
+  }
+
+  public String getNextPageURL() {
+    return getLinkURL("next");
+  }
+
+  public String getLastPageURL() {
+    return getLinkURL("last");
+  }
+
+  /**
+   * Parses a Link header into a map of relation to URL
+   * @param linkHeader
+   * @return
+   */
+  public static Map<String, String> parseLinkHeader(String linkHeader) {
+    if(linkHeader == null || linkHeader.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    Map<String, String> links = new HashMap<>();
+    Matcher matcher = LINK_PATTERN.matcher(linkHeader);
+    while(matcher.find()) {
+      links.put(matcher.group(2).trim(), matcher.group(1).trim());
+    }
+    return links;
+  }
+
+  /**
+   * Returns the value of the page parameter in the URL, or -1 if it has none
+   * @param url
+   * @return
+   */
+  public static int getPageNumber(String url) {
+    if(url == null) {
+      return -1;
+    }
+
+    Matcher matcher = PAGE_PATTERN.matcher(url);
+    if(matcher.find()) {
+      return Integer.parseInt(matcher.group(2));
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the URL with its page parameter replaced by the page number
+   * @param url
+   * @param pageNumber
+   * @return
+   */
+  public static String getURLForPage(String url, int pageNumber) {
+    return PAGE_PATTERN.matcher(url).replaceFirst("$1page=" + pageNumber);
+  }
+
+  @Override
+  public String toString() {
+    return "GreenhouseResponse{" +
+        "links=" + links +
+        ", body=" + body +
+        '}';
+  }
+}
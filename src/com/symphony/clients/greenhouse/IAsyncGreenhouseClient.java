@@ -0,0 +1,66 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.greenhouse;
+
+import com.symphony.models.Application;
+import com.symphony.models.Candidate;
+import com.symphony.models.Interview;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Defines the functionality of a Greenhouse client that never blocks the caller
+ */
+public interface IAsyncGreenhouseClient {
+
+  /** For authenticating the client */
+  CompletableFuture<Void> authenticateAsync();
+
+  /** For getting the Application - returns a Candidate ID */
+  CompletableFuture<Application> getApplicationAsync(String applicationId);
+
+  /** For getting the Candidate */
+  CompletableFuture<Candidate> getCandidateAsync(String candidateId);
+
+  /**
+   * For getting many Applications and Candidates in as few requests as possible - keyed by id
+   * Ids that fail to load are missing from the map
+   */
+  CompletableFuture<Map<Integer, Application>> getApplicationsAsync(Collection<Integer> applicationIds);
+  CompletableFuture<Map<Integer, Candidate>> getCandidatesAsync(Collection<Integer> candidateIds);
+
+  /** For getting Interviews - each Interview has an applicationId */
+  CompletableFuture<Interview> getScheduledInterviewAsync(String interviewId);
+  CompletableFuture<ArrayList<Interview>> getScheduledInterviewsAsync();
+  CompletableFuture<ArrayList<Interview>> getScheduledInterviewsStartingAfterAsync(Date date);
+  CompletableFuture<ArrayList<Interview>> getScheduledInterviewsStartingBetweenAsync(Date after, Date before);
+  CompletableFuture<ArrayList<Interview>> getScheduledInterviewsCreatedAfterAsync(Date date);
+  CompletableFuture<ArrayList<Interview>> getScheduledInterviewsUpdatedAfterAsync(Date date);
+}
@@ -29,7 +29,9 @@ import com.symphony.models.Candidate;
 import com.symphony.models.Interview;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.Map;
 
 /**
  * Created by ryan.dsouza on 7/21/16.
@@ -47,11 +49,19 @@ public interface IGreenhouseClient {
   /** For getting the Candidate */
   Candidate getCandidate(String candidateId);
 
+  /**
+   * For getting many Applications and Candidates in as few requests as possible - keyed by id
+   * Ids that fail to load are missing from the map
+   */
+  Map<Integer, Application> getApplications(Collection<Integer> applicationIds);
+  Map<Integer, Candidate> getCandidates(Collection<Integer> candidateIds);
+
   /** For getting Interviews - each Interview has an applicationId */
   Interview getScheduledInterview(String interviewId);
   ArrayList<Interview> getScheduledInterviews();
   ArrayList<Interview> getScheduledInterviewsStartingAfterNow();
   ArrayList<Interview> getScheduledInterviewsStartingAfter(Date date);
+  ArrayList<Interview> getScheduledInterviewsStartingBetween(Date after, Date before);
   ArrayList<Interview> getScheduledInterviewsCreatedAfter(Date date);
   ArrayList<Interview> getScheduledInterviewsUpdatedAfter(Date date);
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.greenhouse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent identical requests into one
+ *
+ * While a request for a key is in flight, every other caller asking for the same key gets
+ * the in-flight future instead of starting a new request. The key is forgotten as soon as
+ * the request completes, so nothing is cached past that point.
+ */
+
+public final class SingleFlight {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SingleFlight.class);
+
+  private final ConcurrentMap<String, CompletableFuture<?>> inFlight;
+  private final AtomicLong calls;
+  private final AtomicLong coalescedCalls;
+
+  public SingleFlight() {
+    this.inFlight = new ConcurrentHashMap<>();
+    this.calls = new AtomicLong();
+    this.coalescedCalls = new AtomicLong();
+  }
+
+  /**
+   * Returns the in-flight request for the key, or starts one with the supplier
+   * @param key
+   * @param request
+   * @return
+   */
+  @SuppressWarnings("unchecked")
+  public <T> CompletableFuture<T> execute(String key, Supplier<CompletableFuture<T>> request) {
+    calls.incrementAndGet();
+
+    CompletableFuture<T> placeholder = new CompletableFuture<>();
+    CompletableFuture<T> existing = (CompletableFuture<T>) inFlight.putIfAbsent(key, placeholder);
+    if(existing != null) {
+      long coalesced = coalescedCalls.incrementAndGet();
+      LOG.debug("Joined in-flight request for: " + key + " (" + coalesced + " of " + calls.get() +
+          " calls coalesced)");
+      return existing;
+    }
+
+    CompletableFuture<T> started;
+    try {
+      started = request.get();
+    } catch (RuntimeException exception) {
+      inFlight.remove(key, placeholder);
+      placeholder.completeExceptionally(exception);
+      throw exception;
+    }
+
+    //Forget the key before completing so callers arriving after completion start a fresh request
+    started.whenComplete((result, throwable) -> {
+      inFlight.remove(key, placeholder);
+      if(throwable != null) {
+        placeholder.completeExceptionally(throwable);
+      } else {
+        placeholder.complete(result);
+      }
+    });
+    return placeholder;
+  }
+
+  /**
+   * Returns how many calls went through this SingleFlight
+   * @return
+   */
+  public long getCalls() {
+    return calls.get();
+  }
+
+  /**
+   * Returns how many calls shared another caller's request instead of making their own
+   * @return
+   */
+  public long getCoalescedCalls() {
+    return coalescedCalls.get();
+  }
+
+  /**
+   * Returns how many distinct requests are in flight right now
+   * @return
+   */
+  public int getInFlightCount() {
+    return inFlight.size();
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.symphony;
+
+import com.symphony.api.agent.client.ApiException;
+import com.symphony.api.agent.model.V2Message;
+import com.symphony.api.pod.model.Stream;
+import com.symphony.api.pod.model.User;
+import com.symphony.api.pod.model.V2RoomDetail;
+import com.symphony.configurations.IConfigurationProvider;
+import com.symphony.formatters.MessageML;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches IM streams in front of another ISymphonyClient
+ *
+ * Reminders for the same interview panel go to the same IM, so once the IM is created its
+ * stream id is reused instead of creating it again. If sending to a cached stream fails because
+ * of the stream, it is forgotten so the next reminder creates it again.
+ */
+
+public final class CachingSymphonyClient implements ISymphonyClient {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CachingSymphonyClient.class);
+
+  private final ISymphonyClient symphonyClient;
+  private final SymphonyStreamCache streamCache;
+
+  public CachingSymphonyClient(ISymphonyClient symphonyClient,
+      IConfigurationProvider configurationProvider) {
+    this(symphonyClient, new SymphonyStreamCache(configurationProvider.maxCachedStreams(),
+        configurationProvider.getStreamCacheFile()));
+  }
+
+  public CachingSymphonyClient(ISymphonyClient symphonyClient, SymphonyStreamCache streamCache) {
+    this.symphonyClient = symphonyClient;
+    this.streamCache = streamCache;
+  }
+
+  @Override
+  public void authenticate() {
+    symphonyClient.authenticate();
+  }
+
+  @Override
+  public List<V2RoomDetail> getRoomsForSearchQuery(String query) {
+    return symphonyClient.getRoomsForSearchQuery(query);
+  }
+
+  @Override
+  public V2RoomDetail getRoomForSearchQuery(String query) {
+    return symphonyClient.getRoomForSearchQuery(query);
+  }
+
+  @Override
+  public V2Message sendMessage(String roomID, MessageML messageML) {
+    try {
+      return symphonyClient.sendMessage(roomID, messageML);
+    } catch (RuntimeException exception) {
+      invalidateIfStreamError(roomID, exception);
+      throw exception;
+    }
+  }
+
+  @Override
+  public V2Message sendMessage(String roomID, String text) {
+    try {
+      return symphonyClient.sendMessage(roomID, text);
+    } catch (RuntimeException exception) {
+      invalidateIfStreamError(roomID, exception);
+      throw exception;
+    }
+  }
+
+  @Override
+  public V2Message sendMessage(V2RoomDetail roomDetail, MessageML messageML) {
+    return symphonyClient.sendMessage(roomDetail, messageML);
+  }
+
+  @Override
+  public User getUserForEmailAddress(String emailAddress) {
+    return symphonyClient.getUserForEmailAddress(emailAddress);
+  }
+
+  @Override
+  public Map<String, User> getUsersForEmailAddresses(Collection<String> emailAddresses) {
+    return symphonyClient.getUsersForEmailAddresses(emailAddresses);
+  }
+
+  @Override
+  public Long getBotUserId() {
+    return symphonyClient.getBotUserId();
+  }
+
+  @Override
+  public Map<Long, SymphonyPresence> getPresences() {
+    return symphonyClient.getPresences();
+  }
+
+  @Override
+  public String createDatafeed() {
+    return symphonyClient.createDatafeed();
+  }
+
+  @Override
+  public List<V2Message> readDatafeed(String datafeedId, int maxMessages) {
+    return symphonyClient.readDatafeed(datafeedId, maxMessages);
+  }
+
+  @Override
+  public Stream getStreamWithUser(User user) {
+    return getStreamWithUsers(Collections.singletonList(user));
+  }
+
+  @Override
+  public Stream getStreamWithUsers(User... users) {
+    List<User> usersList = new ArrayList<>();
+    for(User user : users) {
+      if(user != null) {
+        usersList.add(user);
+      }
+    }
+    return getStreamWithUsers(usersList);
+  }
+
+  @Override
+  public Stream getStreamWithUsers(List<User> users) {
+    List<Long> userIds = new ArrayList<>();
+    for(User user : users) {
+      if(user != null) {
+        userIds.add(user.getId());
+      }
+    }
+    String key = SymphonyStreamCache.getKey(userIds);
+
+    String streamId = streamCache.get(key);
+    if(streamId != null) {
+      Stream stream = new Stream();
+      stream.setId(streamId);
+      return stream;
+    }
+
+    Stream stream = symphonyClient.getStreamWithUsers(users);
+    if(stream != null) {
+      streamCache.put(key, stream.getId());
+    }
+    return stream;
+  }
+
+  public SymphonyStreamCache getStreamCache() {
+    return streamCache;
+  }
+
+  /**
+   * Forgets the stream if sending to it failed because the stream is gone or we can't post in it
+   * @param streamId
+   * @param exception
+   */
+  private void invalidateIfStreamError(String streamId, RuntimeException exception) {
+    if(!(exception.getCause() instanceof ApiException)) {
+      return;
+    }
+
+    int code = ((ApiException) exception.getCause()).getCode();
+    if(code == 400 || code == 403 || code == 404) {
+      LOG.debug("Sending to stream " + streamId + " failed with " + code + ", forgetting it");
+      streamCache.invalidateStream(streamId);
+    }
+  }
+}
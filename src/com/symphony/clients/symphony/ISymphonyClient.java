@@ -30,7 +30,9 @@ import com.symphony.api.pod.model.User;
 import com.symphony.api.pod.model.V2RoomDetail;
 import com.symphony.formatters.MessageML;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Defines the functionality of a Symphony client
@@ -40,6 +42,7 @@ public interface ISymphonyClient {
 
   /** For authentication */
   void authenticate();
+  Long getBotUserId();
 
   /** For searching rooms */
   List<V2RoomDetail> getRoomsForSearchQuery(String query);
@@ -50,8 +53,16 @@ public interface ISymphonyClient {
   V2Message sendMessage(String roomID, String text);
   V2Message sendMessage(V2RoomDetail roomDetail, MessageML messageML);
 
-  /** For finding users */
+  /** For finding users - a user the pod doesn't have is missing, a pod that can't answer throws */
   User getUserForEmailAddress(String emailAddress);
+  Map<String, User> getUsersForEmailAddresses(Collection<String> emailAddresses);
+
+  /** For finding out who is around */
+  Map<Long, SymphonyPresence> getPresences();
+
+  /** For reading messages */
+  String createDatafeed();
+  List<V2Message> readDatafeed(String datafeedId, int maxMessages);
 
   /** For finding/creating streams related to users */
   Stream getStreamWithUser(User user);
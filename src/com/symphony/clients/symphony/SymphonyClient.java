@@ -24,22 +24,33 @@
 
 package com.symphony.clients.symphony;
 
+import com.symphony.api.agent.api.DatafeedApi;
 import com.symphony.api.agent.api.MessagesApi;
+import com.symphony.api.agent.model.Datafeed;
+import com.symphony.api.agent.model.V2BaseMessage;
 import com.symphony.api.agent.model.V2Message;
+import com.symphony.api.agent.model.V2MessageList;
 import com.symphony.api.agent.model.V2MessageSubmission;
 import com.symphony.api.auth.api.AuthenticationApi;
 import com.symphony.api.auth.model.Token;
 import com.symphony.api.pod.api.PresenceApi;
 import com.symphony.api.pod.api.RoomMembershipApi;
+import com.symphony.api.pod.api.SessionApi;
 import com.symphony.api.pod.api.StreamsApi;
 import com.symphony.api.pod.api.UsersApi;
+import com.symphony.api.pod.model.PresenceList;
 import com.symphony.api.pod.model.RoomSearchCriteria;
 import com.symphony.api.pod.model.RoomSearchResults;
+import com.symphony.api.pod.model.SessionInfo;
 import com.symphony.api.pod.model.Stream;
 import com.symphony.api.pod.model.User;
 import com.symphony.api.pod.model.UserIdList;
+import com.symphony.api.pod.model.UserPresence;
+import com.symphony.api.pod.model.UserV2;
+import com.symphony.api.pod.model.V2UserList;
 import com.symphony.api.pod.model.V2RoomDetail;
 import com.symphony.configurations.symphony.ISymphonyConfigurationProvider;
+import com.symphony.fixtures.HttpFixtures;
 import com.symphony.formatters.MessageML;
 
 import org.slf4j.Logger;
@@ -47,8 +58,12 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Interacts with the Symphony platform API
@@ -58,18 +73,28 @@ public class SymphonyClient implements ISymphonyClient {
 
   private final Logger LOG = LoggerFactory.getLogger(SymphonyClient.class);
 
+  /** Most email addresses the pod looks up in a single users request */
+  private static final int MAX_EMAILS_PER_REQUEST = 100;
+
   private final AuthenticationApi sbeApi;
   private final AuthenticationApi keyManagerApi;
   private final MessagesApi messagesApi;
+  private final DatafeedApi datafeedApi;
   private final PresenceApi presenceApi;
+  private final SessionApi sessionApi;
   private final UsersApi usersApi;
   private final StreamsApi streamsApi;
   private final RoomMembershipApi roomMembershipApi;
 
-  private Token sessionToken;
-  private Token keyManagerToken;
+  private final SymphonyTokenManager tokenManager;
+
+  private volatile Long botUserId;
 
   public SymphonyClient(ISymphonyConfigurationProvider configurationProvider) {
+    this(configurationProvider, HttpFixtures.off());
+  }
+
+  public SymphonyClient(ISymphonyConfigurationProvider configurationProvider, HttpFixtures fixtures) {
 
     com.symphony.api.agent.client.ApiClient agentClient = new com.symphony.api.agent.client.ApiClient();
     com.symphony.api.auth.client.ApiClient keyManagerClient = new com.symphony.api.auth.client.ApiClient();
@@ -81,12 +106,22 @@ public class SymphonyClient implements ISymphonyClient {
     sbeClient.setBasePath(configurationProvider.getSBEBasePath());
     keyManagerClient.setBasePath(configurationProvider.getKeyManagerBasePath());
 
+    if(fixtures.getMode() != HttpFixtures.Mode.OFF) {
+      SymphonyHttpFixtureFilter fixtureFilter = new SymphonyHttpFixtureFilter(fixtures);
+      podApiClient.getHttpClient().register(fixtureFilter);
+      agentClient.getHttpClient().register(fixtureFilter);
+      sbeClient.getHttpClient().register(fixtureFilter);
+      keyManagerClient.getHttpClient().register(fixtureFilter);
+    }
+
     this.messagesApi = new MessagesApi(agentClient);
+    this.datafeedApi = new DatafeedApi(agentClient);
     this.keyManagerApi = new AuthenticationApi(keyManagerClient);
     this.sbeApi = new AuthenticationApi(sbeClient);
 
     this.usersApi = new UsersApi(podApiClient);
     this.presenceApi = new PresenceApi(podApiClient);
+    this.sessionApi = new SessionApi(podApiClient);
     this.streamsApi = new StreamsApi(podApiClient);
     this.roomMembershipApi = new RoomMembershipApi(podApiClient);
 
@@ -94,24 +129,37 @@ public class SymphonyClient implements ISymphonyClient {
     System.setProperty("javax.net.ssl.keyStore", certificate.getAbsolutePath());
     System.setProperty("javax.net.ssl.keyStorePassword", configurationProvider.getKeystorePassword());
     System.setProperty("javax.net.ssl.keyStoreType", configurationProvider.getKeystoreType());
+
+    this.tokenManager = new SymphonyTokenManager(this::authenticateWithSymphony,
+        configurationProvider.getTokenRefreshMinutes(), TimeUnit.MINUTES);
   }
 
   /**
-   * Authenticates the SymphonyClient
+   * Authenticates the SymphonyClient and keeps its tokens fresh from then on
    */
   @Override
   public void authenticate() {
+    tokenManager.start();
+  }
+
+  public SymphonyTokenManager getTokenManager() {
+    return tokenManager;
+  }
+
+  /**
+   * Private helper method to get a new session token and key manager token
+   * @return
+   */
+  private SymphonyTokenManager.Tokens authenticateWithSymphony() {
 
     try {
       Token sessionToken = sbeApi.v1AuthenticatePost();
       if(sessionToken.getToken() != null && sessionToken.getToken().length() != 0) {
-        this.sessionToken = sessionToken;
         Token keyManagerToken = keyManagerApi.v1AuthenticatePost();
 
         if(keyManagerToken.getToken() != null && keyManagerToken.getToken().length() != 0) {
-          this.keyManagerToken = keyManagerToken;
           LOG.debug("successfully authenticated symphony client");
-          return;
+          return new SymphonyTokenManager.Tokens(sessionToken.getToken(), keyManagerToken.getToken());
         }
       }
     } catch(com.symphony.api.auth.client.ApiException e) {
@@ -120,19 +168,168 @@ public class SymphonyClient implements ISymphonyClient {
     throw new RuntimeException("failed to authenticate symphony client");
   }
 
+  /**
+   * Returns the bot's own user id, i.e. to tell its messages apart from replies
+   * Looked up once, as it never changes
+   * @return the id, or null if it could not be looked up
+   */
+  @Override
+  public Long getBotUserId() {
+    Long userId = botUserId;
+    if(userId == null) {
+      try {
+        SessionInfo sessionInfo = callWithTokens(tokens -> sessionApi.v1SessionInfoGet(tokens.getSessionToken()));
+        userId = sessionInfo == null ? null : sessionInfo.getUserId();
+        botUserId = userId;
+      } catch (com.symphony.api.pod.client.ApiException e) {
+        LOG.error("Could not look up the bot's user", e);
+      }
+    }
+    return userId;
+  }
+
   /**
    * Returns a user associated with that email address
    * @param emailAddress
-   * @return
+   * @return the user, or null if the pod has no user with the address
+   * @throws RuntimeException if the pod couldn't be asked, so it isn't mistaken for a missing user
    */
   @Override
   public User getUserForEmailAddress(String emailAddress) {
     try {
-      User user = usersApi.v1UserGet(emailAddress, this.sessionToken.getToken(), true);
+      User user = callWithTokens(tokens ->
+          usersApi.v1UserGet(emailAddress, tokens.getSessionToken(), true));
       return user;
     } catch (com.symphony.api.pod.client.ApiException e) {
-      LOG.error("Could not find user: " + emailAddress, e);
-      return null;
+      if(isNotFound(e)) {
+        LOG.debug("No user for: " + emailAddress);
+        return null;
+      }
+      throw new RuntimeException("Could not look up user: " + emailAddress, e);
+    }
+  }
+
+  /**
+   * Returns the users associated with the email addresses, keyed by the email address asked for
+   * Addresses are looked up in batches - addresses without a user are left out
+   * @param emailAddresses
+   * @return
+   * @throws RuntimeException if the pod couldn't be asked, so it isn't mistaken for missing users
+   */
+  @Override
+  public Map<String, User> getUsersForEmailAddresses(Collection<String> emailAddresses) {
+    List<String> uniqueEmailAddresses = new ArrayList<>();
+    Map<String, String> requestedEmailAddresses = new HashMap<>();
+    for(String emailAddress : emailAddresses) {
+      if(emailAddress != null && requestedEmailAddresses.put(emailAddress.toLowerCase(), emailAddress) == null) {
+        uniqueEmailAddresses.add(emailAddress);
+      }
+    }
+
+    Map<String, User> users = new HashMap<>();
+    for(int start = 0; start < uniqueEmailAddresses.size(); start += MAX_EMAILS_PER_REQUEST) {
+      List<String> batch = uniqueEmailAddresses.subList(start,
+          Math.min(start + MAX_EMAILS_PER_REQUEST, uniqueEmailAddresses.size()));
+
+      try {
+        V2UserList result = callWithTokens(tokens -> usersApi.v3UsersGet(tokens.getSessionToken(),
+            null, String.join(",", batch), null, true));
+        //No list at all says nothing about the addresses, unlike an empty one
+        if(result == null || result.getUsers() == null) {
+          throw new RuntimeException("No user list in the answer for " + batch.size() + " users");
+        }
+
+        for(UserV2 userV2 : result.getUsers()) {
+          String emailAddress = userV2.getEmailAddress() == null ? null :
+              requestedEmailAddresses.get(userV2.getEmailAddress().toLowerCase());
+          if(emailAddress != null) {
+            users.put(emailAddress, toUser(userV2));
+          }
+        }
+      } catch (com.symphony.api.pod.client.ApiException e) {
+        if(!isRejected(e)) {
+          throw new RuntimeException("Could not look up " + batch.size() + " users", e);
+        }
+
+        //The pod turned the batch down, so each address is looked up on its own
+        LOG.error("Could not look up users in a batch, looking them up one by one", e);
+        for(String emailAddress : batch) {
+          User user = getUserForEmailAddress(emailAddress);
+          if(user != null) {
+            users.put(emailAddress, user);
+          }
+        }
+      }
+    }
+    return users;
+  }
+
+  /**
+   * Returns the presence of every user in the pod - the pod only hands presence out in bulk
+   * @return presences keyed by user id, empty if they could not be looked up
+   */
+  @Override
+  public Map<Long, SymphonyPresence> getPresences() {
+    Map<Long, SymphonyPresence> presences = new HashMap<>();
+    try {
+      PresenceList presenceList = callWithTokens(tokens -> presenceApi.v1PresenceGet(tokens.getSessionToken()));
+      if(presenceList == null) {
+        return presences;
+      }
+
+      for(UserPresence userPresence : presenceList) {
+        String category = userPresence.getCategory() == null ? null : userPresence.getCategory().name();
+        presences.put(userPresence.getUserId(), SymphonyPresence.fromCategory(category));
+      }
+    } catch (com.symphony.api.pod.client.ApiException e) {
+      LOG.error("Could not look up presence", e);
+    }
+    return presences;
+  }
+
+
+  /**
+   * Creates a datafeed of the messages the bot receives from now on
+   * @return the datafeed's id
+   */
+  @Override
+  public String createDatafeed() {
+    try {
+      Datafeed datafeed = callWithTokens(tokens -> datafeedApi.v1DatafeedCreatePost(
+          tokens.getSessionToken(), tokens.getKeyManagerToken()));
+      if(datafeed != null && datafeed.getId() != null) {
+        LOG.debug("created datafeed " + datafeed.getId());
+        return datafeed.getId();
+      }
+    } catch(com.symphony.api.agent.client.ApiException e) {
+      throw new RuntimeException("failed to create datafeed", e);
+    }
+    throw new RuntimeException("failed to create datafeed");
+  }
+
+  /**
+   * Returns the messages received since the last read, waiting a while for some if there are none
+   * @param datafeedId
+   * @param maxMessages
+   * @return
+   */
+  @Override
+  public List<V2Message> readDatafeed(String datafeedId, int maxMessages) {
+    try {
+      V2MessageList messageList = callWithTokens(tokens -> datafeedApi.v2DatafeedIdReadGet(datafeedId,
+          tokens.getSessionToken(), tokens.getKeyManagerToken(), maxMessages));
+
+      List<V2Message> messages = new ArrayList<>();
+      if(messageList != null) {
+        for(V2BaseMessage message : messageList) {
+          if(message instanceof V2Message) {
+            messages.add((V2Message) message);
+          }
+        }
+      }
+      return messages;
+    } catch(com.symphony.api.agent.client.ApiException e) {
+      throw new RuntimeException("failed to read datafeed " + datafeedId, e);
     }
   }
 
@@ -176,7 +373,8 @@ public class SymphonyClient implements ISymphonyClient {
           userIdList.add(user.getId());
         }
       }
-      Stream stream = this.streamsApi.v1ImCreatePost(userIdList, sessionToken.getToken());
+      Stream stream = callWithTokens(tokens ->
+          this.streamsApi.v1ImCreatePost(userIdList, tokens.getSessionToken()));
       return stream;
     } catch (com.symphony.api.pod.client.ApiException exception) {
       LOG.error("Could not create stream", exception);
@@ -196,7 +394,8 @@ public class SymphonyClient implements ISymphonyClient {
 
     try {
       RoomSearchResults results =
-          streamsApi.v2RoomSearchPost(this.sessionToken.getToken(), searchCriteria, 0, 100);
+          callWithTokens(tokens ->
+              streamsApi.v2RoomSearchPost(tokens.getSessionToken(), searchCriteria, 0, 100));
 
       if(results.getCount() > 0) {
         return results.getRooms();
@@ -262,6 +461,81 @@ public class SymphonyClient implements ISymphonyClient {
     return this.sendMessage(roomID, messageML);
   }
 
+  /**
+   * Private helper method to convert the user the batch lookup returns to the user the v1 lookup returns
+   * @param userV2
+   * @return
+   */
+  private static User toUser(UserV2 userV2) {
+    User user = new User();
+    user.setId(userV2.getId());
+    user.setEmailAddress(userV2.getEmailAddress());
+    user.setFirstName(userV2.getFirstName());
+    user.setLastName(userV2.getLastName());
+    user.setDisplayName(userV2.getDisplayName());
+    user.setTitle(userV2.getTitle());
+    user.setCompany(userV2.getCompany());
+    user.setUsername(userV2.getUsername());
+    user.setLocation(userV2.getLocation());
+    return user;
+  }
+
+  /**
+   * Private helper method to make a call with the current tokens
+   * If Symphony rejects the tokens, the call is retried once with refreshed ones
+   * @param call
+   * @return
+   */
+  @SuppressWarnings("unchecked")
+  private <T, E extends Exception> T callWithTokens(TokenCall<T, E> call) throws E {
+    SymphonyTokenManager.Tokens tokens = tokenManager.getTokens();
+    try {
+      return call.call(tokens);
+    } catch (Exception exception) {
+      if(!isUnauthorized(exception)) {
+        throw (E) exception;
+      }
+      LOG.debug("symphony rejected the tokens, retrying with refreshed ones");
+    }
+    return call.call(tokenManager.refreshAfterRejection(tokens));
+  }
+
+  /**
+   * Private helper method for telling a user the pod doesn't have apart from the pod failing
+   * @param exception
+   * @return
+   */
+  private static boolean isNotFound(com.symphony.api.pod.client.ApiException exception) {
+    return exception.getCode() == 404;
+  }
+
+  /**
+   * Private helper method for telling a request the pod answered and turned down apart from one it
+   * couldn't answer - a server error, or no answer at all
+   * @param exception
+   * @return
+   */
+  private static boolean isRejected(com.symphony.api.pod.client.ApiException exception) {
+    return exception.getCode() >= 400 && exception.getCode() < 500;
+  }
+
+  private static boolean isUnauthorized(Exception exception) {
+    if(exception instanceof com.symphony.api.pod.client.ApiException) {
+      return ((com.symphony.api.pod.client.ApiException) exception).getCode() == 401;
+    }
+    if(exception instanceof com.symphony.api.agent.client.ApiException) {
+      return ((com.symphony.api.agent.client.ApiException) exception).getCode() == 401;
+    }
+    return false;
+  }
+
+  /**
+   * A call to Symphony that needs the tokens
+   */
+  private interface TokenCall<T, E extends Exception> {
+    T call(SymphonyTokenManager.Tokens tokens) throws E;
+  }
+
   /**
    * Private helper method to send a message to a room
    * @param roomID
@@ -275,8 +549,8 @@ public class SymphonyClient implements ISymphonyClient {
     }
 
     try {
-      V2Message result = messagesApi.v2StreamSidMessageCreatePost(roomID,
-          sessionToken.getToken(), keyManagerToken.getToken(), message);
+      V2Message result = callWithTokens(tokens -> messagesApi.v2StreamSidMessageCreatePost(roomID,
+          tokens.getSessionToken(), tokens.getKeyManagerToken(), message));
 
       if(result != null && result.getId() != null) {
         LOG.debug("successfully sent message: " + message);
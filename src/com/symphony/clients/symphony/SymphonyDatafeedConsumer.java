@@ -0,0 +1,144 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.symphony;
+
+import com.symphony.api.agent.model.V2Message;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Reads the messages the bot receives from a datafeed on a dedicated thread
+ *
+ * Each read long-polls the agent and returns up to a batch of messages, which are handed to the
+ * handler together. If the datafeed fails, i.e. it expired, a new one is created after a backoff.
+ */
+
+public final class SymphonyDatafeedConsumer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SymphonyDatafeedConsumer.class);
+
+  /** Most messages read at once */
+  private static final int MAX_MESSAGES_PER_READ = 100;
+
+  private static final long MIN_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(1);
+  private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  private final ISymphonyClient symphonyClient;
+  private final Consumer<List<V2Message>> handler;
+  private final Thread thread;
+
+  private final AtomicLong readCount;
+  private final AtomicLong messageCount;
+
+  private volatile boolean running;
+
+  /**
+   * @param symphonyClient
+   * @param handler called on the consumer's thread with every batch of messages read
+   */
+  public SymphonyDatafeedConsumer(ISymphonyClient symphonyClient, Consumer<List<V2Message>> handler) {
+    this.symphonyClient = symphonyClient;
+    this.handler = handler;
+    this.readCount = new AtomicLong();
+    this.messageCount = new AtomicLong();
+    this.thread = new Thread(this::consume, "symphony-datafeed");
+    this.thread.setDaemon(true);
+  }
+
+  public void start() {
+    running = true;
+    thread.start();
+  }
+
+  public void stop() {
+    running = false;
+    thread.interrupt();
+  }
+
+  public long getReadCount() {
+    return readCount.get();
+  }
+
+  public long getMessageCount() {
+    return messageCount.get();
+  }
+
+  /**
+   * Hands a batch to the handler - a bad batch is logged rather than taking the datafeed down
+   * @param messages
+   */
+  private void handle(List<V2Message> messages) {
+    try {
+      handler.accept(messages);
+    } catch (RuntimeException exception) {
+      LOG.error("Error handling " + messages.size() + " datafeed messages", exception);
+    }
+  }
+
+  /**
+   * Reads batches until stopped, recreating the datafeed whenever reading from it fails
+   */
+  private void consume() {
+    String datafeedId = null;
+    long backoffMillis = MIN_BACKOFF_MILLIS;
+
+    while(running) {
+      try {
+        if(datafeedId == null) {
+          datafeedId = symphonyClient.createDatafeed();
+        }
+
+        List<V2Message> messages = symphonyClient.readDatafeed(datafeedId, MAX_MESSAGES_PER_READ);
+        readCount.incrementAndGet();
+        backoffMillis = MIN_BACKOFF_MILLIS;
+
+        if(!messages.isEmpty()) {
+          messageCount.addAndGet(messages.size());
+          handle(messages);
+        }
+      } catch (RuntimeException exception) {
+        if(!running) {
+          return;
+        }
+
+        LOG.error("Error reading datafeed " + datafeedId + ", retrying in " + backoffMillis + "ms", exception);
+        datafeedId = null;
+        try {
+          Thread.sleep(backoffMillis);
+        } catch (InterruptedException interrupted) {
+          return;
+        }
+        backoffMillis = Math.min(MAX_BACKOFF_MILLIS, backoffMillis * 2);
+      }
+    }
+  }
+}
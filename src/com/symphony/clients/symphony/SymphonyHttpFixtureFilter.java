@@ -0,0 +1,133 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.symphony;
+
+import com.symphony.fixtures.HttpFixtureRecord;
+import com.symphony.fixtures.HttpFixtures;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.core.Response;
+
+/**
+ * Records the calls made through a Symphony ApiClient to HttpFixtures, or answers them from it
+ *
+ * Registered on the ApiClient's JAX-RS client, so it sees every call the generated APIs make.
+ * Tokens returned by the authentication endpoints are never written to the log.
+ */
+
+public final class SymphonyHttpFixtureFilter implements ClientRequestFilter, ClientResponseFilter {
+
+  private static final String STARTED_AT_PROPERTY = SymphonyHttpFixtureFilter.class.getName() + ".startedAt";
+  private static final byte[] REDACTED_TOKEN = "{\"token\":\"redacted\"}".getBytes(StandardCharsets.UTF_8);
+
+  private final HttpFixtures fixtures;
+
+  public SymphonyHttpFixtureFilter(HttpFixtures fixtures) {
+    this.fixtures = fixtures;
+  }
+
+  @Override
+  public void filter(ClientRequestContext requestContext) throws IOException {
+    if(fixtures.isRecording()) {
+      requestContext.setProperty(STARTED_AT_PROPERTY, fixtures.getElapsedMillis());
+      return;
+    }
+    if(!fixtures.isReplaying()) {
+      return;
+    }
+
+    HttpFixtureRecord record = fixtures.replay(HttpFixtureRecord.SYMPHONY, requestContext.getMethod(),
+        requestContext.getUri().toString(), getRequestBody(requestContext));
+    if(record == null) {
+      requestContext.abortWith(Response.status(404).build());
+      return;
+    }
+
+    Response.ResponseBuilder response = Response.status(record.getStatusCode())
+        .entity(new ByteArrayInputStream(record.getBody()));
+    for(Map.Entry<String, String> header : record.getHeaders().entrySet()) {
+      response.header(header.getKey(), header.getValue());
+    }
+    requestContext.abortWith(response.build());
+  }
+
+  @Override
+  public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext)
+      throws IOException {
+    Object startedAtMillis = requestContext.getProperty(STARTED_AT_PROPERTY);
+    if(!fixtures.isRecording() || startedAtMillis == null) {
+      return;
+    }
+
+    //The body can only be read once, so it is buffered and handed back to the ApiClient
+    byte[] body = new byte[0];
+    if(responseContext.hasEntity()) {
+      body = readFully(responseContext.getEntityStream());
+      responseContext.setEntityStream(new ByteArrayInputStream(body));
+    }
+
+    Map<String, String> headers = new LinkedHashMap<>();
+    for(Map.Entry<String, List<String>> header : responseContext.getHeaders().entrySet()) {
+      if(HttpFixtures.isRecordedHeader(header.getKey()) && !header.getValue().isEmpty()) {
+        headers.put(header.getKey(), header.getValue().get(0));
+      }
+    }
+
+    String url = requestContext.getUri().toString();
+    if(url.endsWith("/authenticate")) {
+      body = REDACTED_TOKEN;
+    }
+
+    fixtures.record(HttpFixtureRecord.SYMPHONY, requestContext.getMethod(), url,
+        getRequestBody(requestContext), (Long) startedAtMillis, responseContext.getStatus(), headers, body);
+  }
+
+  private static String getRequestBody(ClientRequestContext requestContext) {
+    return requestContext.hasEntity() ? String.valueOf(requestContext.getEntity()) : null;
+  }
+
+  private static byte[] readFully(InputStream stream) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    byte[] chunk = new byte[8192];
+    int read;
+    while((read = stream.read(chunk)) != -1) {
+      buffer.write(chunk, 0, read);
+    }
+    stream.close();
+    return buffer.toByteArray();
+  }
+}
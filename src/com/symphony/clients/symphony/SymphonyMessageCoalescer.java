@@ -0,0 +1,257 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.symphony;
+
+import com.symphony.api.agent.model.V2Message;
+import com.symphony.formatters.GreenhouseMessageMLFormatter;
+import com.symphony.formatters.MessageML;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges reminders to the same stream into one message
+ *
+ * Each reminder is added with the time it is due to be sent, and is held until then - never longer
+ * than the window. Reminders for the same stream that are held at once go out together as a single
+ * message, with an entry per interview, as soon as the earliest of them is due. Reminders that are
+ * due already go out right away, along with whatever is held for their stream. A window of 0 sends
+ * every reminder on its own right away.
+ *
+ * Callers hand reminders over up to a window ahead of their send time, so holding them never makes
+ * them late - reminders due within a window of each other are merged.
+ */
+
+public final class SymphonyMessageCoalescer {
+
+  private final SymphonyMessageDispatcher messageDispatcher;
+  private final long windowMillis;
+  private final Clock clock;
+
+  private final Map<String, Batch> batches;
+  private final ScheduledExecutorService flushScheduler;
+
+  private final AtomicLong reminderCount;
+  private final AtomicLong messageCount;
+
+  public SymphonyMessageCoalescer(SymphonyMessageDispatcher messageDispatcher, long window,
+      TimeUnit windowUnit) {
+    this(messageDispatcher, window, windowUnit, Clock.systemUTC());
+  }
+
+  /**
+   * @param messageDispatcher
+   * @param window
+   * @param windowUnit
+   * @param clock the time reminders come due by, i.e. set back when replaying a recording
+   */
+  public SymphonyMessageCoalescer(SymphonyMessageDispatcher messageDispatcher, long window,
+      TimeUnit windowUnit, Clock clock) {
+    this.messageDispatcher = messageDispatcher;
+    this.windowMillis = windowUnit.toMillis(window);
+    this.clock = clock;
+    this.batches = new HashMap<>();
+    this.reminderCount = new AtomicLong();
+    this.messageCount = new AtomicLong();
+    this.flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "symphony-coalescer");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Adds a reminder for the stream, to be sent right away
+   * @param streamId
+   * @param reminder
+   * @return completes with the message the reminder went out in
+   */
+  public CompletableFuture<V2Message> add(String streamId, GreenhouseMessageMLFormatter reminder) {
+    return add(streamId, reminder, false, null);
+  }
+
+  /**
+   * Adds a reminder for the stream, to be sent by the time it is due
+   * @param streamId
+   * @param reminder
+   * @param chime whether to chime before the message, i.e. because a recipient is busy
+   * @param sendAt when the reminder is due to be sent - it is held no longer than the window, and
+   * null sends it right away
+   * @return completes with the message the reminder went out in
+   */
+  public CompletableFuture<V2Message> add(String streamId, GreenhouseMessageMLFormatter reminder,
+      boolean chime, Date sendAt) {
+    reminderCount.incrementAndGet();
+
+    if(windowMillis <= 0) {
+      Date deadline = reminder.getInterview().getStartDate();
+      if(chime) {
+        chime(streamId, deadline);
+      }
+      messageCount.incrementAndGet();
+      return messageDispatcher.dispatch(streamId, reminder.getMessageML(), deadline);
+    }
+
+    long now = clock.millis();
+    long flushAtMillis = sendAt == null ? now : Math.max(now, Math.min(sendAt.getTime(), now + windowMillis));
+
+    Batch batch;
+    synchronized(batches) {
+      batch = batches.get(streamId);
+      if(batch == null) {
+        batch = new Batch();
+        batches.put(streamId, batch);
+      }
+      batch.reminders.add(reminder);
+      batch.chime |= chime;
+
+      //The batch goes out as soon as its earliest reminder is due
+      if(flushAtMillis > now && flushAtMillis < batch.flushAtMillis) {
+        if(batch.flushTask != null) {
+          batch.flushTask.cancel(false);
+        }
+        Batch flushedBatch = batch;
+        batch.flushAtMillis = flushAtMillis;
+        batch.flushTask = flushScheduler.schedule(() -> flush(streamId, flushedBatch),
+            flushAtMillis - now, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    if(flushAtMillis <= now) {
+      flush(streamId, batch);
+    }
+    return batch.future;
+  }
+
+  /**
+   * Sends every open batch right away, i.e. before shutting down
+   */
+  public void flushAll() {
+    Map<String, Batch> openBatches;
+    synchronized(batches) {
+      openBatches = new HashMap<>(batches);
+    }
+    for(Map.Entry<String, Batch> openBatch : openBatches.entrySet()) {
+      flush(openBatch.getKey(), openBatch.getValue());
+    }
+  }
+
+  public long getReminderCount() {
+    return reminderCount.get();
+  }
+
+  public long getMessageCount() {
+    return messageCount.get();
+  }
+
+  /**
+   * Dispatches the stream's held reminders as one message, unless they already went out
+   * @param streamId
+   * @param batch
+   */
+  private void flush(String streamId, Batch batch) {
+    synchronized(batches) {
+      if(!batches.remove(streamId, batch)) {
+        return;
+      }
+      if(batch.flushTask != null) {
+        batch.flushTask.cancel(false);
+      }
+    }
+
+    messageCount.incrementAndGet();
+    try {
+      if(batch.chime) {
+        chime(streamId, batch.getDeadline());
+      }
+      messageDispatcher.dispatch(streamId,
+          GreenhouseMessageMLFormatter.getCombinedMessageML(batch.reminders), batch.getDeadline())
+          .whenComplete((message, exception) -> {
+            if(exception != null) {
+              batch.future.completeExceptionally(exception);
+            } else {
+              batch.future.complete(message);
+            }
+          });
+    } catch (RuntimeException exception) {
+      batch.future.completeExceptionally(exception);
+    }
+  }
+
+  /**
+   * Dispatches a chime ahead of the stream's next message - a chime has to be a message of its own
+   * @param streamId
+   * @param deadline
+   */
+  private void chime(String streamId, Date deadline) {
+    MessageML chime = new MessageML();
+    chime.addChime();
+    messageDispatcher.dispatch(streamId, chime, deadline);
+  }
+
+  @Override
+  public String toString() {
+    return "SymphonyMessageCoalescer{" +
+        "reminders=" + reminderCount +
+        ", messages=" + messageCount +
+        '}';
+  }
+
+  /**
+   * The reminders held for a stream, and when they go out
+   */
+  private static final class Batch {
+    private final List<GreenhouseMessageMLFormatter> reminders = new ArrayList<>();
+    private final CompletableFuture<V2Message> future = new CompletableFuture<>();
+    private boolean chime;
+    private long flushAtMillis = Long.MAX_VALUE;
+    private ScheduledFuture<?> flushTask;
+
+    /**
+     * Returns the start of the batch's first interview, which the message is needed by
+     */
+    private Date getDeadline() {
+      Date deadline = null;
+      for(GreenhouseMessageMLFormatter reminder : reminders) {
+        Date startDate = reminder.getInterview().getStartDate();
+        if(startDate != null && (deadline == null || startDate.before(deadline))) {
+          deadline = startDate;
+        }
+      }
+      return deadline;
+    }
+  }
+}
@@ -0,0 +1,343 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.symphony;
+
+import com.symphony.api.agent.client.ApiException;
+import com.symphony.api.agent.model.V2Message;
+import com.symphony.formatters.MessageML;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Sends messages on a pool of worker threads so callers don't wait on the agent round trip
+ *
+ * Every worker owns a bounded queue (its lane) and messages are hashed to a lane by stream id,
+ * so messages to the same stream are sent one at a time while different streams go out in
+ * parallel. A lane sends the message with the earliest deadline first, and messages with the
+ * same deadline in the order they were dispatched. When a lane is full, dispatching blocks until
+ * it drains. A message to a stream over its own rate is set aside until the stream has room, so it
+ * never holds up other streams on its lane. Every send waits on the global rate, and a send the
+ * agent rejects with a 429 is retried after a pause instead of failing.
+ */
+
+public final class SymphonyMessageDispatcher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SymphonyMessageDispatcher.class);
+
+  /** Times a message is sent before a 429 is given up on */
+  private static final int MAX_ATTEMPTS = 5;
+
+  /** How long every send pauses after a 429 - the agent doesn't say how long to wait */
+  private static final long RATE_LIMITED_PAUSE_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+  private final ISymphonyClient symphonyClient;
+  private final SymphonyRateLimiter rateLimiter;
+  private final List<Lane> lanes;
+  private final List<Thread> workers;
+
+  private final AtomicLong sequence;
+  private final AtomicLong sentCount;
+  private final AtomicLong failedCount;
+  private final AtomicLong rateLimitedCount;
+
+  private volatile boolean running;
+
+  /**
+   * @param symphonyClient
+   * @param rateLimiter paces the sends
+   * @param threads number of lanes, each with its own worker thread
+   * @param queueSize most messages waiting across all lanes
+   */
+  public SymphonyMessageDispatcher(ISymphonyClient symphonyClient, SymphonyRateLimiter rateLimiter,
+      int threads, int queueSize) {
+    if(threads < 1) {
+      throw new IllegalArgumentException("Dispatcher needs at least one thread");
+    }
+
+    this.symphonyClient = symphonyClient;
+    this.rateLimiter = rateLimiter;
+    this.lanes = new ArrayList<>();
+    this.workers = new ArrayList<>();
+    this.sequence = new AtomicLong();
+    this.sentCount = new AtomicLong();
+    this.failedCount = new AtomicLong();
+    this.rateLimitedCount = new AtomicLong();
+    this.running = true;
+
+    int laneSize = Math.max(1, queueSize / threads);
+    for(int laneNumber = 0; laneNumber < threads; laneNumber++) {
+      Lane lane = new Lane(laneSize);
+      Thread worker = new Thread(() -> drain(lane), "symphony-dispatcher-" + laneNumber);
+      worker.setDaemon(true);
+      worker.start();
+
+      lanes.add(lane);
+      workers.add(worker);
+    }
+  }
+
+  /**
+   * Queues a MessageML to be sent to the stream, after any message with a deadline
+   * @param streamId
+   * @param messageML
+   * @return completes with the sent message, or exceptionally if sending failed
+   */
+  public CompletableFuture<V2Message> dispatch(String streamId, MessageML messageML) {
+    return dispatch(streamId, messageML, null);
+  }
+
+  /**
+   * Queues a MessageML to be sent to the stream
+   * @param streamId
+   * @param messageML
+   * @param deadline when the message is needed by, i.e. the interview start - null for no deadline
+   * @return completes with the sent message, or exceptionally if sending failed
+   */
+  public CompletableFuture<V2Message> dispatch(String streamId, MessageML messageML, Date deadline) {
+    return dispatch(streamId, deadline, () -> symphonyClient.sendMessage(streamId, messageML));
+  }
+
+  /**
+   * Queues plain text to be sent to the stream, after any message with a deadline
+   * @param streamId
+   * @param text
+   * @return completes with the sent message, or exceptionally if sending failed
+   */
+  public CompletableFuture<V2Message> dispatch(String streamId, String text) {
+    return dispatch(streamId, null, () -> symphonyClient.sendMessage(streamId, text));
+  }
+
+  /**
+   * Stops the workers - messages still queued are failed
+   */
+  public void shutdown() {
+    running = false;
+    for(Thread worker : workers) {
+      worker.interrupt();
+    }
+
+    List<Task> remainingTasks = new ArrayList<>();
+    for(Lane lane : lanes) {
+      lane.tasks.drainTo(remainingTasks);
+      lane.deferredTasks.drainTo(remainingTasks);
+    }
+    for(Task task : remainingTasks) {
+      task.future.completeExceptionally(new RuntimeException("message dispatcher was shut down"));
+    }
+  }
+
+  /**
+   * Returns the number of messages waiting to be sent
+   * @return
+   */
+  public int getQueuedCount() {
+    int queuedCount = 0;
+    for(Lane lane : lanes) {
+      queuedCount += lane.tasks.size() + lane.deferredTasks.size();
+    }
+    return queuedCount;
+  }
+
+  public long getSentCount() {
+    return sentCount.get();
+  }
+
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  public long getRateLimitedCount() {
+    return rateLimitedCount.get();
+  }
+
+  /**
+   * Private helper method to put a send on the stream's lane, waiting for room if it is full
+   * @param streamId
+   * @param deadline
+   * @param send
+   * @return
+   */
+  private CompletableFuture<V2Message> dispatch(String streamId, Date deadline,
+      Supplier<V2Message> send) {
+    long deadlineMillis = deadline == null ? Long.MAX_VALUE : deadline.getTime();
+    Task task = new Task(streamId, deadlineMillis, sequence.getAndIncrement(), send);
+    if(!running) {
+      task.future.completeExceptionally(new RuntimeException("message dispatcher was shut down"));
+      return task.future;
+    }
+
+    Lane lane = lanes.get((streamId.hashCode() & Integer.MAX_VALUE) % lanes.size());
+    try {
+      lane.capacity.acquire();
+      lane.tasks.put(task);
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      task.future.completeExceptionally(exception);
+    }
+    return task.future;
+  }
+
+  /**
+   * Sends the lane's messages, most urgent first, until the dispatcher shuts down
+   * Messages to a stream over its rate are deferred until it has room, rather than waited on
+   * @param lane
+   */
+  private void drain(Lane lane) {
+    while(running) {
+      Task task;
+      try {
+        long now = System.nanoTime();
+        Task deferredTask;
+        while((deferredTask = lane.deferredTasks.peek()) != null && now - deferredTask.notBeforeNanos >= 0) {
+          lane.tasks.put(lane.deferredTasks.poll());
+        }
+
+        long waitNanos = deferredTask == null ? Long.MAX_VALUE : deferredTask.notBeforeNanos - now;
+        task = lane.tasks.poll(waitNanos, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException exception) {
+        return;
+      }
+      if(task == null) {
+        continue;
+      }
+
+      long streamWaitNanos = rateLimiter.getNanosUntilStreamPermit(task.streamId);
+      if(streamWaitNanos > 0) {
+        task.notBeforeNanos = System.nanoTime() + streamWaitNanos;
+        lane.deferredTasks.put(task);
+        continue;
+      }
+
+      try {
+        task.future.complete(send(task));
+        sentCount.incrementAndGet();
+      } catch (InterruptedException exception) {
+        task.future.completeExceptionally(exception);
+        return;
+      } catch (RuntimeException exception) {
+        failedCount.incrementAndGet();
+        task.future.completeExceptionally(exception);
+      } finally {
+        lane.capacity.release();
+      }
+    }
+  }
+
+  /**
+   * Sends the message once the rate limiter allows, retrying while the agent rate limits it
+   * @param task
+   * @return
+   * @throws InterruptedException
+   */
+  private V2Message send(Task task) throws InterruptedException {
+    for(int attempt = 1; ; attempt++) {
+      rateLimiter.acquire(task.streamId, task.deadlineMillis);
+      try {
+        return task.send.get();
+      } catch (RuntimeException exception) {
+        if(!isRateLimited(exception) || attempt >= MAX_ATTEMPTS) {
+          throw exception;
+        }
+        rateLimitedCount.incrementAndGet();
+        LOG.debug("Message to " + task.streamId + " was rate limited, attempt " + attempt);
+        rateLimiter.onRateLimited(RATE_LIMITED_PAUSE_MILLIS, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  private static boolean isRateLimited(RuntimeException exception) {
+    return exception.getCause() instanceof ApiException &&
+        ((ApiException) exception.getCause()).getCode() == 429;
+  }
+
+  @Override
+  public String toString() {
+    return "SymphonyMessageDispatcher{" +
+        "lanes=" + lanes.size() +
+        ", queued=" + getQueuedCount() +
+        ", sent=" + sentCount +
+        ", failed=" + failedCount +
+        ", rateLimited=" + rateLimitedCount +
+        '}';
+  }
+
+  /**
+   * A worker's queue - ordered by deadline, with a semaphore to bound it - and the messages set
+   * aside until their stream has room, ordered by when it will
+   */
+  private static final class Lane {
+    private final PriorityBlockingQueue<Task> tasks;
+    private final PriorityBlockingQueue<Task> deferredTasks;
+    private final Semaphore capacity;
+
+    private Lane(int size) {
+      this.tasks = new PriorityBlockingQueue<>();
+      this.deferredTasks = new PriorityBlockingQueue<>(11,
+          Comparator.comparingLong((Task task) -> task.notBeforeNanos));
+      this.capacity = new Semaphore(size);
+    }
+  }
+
+  /**
+   * A message waiting to be sent and the future to complete once it is
+   */
+  private static final class Task implements Comparable<Task> {
+    private final String streamId;
+    private final long deadlineMillis;
+    private final long sequence;
+    private final Supplier<V2Message> send;
+    private final CompletableFuture<V2Message> future;
+    private long notBeforeNanos;
+
+    private Task(String streamId, long deadlineMillis, long sequence, Supplier<V2Message> send) {
+      this.streamId = streamId;
+      this.deadlineMillis = deadlineMillis;
+      this.sequence = sequence;
+      this.send = send;
+      this.future = new CompletableFuture<>();
+    }
+
+    @Override
+    public int compareTo(Task other) {
+      if(deadlineMillis != other.deadlineMillis) {
+        return Long.compare(deadlineMillis, other.deadlineMillis);
+      }
+      return Long.compare(sequence, other.sequence);
+    }
+  }
+}
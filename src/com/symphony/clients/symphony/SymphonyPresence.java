@@ -0,0 +1,78 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.symphony;
+
+/**
+ * Whether a Symphony user is around to see a reminder
+ */
+
+public enum SymphonyPresence {
+
+  /** Online and free */
+  AVAILABLE,
+
+  /** Online but busy, on the phone or in a meeting - worth a chime */
+  BUSY,
+
+  /** Online but away from their desk */
+  AWAY,
+
+  /** Not signed in - worth reminding earlier */
+  OFFLINE,
+
+  /** Presence could not be found */
+  UNKNOWN;
+
+  /**
+   * Returns the presence for a pod presence category, by name so newer categories still map
+   * @param category
+   * @return
+   */
+  public static SymphonyPresence fromCategory(String category) {
+    if(category == null) {
+      return UNKNOWN;
+    }
+
+    switch(category) {
+      case "AVAILABLE":
+        return AVAILABLE;
+      case "BUSY":
+      case "DO_NOT_DISTURB":
+      case "ON_THE_PHONE":
+      case "IN_A_MEETING":
+        return BUSY;
+      case "AWAY":
+      case "BE_RIGHT_BACK":
+      case "OUT_OF_OFFICE":
+        return AWAY;
+      case "OFFLINE":
+      case "OFF_WORK":
+        return OFFLINE;
+      default:
+        return UNKNOWN;
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.symphony;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short-lived cache of Symphony presence in front of an ISymphonyClient
+ *
+ * The pod only hands out presence for every user at once, so the whole list is kept rather than just
+ * the users asked for. Presence changes by the minute, so the list only lives for a little while -
+ * however many batches of reminders ask within that time, they share one presence call.
+ */
+
+public final class SymphonyPresenceCache {
+
+  private final ISymphonyClient symphonyClient;
+  private final long ttlNanos;
+
+  private Map<Long, SymphonyPresence> presences;
+  private long expiresAtNanos;
+
+  private long lookupCount;
+
+  public SymphonyPresenceCache(ISymphonyClient symphonyClient, long ttl, TimeUnit ttlUnit) {
+    this.symphonyClient = symphonyClient;
+    this.ttlNanos = ttlUnit.toNanos(ttl);
+    this.presences = new HashMap<>();
+  }
+
+  /**
+   * Returns the presence of every user, looking up the whole pod once the list has expired
+   * @param userIds
+   * @return users whose presence could not be found are UNKNOWN
+   */
+  public synchronized Map<Long, SymphonyPresence> getPresences(Collection<Long> userIds) {
+    if(!userIds.isEmpty()) {
+      long now = System.nanoTime();
+      if(lookupCount == 0 || now - expiresAtNanos >= 0) {
+        presences = symphonyClient.getPresences();
+        expiresAtNanos = now + ttlNanos;
+        lookupCount++;
+      }
+    }
+
+    Map<Long, SymphonyPresence> result = new HashMap<>();
+    for(Long userId : userIds) {
+      SymphonyPresence presence = presences.get(userId);
+      result.put(userId, presence == null ? SymphonyPresence.UNKNOWN : presence);
+    }
+    return result;
+  }
+
+  /**
+   * Returns how many presence calls the cache has made
+   * @return
+   */
+  public synchronized long getLookupCount() {
+    return lookupCount;
+  }
+}
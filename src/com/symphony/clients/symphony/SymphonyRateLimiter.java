@@ -0,0 +1,275 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.symphony;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token buckets that pace messages to the Symphony agent, globally and per stream
+ *
+ * Both buckets hold up to the burst allowance, so a quiet bot can send a burst right away and then
+ * settles to the configured rates. Callers over the limit wait rather than fail, and when several
+ * wait, the one with the earliest deadline goes first - i.e. the reminder for the interview that
+ * starts soonest. A 429 from the agent pauses every caller for a while. Callers that can't afford to
+ * wait on a busy stream check getNanosUntilStreamPermit first and come back later.
+ */
+
+public final class SymphonyRateLimiter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SymphonyRateLimiter.class);
+
+  /** Upper bound on how long a waiter sleeps before re-checking, in case it missed a signal */
+  private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+  /** Stream buckets kept before the full ones are dropped - a full bucket is the same as a new one */
+  private static final int MAX_IDLE_STREAM_BUCKETS = 1000;
+
+  private final double globalPermitsPerSecond;
+  private final double streamPermitsPerSecond;
+  private final int burst;
+
+  private final ReentrantLock lock;
+  private final Condition permitsChanged;
+
+  private final Bucket globalBucket;
+  private final Map<String, Bucket> streamBuckets;
+  private final Map<Waiter, Bucket> waiters;
+
+  private long blockedUntilNanos;
+  private long waiterSequence;
+
+  /**
+   * @param globalPermitsPerSecond messages per second across all streams
+   * @param streamPermitsPerSecond messages per second to any one stream
+   * @param burst messages that may go out at once after a quiet period
+   */
+  public SymphonyRateLimiter(double globalPermitsPerSecond, double streamPermitsPerSecond, int burst) {
+    if(globalPermitsPerSecond <= 0 || streamPermitsPerSecond <= 0 || burst < 1) {
+      throw new IllegalArgumentException("Rates must be positive and the burst at least one");
+    }
+
+    this.globalPermitsPerSecond = globalPermitsPerSecond;
+    this.streamPermitsPerSecond = streamPermitsPerSecond;
+    this.burst = burst;
+
+    this.lock = new ReentrantLock();
+    this.permitsChanged = lock.newCondition();
+
+    long now = System.nanoTime();
+    this.globalBucket = new Bucket(burst, now);
+    this.streamBuckets = new HashMap<>();
+    this.waiters = new HashMap<>();
+    this.blockedUntilNanos = now;
+  }
+
+  /**
+   * Blocks until a message to the stream may be sent
+   * @param streamId
+   * @param deadlineMillis when the message is needed by - earlier deadlines go first
+   * @throws InterruptedException
+   */
+  public void acquire(String streamId, long deadlineMillis) throws InterruptedException {
+    lock.lock();
+    try {
+      Waiter waiter = new Waiter(deadlineMillis, waiterSequence++);
+      Bucket streamBucket = getStreamBucket(streamId);
+      waiters.put(waiter, streamBucket);
+      streamBucket.waiterCount++;
+
+      try {
+        while(true) {
+          long now = System.nanoTime();
+          globalBucket.refill(now, globalPermitsPerSecond, burst);
+          streamBucket.refill(now, streamPermitsPerSecond, burst);
+
+          long waitNanos;
+          if(now - blockedUntilNanos < 0) {
+            waitNanos = blockedUntilNanos - now;
+          } else if(streamBucket.permits < 1) {
+            waitNanos = streamBucket.getNanosUntilPermit(streamPermitsPerSecond);
+          } else if(globalBucket.permits < 1) {
+            waitNanos = globalBucket.getNanosUntilPermit(globalPermitsPerSecond);
+          } else if(isMoreUrgentWaiterReady(waiter, now)) {
+            //Wake it up to take the permit
+            permitsChanged.signalAll();
+            waitNanos = MAX_WAIT_NANOS;
+          } else {
+            globalBucket.permits -= 1;
+            streamBucket.permits -= 1;
+            return;
+          }
+
+          permitsChanged.awaitNanos(Math.max(1, Math.min(waitNanos, MAX_WAIT_NANOS)));
+        }
+      } finally {
+        waiters.remove(waiter);
+        streamBucket.waiterCount--;
+        permitsChanged.signalAll();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns how long until a message to the stream is within the stream's rate, without taking a permit
+   * @param streamId
+   * @return 0 if the stream may send now
+   */
+  public long getNanosUntilStreamPermit(String streamId) {
+    lock.lock();
+    try {
+      Bucket streamBucket = getStreamBucket(streamId);
+      streamBucket.refill(System.nanoTime(), streamPermitsPerSecond, burst);
+      return streamBucket.permits >= 1 ? 0 : Math.max(1, streamBucket.getNanosUntilPermit(streamPermitsPerSecond));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Pauses every caller after the agent rejected a message for sending too fast
+   * @param pause
+   * @param pauseUnit
+   */
+  public void onRateLimited(long pause, TimeUnit pauseUnit) {
+    lock.lock();
+    try {
+      long now = System.nanoTime();
+      globalBucket.refill(now, globalPermitsPerSecond, burst);
+      globalBucket.permits = 0;
+      blockedUntilNanos = Math.max(blockedUntilNanos, now + pauseUnit.toNanos(pause));
+      LOG.warn("Symphony agent rate limited, pausing messages for " + pauseUnit.toMillis(pause) + "ms");
+      permitsChanged.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of callers waiting for a permit
+   * @return
+   */
+  public int getWaitingCount() {
+    lock.lock();
+    try {
+      return waiters.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns true if another waiter with an earlier deadline could send right now
+   */
+  private boolean isMoreUrgentWaiterReady(Waiter waiter, long now) {
+    for(Map.Entry<Waiter, Bucket> other : waiters.entrySet()) {
+      if(other.getKey().isMoreUrgentThan(waiter)) {
+        other.getValue().refill(now, streamPermitsPerSecond, burst);
+        if(other.getValue().permits >= 1) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the stream's bucket, dropping full buckets nobody waits on once there are too many
+   */
+  private Bucket getStreamBucket(String streamId) {
+    Bucket bucket = streamBuckets.get(streamId);
+    if(bucket != null) {
+      return bucket;
+    }
+
+    long now = System.nanoTime();
+    if(streamBuckets.size() >= MAX_IDLE_STREAM_BUCKETS) {
+      Iterator<Bucket> iterator = streamBuckets.values().iterator();
+      while(iterator.hasNext()) {
+        Bucket idleBucket = iterator.next();
+        idleBucket.refill(now, streamPermitsPerSecond, burst);
+        if(idleBucket.permits >= burst && idleBucket.waiterCount == 0) {
+          iterator.remove();
+        }
+      }
+    }
+
+    bucket = new Bucket(burst, now);
+    streamBuckets.put(streamId, bucket);
+    return bucket;
+  }
+
+  /**
+   * Permits stored up to the burst, refilled at a fixed rate
+   */
+  private static final class Bucket {
+    private double permits;
+    private long lastRefillNanos;
+    private int waiterCount;
+
+    private Bucket(double permits, long now) {
+      this.permits = permits;
+      this.lastRefillNanos = now;
+    }
+
+    private void refill(long now, double permitsPerSecond, int burst) {
+      double elapsedSeconds = (double) (now - lastRefillNanos) / TimeUnit.SECONDS.toNanos(1);
+      permits = Math.min(burst, permits + elapsedSeconds * permitsPerSecond);
+      lastRefillNanos = now;
+    }
+
+    private long getNanosUntilPermit(double permitsPerSecond) {
+      return (long) ((1 - permits) / permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+    }
+  }
+
+  /**
+   * A caller waiting for a permit - ties on the deadline go to whoever started waiting first
+   */
+  private static final class Waiter {
+    private final long deadlineMillis;
+    private final long sequence;
+
+    private Waiter(long deadlineMillis, long sequence) {
+      this.deadlineMillis = deadlineMillis;
+      this.sequence = sequence;
+    }
+
+    private boolean isMoreUrgentThan(Waiter other) {
+      return deadlineMillis < other.deadlineMillis ||
+          (deadlineMillis == other.deadlineMillis && sequence < other.sequence);
+    }
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.symphony;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Thread safe, size bounded cache of IM stream ids keyed by the set of user ids in the IM
+ *
+ * Creating an IM with the same users always returns the same stream, so once we know its id
+ * there is no need to ask Symphony again. Entries are evicted least recently used first and
+ * saved to a file, one "userIds<tab>streamId" line each, so they survive restarts.
+ */
+
+public final class SymphonyStreamCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SymphonyStreamCache.class);
+
+  private final int maxEntries;
+  private final File file;
+
+  private final LinkedHashMap<String, String> streamIds;
+
+  private long hitCount;
+  private long missCount;
+
+  public SymphonyStreamCache(int maxEntries, File file) {
+    if(maxEntries < 1) {
+      throw new IllegalArgumentException("Cache must hold at least one entry");
+    }
+
+    this.maxEntries = maxEntries;
+    this.file = file;
+    this.streamIds = new LinkedHashMap<>(16, 0.75f, true);
+
+    load();
+  }
+
+  /**
+   * Returns the key for a set of user ids - the same users in any order give the same key
+   * @param userIds
+   * @return
+   */
+  public static String getKey(Collection<Long> userIds) {
+    SortedSet<Long> sortedUserIds = new TreeSet<>();
+    for(Long userId : userIds) {
+      if(userId != null) {
+        sortedUserIds.add(userId);
+      }
+    }
+
+    StringBuilder key = new StringBuilder();
+    for(Long userId : sortedUserIds) {
+      if(key.length() > 0) {
+        key.append(',');
+      }
+      key.append(userId);
+    }
+    return key.toString();
+  }
+
+  /**
+   * Returns the stream id for the key, or null if we don't know it
+   * @param key
+   * @return
+   */
+  public synchronized String get(String key) {
+    String streamId = streamIds.get(key);
+    if(streamId == null) {
+      missCount++;
+    } else {
+      hitCount++;
+    }
+    return streamId;
+  }
+
+  /**
+   * Remembers the stream id for the key and saves the cache
+   * @param key
+   * @param streamId
+   */
+  public synchronized void put(String key, String streamId) {
+    if(streamId == null || streamId.equals(streamIds.put(key, streamId))) {
+      return;
+    }
+
+    while(streamIds.size() > maxEntries) {
+      Iterator<String> iterator = streamIds.keySet().iterator();
+      iterator.next();
+      iterator.remove();
+    }
+    save();
+  }
+
+  /**
+   * Forgets every key that maps to the stream id, i.e. after sending to it failed
+   * @param streamId
+   */
+  public synchronized void invalidateStream(String streamId) {
+    if(streamIds.values().removeIf(streamId::equals)) {
+      LOG.debug("Invalidated stream " + streamId);
+      save();
+    }
+  }
+
+  public synchronized int size() {
+    return streamIds.size();
+  }
+
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Restores the stream ids saved by a previous run, if any
+   */
+  private void load() {
+    if(file == null || !file.exists()) {
+      return;
+    }
+
+    try(BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while((line = reader.readLine()) != null) {
+        int separator = line.indexOf('\t');
+        if(separator > 0) {
+          streamIds.put(line.substring(0, separator), line.substring(separator + 1));
+        }
+      }
+      LOG.info("Restored " + streamIds.size() + " IM streams");
+    } catch (IOException exception) {
+      LOG.error("Error restoring IM streams", exception);
+      streamIds.clear();
+    }
+  }
+
+  /**
+   * Saves the stream ids in least recently used order, replacing the file atomically
+   */
+  private void save() {
+    if(file == null) {
+      return;
+    }
+
+    File directory = file.getAbsoluteFile().getParentFile();
+    if(!directory.isDirectory() && !directory.mkdirs()) {
+      LOG.error("Unable to create state directory " + directory);
+      return;
+    }
+
+    try {
+      File temporaryFile = new File(directory, file.getName() + ".tmp");
+      try(BufferedWriter writer = Files.newBufferedWriter(temporaryFile.toPath(), StandardCharsets.UTF_8)) {
+        for(Map.Entry<String, String> entry : streamIds.entrySet()) {
+          writer.write(entry.getKey());
+          writer.write('\t');
+          writer.write(entry.getValue());
+          writer.newLine();
+        }
+      }
+
+      Files.move(temporaryFile.toPath(), file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException exception) {
+      LOG.error("Error saving IM streams", exception);
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "SymphonyStreamCache{" +
+        "size=" + streamIds.size() +
+        ", maxEntries=" + maxEntries +
+        ", hits=" + hitCount +
+        ", misses=" + missCount +
+        '}';
+  }
+}
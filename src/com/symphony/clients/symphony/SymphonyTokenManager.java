@@ -0,0 +1,204 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.symphony;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the Symphony session and key manager tokens fresh
+ *
+ * Both tokens are refreshed in the background well before the pod expires them and published
+ * together through an atomic reference, so readers never lock. A caller whose tokens were
+ * rejected asks for a refresh - if one is already running it waits on that one, and if the
+ * tokens were already replaced it gets the new ones without authenticating again.
+ */
+
+public final class SymphonyTokenManager {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SymphonyTokenManager.class);
+
+  private final Supplier<Tokens> authenticator;
+  private final long refreshIntervalMillis;
+
+  private final AtomicReference<Tokens> tokens;
+  private final AtomicReference<CompletableFuture<Tokens>> inFlightRefresh;
+  private final AtomicLong refreshCount;
+
+  private ScheduledExecutorService refreshScheduler;
+
+  /**
+   * @param authenticator authenticates with Symphony, throwing a RuntimeException on failure
+   * @param refreshInterval
+   * @param refreshIntervalUnit
+   */
+  public SymphonyTokenManager(Supplier<Tokens> authenticator, long refreshInterval,
+      TimeUnit refreshIntervalUnit) {
+    this.authenticator = authenticator;
+    this.refreshIntervalMillis = refreshIntervalUnit.toMillis(refreshInterval);
+    this.tokens = new AtomicReference<>();
+    this.inFlightRefresh = new AtomicReference<>();
+    this.refreshCount = new AtomicLong();
+  }
+
+  /**
+   * Authenticates right away and starts refreshing the tokens in the background
+   * Calling it again just authenticates again
+   */
+  public synchronized void start() {
+    refresh();
+
+    if(refreshScheduler == null) {
+      refreshScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "symphony-token-refresh");
+        thread.setDaemon(true);
+        return thread;
+      });
+      refreshScheduler.scheduleWithFixedDelay(this::refreshInBackground,
+          refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Stops refreshing the tokens in the background
+   */
+  public synchronized void stop() {
+    if(refreshScheduler != null) {
+      refreshScheduler.shutdownNow();
+      refreshScheduler = null;
+    }
+  }
+
+  /**
+   * Returns the current tokens
+   * @return
+   */
+  public Tokens getTokens() {
+    Tokens currentTokens = tokens.get();
+    if(currentTokens == null) {
+      throw new RuntimeException("symphony client is not authenticated");
+    }
+    return currentTokens;
+  }
+
+  /**
+   * Returns tokens to retry with after Symphony rejected the given ones
+   * Only authenticates if nobody replaced the rejected tokens yet
+   * @param rejectedTokens
+   * @return
+   */
+  public Tokens refreshAfterRejection(Tokens rejectedTokens) {
+    Tokens currentTokens = tokens.get();
+    if(currentTokens != null && currentTokens != rejectedTokens) {
+      return currentTokens;
+    }
+    return refresh();
+  }
+
+  /**
+   * Authenticates and publishes the new tokens - concurrent callers share a single authentication
+   * @return
+   */
+  public Tokens refresh() {
+    CompletableFuture<Tokens> refresh = new CompletableFuture<>();
+    while(!inFlightRefresh.compareAndSet(null, refresh)) {
+      CompletableFuture<Tokens> otherRefresh = inFlightRefresh.get();
+      if(otherRefresh != null) {
+        return await(otherRefresh);
+      }
+    }
+
+    try {
+      Tokens newTokens = authenticator.get();
+      tokens.set(newTokens);
+      refreshCount.incrementAndGet();
+      refresh.complete(newTokens);
+      return newTokens;
+    } catch (RuntimeException exception) {
+      refresh.completeExceptionally(exception);
+      throw exception;
+    } finally {
+      inFlightRefresh.compareAndSet(refresh, null);
+    }
+  }
+
+  public long getRefreshCount() {
+    return refreshCount.get();
+  }
+
+  /**
+   * Refreshes on the background thread - failures keep the current tokens until the next attempt
+   */
+  private void refreshInBackground() {
+    try {
+      refresh();
+      LOG.debug("Refreshed symphony tokens");
+    } catch (RuntimeException exception) {
+      LOG.error("Error refreshing symphony tokens, keeping the current ones", exception);
+    }
+  }
+
+  private static Tokens await(CompletableFuture<Tokens> future) {
+    try {
+      return future.join();
+    } catch (CompletionException exception) {
+      if(exception.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) exception.getCause();
+      }
+      throw exception;
+    }
+  }
+
+  /**
+   * A session token and key manager token that were issued together
+   */
+  public static final class Tokens {
+    private final String sessionToken;
+    private final String keyManagerToken;
+
+    public Tokens(String sessionToken, String keyManagerToken) {
+      this.sessionToken = sessionToken;
+      this.keyManagerToken = keyManagerToken;
+    }
+
+    public String getSessionToken() {
+      return sessionToken;
+    }
+
+    public String getKeyManagerToken() {
+      return keyManagerToken;
+    }
+  }
+}
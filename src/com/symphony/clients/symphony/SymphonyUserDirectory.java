@@ -0,0 +1,261 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.clients.symphony;
+
+import com.symphony.api.pod.model.User;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread safe directory of Symphony Users by email address, in front of an ISymphonyClient
+ *
+ * Every entry lives for a time to live - addresses without a user are remembered for a shorter
+ * one, so a misspelled address isn't looked up on every poll but a new hire shows up quickly.
+ * Each address is loaded at most once at a time: callers asking for an address that is being
+ * looked up wait on that lookup instead of starting their own.
+ */
+
+public final class SymphonyUserDirectory {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SymphonyUserDirectory.class);
+
+  /** Most addresses looked up in one batch while warming up */
+  private static final int WARM_UP_BATCH_SIZE = 100;
+
+  /** Batches looked up at once while warming up */
+  private static final int WARM_UP_THREADS = 4;
+
+  private final ISymphonyClient symphonyClient;
+  private final long ttlNanos;
+  private final long negativeTtlNanos;
+
+  private final ConcurrentHashMap<String, Entry> entries;
+
+  private final AtomicLong hitCount;
+  private final AtomicLong missCount;
+
+  public SymphonyUserDirectory(ISymphonyClient symphonyClient, long ttl, long negativeTtl,
+      TimeUnit ttlUnit) {
+    this.symphonyClient = symphonyClient;
+    this.ttlNanos = ttlUnit.toNanos(ttl);
+    this.negativeTtlNanos = ttlUnit.toNanos(negativeTtl);
+    this.entries = new ConcurrentHashMap<>();
+    this.hitCount = new AtomicLong();
+    this.missCount = new AtomicLong();
+  }
+
+  /**
+   * Returns the User for the email address, or null if there is none
+   * @param emailAddress
+   * @return
+   */
+  public User get(String emailAddress) {
+    if(emailAddress == null) {
+      return null;
+    }
+    return getAll(Collections.singletonList(emailAddress)).get(emailAddress);
+  }
+
+  /**
+   * Returns the Users for the email addresses, keyed by the email address asked for
+   * Addresses that aren't known yet, or expired, are looked up together in one batch
+   * @param emailAddresses
+   * @return addresses without a user are left out
+   */
+  public Map<String, User> getAll(Collection<String> emailAddresses) {
+    Map<String, Entry> requestedEntries = new LinkedHashMap<>();
+    Map<String, Entry> claimedEntries = new HashMap<>();
+
+    for(String emailAddress : emailAddresses) {
+      if(emailAddress != null && !requestedEntries.containsKey(emailAddress)) {
+        requestedEntries.put(emailAddress, getOrClaim(toKey(emailAddress), claimedEntries));
+      }
+    }
+
+    if(!claimedEntries.isEmpty()) {
+      load(claimedEntries);
+    }
+
+    Map<String, User> users = new HashMap<>();
+    for(Map.Entry<String, Entry> requestedEntry : requestedEntries.entrySet()) {
+      User user = requestedEntry.getValue().future.join();
+      if(user != null) {
+        users.put(requestedEntry.getKey(), user);
+      }
+    }
+    return users;
+  }
+
+  /**
+   * Loads the email addresses ahead of time, several batches at once, and waits until done
+   * @param emailAddresses
+   */
+  public void warmUp(Collection<String> emailAddresses) {
+    List<String> uniqueEmailAddresses = new ArrayList<>();
+    for(String emailAddress : emailAddresses) {
+      if(emailAddress != null && !uniqueEmailAddresses.contains(emailAddress)) {
+        uniqueEmailAddresses.add(emailAddress);
+      }
+    }
+
+    long start = System.nanoTime();
+    ExecutorService executor = Executors.newFixedThreadPool(WARM_UP_THREADS);
+    try {
+      List<CompletableFuture<Void>> batches = new ArrayList<>();
+      for(int from = 0; from < uniqueEmailAddresses.size(); from += WARM_UP_BATCH_SIZE) {
+        List<String> batch = uniqueEmailAddresses.subList(from,
+            Math.min(from + WARM_UP_BATCH_SIZE, uniqueEmailAddresses.size()));
+        batches.add(CompletableFuture.runAsync(() -> getAll(batch), executor));
+      }
+      CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[batches.size()])).join();
+    } finally {
+      executor.shutdown();
+    }
+
+    LOG.info("Warmed up " + uniqueEmailAddresses.size() + " Symphony users in " +
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+  }
+
+  /**
+   * Removes the email address so it is looked up again next time
+   * @param emailAddress
+   */
+  public void invalidate(String emailAddress) {
+    entries.remove(toKey(emailAddress));
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * Returns the live entry for the key, or claims a new loading entry for the caller to load
+   * @param key
+   * @param claimedEntries the entries the caller has to load, added to if this call claims one
+   * @return
+   */
+  private Entry getOrClaim(String key, Map<String, Entry> claimedEntries) {
+    while(true) {
+      Entry entry = entries.get(key);
+      if(entry != null && !entry.isExpired(System.nanoTime())) {
+        hitCount.incrementAndGet();
+        return entry;
+      }
+
+      //Only one caller wins the swap - everyone else waits on the winner's entry
+      Entry loadingEntry = new Entry();
+      boolean claimed = entry == null ? entries.putIfAbsent(key, loadingEntry) == null :
+          entries.replace(key, entry, loadingEntry);
+      if(claimed) {
+        missCount.incrementAndGet();
+        claimedEntries.put(key, loadingEntry);
+        return loadingEntry;
+      }
+    }
+  }
+
+  /**
+   * Looks up the claimed entries in one batch and completes them
+   * An address is only remembered as missing once the pod answered that it has no such user -
+   * if the lookup fails the entries are dropped, so the next caller tries again
+   * @param claimedEntries
+   */
+  private void load(Map<String, Entry> claimedEntries) {
+    Map<String, User> users;
+    try {
+      users = symphonyClient.getUsersForEmailAddresses(claimedEntries.keySet());
+    } catch (RuntimeException exception) {
+      LOG.error("Could not look up Symphony users", exception);
+      for(Map.Entry<String, Entry> claimedEntry : claimedEntries.entrySet()) {
+        entries.remove(claimedEntry.getKey(), claimedEntry.getValue());
+        claimedEntry.getValue().future.complete(null);
+      }
+      return;
+    }
+
+    long now = System.nanoTime();
+    for(Map.Entry<String, Entry> claimedEntry : claimedEntries.entrySet()) {
+      User user = users.get(claimedEntry.getKey());
+      claimedEntry.getValue().complete(user, now + (user == null ? negativeTtlNanos : ttlNanos));
+    }
+  }
+
+  private static String toKey(String emailAddress) {
+    return emailAddress.toLowerCase();
+  }
+
+  @Override
+  public String toString() {
+    return "SymphonyUserDirectory{" +
+        "size=" + size() +
+        ", hits=" + hitCount +
+        ", misses=" + missCount +
+        '}';
+  }
+
+  /**
+   * A User, or the lookup for one, and the time it expires at
+   */
+  private static final class Entry {
+    private final CompletableFuture<User> future = new CompletableFuture<>();
+    private volatile long expiresAtNanos;
+    private volatile boolean loaded;
+
+    private void complete(User user, long expiresAtNanos) {
+      this.expiresAtNanos = expiresAtNanos;
+      this.loaded = true;
+      future.complete(user);
+    }
+
+    private boolean isExpired(long now) {
+      //Entries still loading never expire - callers wait on them instead
+      return loaded && now - expiresAtNanos >= 0;
+    }
+  }
+}
@@ -24,6 +24,11 @@
 
 package com.symphony.configurations;
 
+import com.symphony.fixtures.HttpFixtures;
+
+import java.io.File;
+import java.util.List;
+
 /**
  * Defines preferences for the SymphonyGreenhouse bot
  */
@@ -32,4 +37,73 @@ public interface IConfigurationProvider {
 
   /** Returns the minutes before an interview to send a message - i.e. 30 min before interview */
   int minutesBeforeInterviewToSendMessage();
+
+  /** Returns the minutes between full downloads of the schedule - delta polls run in between */
+  int minutesBetweenFullSyncs();
+
+  /** Returns the directory the bot keeps its state in across restarts */
+  File getStateDirectory();
+
+  /** Returns whether HTTP calls are recorded to, or replayed from, the fixture file */
+  HttpFixtures.Mode getHttpFixtureMode();
+
+  /** Returns the file HTTP fixtures are recorded to and replayed from */
+  File getHttpFixtureFile();
+
+  /** Returns the multiple of real time fixtures replay at - 0 replays as fast as possible */
+  double getHttpFixtureReplaySpeed();
+
+  /** Returns the minutes between polls while webhooks deliver changes - the poll only catches missed webhooks */
+  int minutesBetweenReconciliationPolls();
+
+  /** Returns the minutes a Symphony user found by email address is remembered for */
+  int minutesToRememberSymphonyUsers();
+
+  /** Returns the minutes an email address without a Symphony user is remembered for */
+  int minutesToRememberMissingSymphonyUsers();
+
+  /** Returns the hours of upcoming interviews whose interviewers are looked up at startup */
+  int hoursOfInterviewersToWarmUp();
+
+  /** Returns the most IM stream ids remembered - the least recently used are forgotten first */
+  int maxCachedStreams();
+
+  /** Returns the file IM stream ids are saved to across restarts */
+  File getStreamCacheFile();
+
+  /** Returns the number of threads sending messages - messages to one stream always share a thread */
+  int messageDispatcherThreads();
+
+  /** Returns the most messages waiting to be sent before dispatching more blocks */
+  int messageDispatcherQueueSize();
+
+  /** Returns the seconds reminders to the same stream are collected for and sent as one message - 0 sends each on its own */
+  int secondsToCoalesceReminders();
+
+  /** Returns the most messages per second sent to the Symphony agent across all streams */
+  double maxMessagesPerSecond();
+
+  /** Returns the most messages per second sent to any one stream */
+  double maxMessagesPerSecondPerStream();
+
+  /** Returns the messages that may go out at once, globally and per stream, after a quiet period */
+  int messageBurst();
+
+  /** Returns the file reminders are logged to before they are sent, so none are lost or repeated */
+  File getOutboxFile();
+
+  /** Returns the minutes between repeated reminders until an interviewer acknowledges - 0 reminds once */
+  int minutesBetweenEscalations();
+
+  /** Returns the seconds a user's presence is trusted before it is looked up again */
+  int secondsToCachePresence();
+
+  /** Returns how much earlier offline interviewers are reminded, so the reminder is waiting when they sign in */
+  int minutesEarlierForOfflineInterviewers();
+
+  /** Returns the threads scheduled reminders are handled on when they come due */
+  int reminderSchedulerThreads();
+
+  /** Returns email addresses to send every reminder to instead of the interviewers, i.e. when testing - empty sends to the interviewers */
+  List<String> getTestRecipientEmailAddresses();
 }
\ No newline at end of file
@@ -24,6 +24,12 @@
 
 package com.symphony.configurations;
 
+import com.symphony.fixtures.HttpFixtures;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Customizations for the SymphonyGreenhouse bot
  */
@@ -34,4 +40,119 @@ public class SimpleConfigurationProvider implements IConfigurationProvider {
   public int minutesBeforeInterviewToSendMessage() {
     return 30;
   }
+
+  @Override
+  public int minutesBetweenFullSyncs() {
+    return 6 * 60;
+  }
+
+  @Override
+  public File getStateDirectory() {
+    return new File(System.getProperty("user.home"), ".symphony-greenhouse-bot");
+  }
+
+  @Override
+  public HttpFixtures.Mode getHttpFixtureMode() {
+    return HttpFixtures.Mode.OFF;
+  }
+
+  @Override
+  public File getHttpFixtureFile() {
+    return new File(getStateDirectory(), "http-fixtures.log.gz");
+  }
+
+  @Override
+  public double getHttpFixtureReplaySpeed() {
+    return 1;
+  }
+
+  @Override
+  public int minutesBetweenReconciliationPolls() {
+    return 60;
+  }
+
+  @Override
+  public int minutesToRememberSymphonyUsers() {
+    return 12 * 60;
+  }
+
+  @Override
+  public int minutesToRememberMissingSymphonyUsers() {
+    return 10;
+  }
+
+  @Override
+  public int hoursOfInterviewersToWarmUp() {
+    return 24;
+  }
+
+  @Override
+  public int maxCachedStreams() {
+    return 10000;
+  }
+
+  @Override
+  public File getStreamCacheFile() {
+    return new File(getStateDirectory(), "im-streams.tsv");
+  }
+
+  @Override
+  public int messageDispatcherThreads() {
+    return 32;
+  }
+
+  @Override
+  public int messageDispatcherQueueSize() {
+    return 4096;
+  }
+
+  @Override
+  public int secondsToCoalesceReminders() {
+    return 120;
+  }
+
+  @Override
+  public double maxMessagesPerSecond() {
+    return 20;
+  }
+
+  @Override
+  public double maxMessagesPerSecondPerStream() {
+    return 1;
+  }
+
+  @Override
+  public int messageBurst() {
+    return 10;
+  }
+
+  @Override
+  public File getOutboxFile() {
+    return new File(getStateDirectory(), "reminder-outbox.log");
+  }
+
+  @Override
+  public int minutesBetweenEscalations() {
+    return 10;
+  }
+
+  @Override
+  public int secondsToCachePresence() {
+    return 60;
+  }
+
+  @Override
+  public int minutesEarlierForOfflineInterviewers() {
+    return 15;
+  }
+
+  @Override
+  public int reminderSchedulerThreads() {
+    return 4;
+  }
+
+  @Override
+  public List<String> getTestRecipientEmailAddresses() {
+    return Collections.emptyList();
+  }
 }
\ No newline at end of file
@@ -36,4 +36,104 @@ public class GreenhouseConfigurationProvider implements IGreenhouseConfiguration
   public String getApiToken() {
     return "YOUR GREENHOUSE API TOKEN";
   }
+
+  @Override
+  public int getMaxConnectionsPerRoute() {
+    return 20;
+  }
+
+  @Override
+  public int getMaxConnectionsTotal() {
+    return 40;
+  }
+
+  @Override
+  public int getIdleConnectionTimeoutSeconds() {
+    return 30;
+  }
+
+  @Override
+  public int getConnectTimeoutMillis() {
+    return 5000;
+  }
+
+  @Override
+  public int getReadTimeoutMillis() {
+    return 30000;
+  }
+
+  @Override
+  public int getPagePrefetchDepth() {
+    return 4;
+  }
+
+  @Override
+  public int getCacheMaxEntries() {
+    return 10000;
+  }
+
+  @Override
+  public int getApplicationCacheTtlSeconds() {
+    return 60 * 60;
+  }
+
+  @Override
+  public int getCandidateCacheTtlSeconds() {
+    return 60 * 60;
+  }
+
+  @Override
+  public int getInterviewCacheTtlSeconds() {
+    return 60;
+  }
+
+  @Override
+  public int getMaxConcurrentRequests() {
+    return 16;
+  }
+
+  @Override
+  public double getInitialRequestsPerSecond() {
+    return 5;
+  }
+
+  @Override
+  public String getBaseURL() {
+    return "https://harvest.greenhouse.io/v1/";
+  }
+
+  @Override
+  public int getWebhookPort() {
+    return -1;
+  }
+
+  @Override
+  public String getWebhookPath() {
+    return "/greenhouse/webhooks";
+  }
+
+  @Override
+  public String getWebhookSecretKey() {
+    return "YOUR GREENHOUSE WEBHOOK SECRET KEY";
+  }
+
+  @Override
+  public int getCircuitBreakerFailureThreshold() {
+    return 5;
+  }
+
+  @Override
+  public int getCircuitBreakerOpenSeconds() {
+    return 30;
+  }
+
+  @Override
+  public boolean isHedgingEnabled() {
+    return false;
+  }
+
+  @Override
+  public int getHedgeMinDelayMillis() {
+    return 100;
+  }
 }
@@ -35,4 +35,64 @@ public interface IGreenhouseConfigurationProvider {
   /** Greenhouse API Token */
   public String getApiToken();
 
+  /** Maximum pooled keep-alive connections to a single Greenhouse host */
+  public int getMaxConnectionsPerRoute();
+
+  /** Maximum pooled keep-alive connections across all hosts */
+  public int getMaxConnectionsTotal();
+
+  /** Seconds a pooled connection may sit idle before it is evicted */
+  public int getIdleConnectionTimeoutSeconds();
+
+  /** Milliseconds to wait while opening a connection to Greenhouse */
+  public int getConnectTimeoutMillis();
+
+  /** Milliseconds to wait for data on an open connection to Greenhouse */
+  public int getReadTimeoutMillis();
+
+  /** Number of result pages to fetch ahead while the current page is being parsed */
+  public int getPagePrefetchDepth();
+
+  /** Maximum number of entries held by each Greenhouse lookup cache */
+  public int getCacheMaxEntries();
+
+  /** Seconds a cached Application stays fresh */
+  public int getApplicationCacheTtlSeconds();
+
+  /** Seconds a cached Candidate stays fresh */
+  public int getCandidateCacheTtlSeconds();
+
+  /** Seconds a cached Interview stays fresh - kept short since interviews get rescheduled */
+  public int getInterviewCacheTtlSeconds();
+
+  /** Maximum number of Greenhouse requests in flight at once */
+  public int getMaxConcurrentRequests();
+
+  /** Requests per second to start at before Harvest's X-RateLimit headers have been seen */
+  public double getInitialRequestsPerSecond();
+
+  /** Root of the Harvest API, ending in a slash - pointed at the HarvestSimulator for load testing */
+  public String getBaseURL();
+
+  /** Port the Greenhouse webhook endpoint listens on - 0 or less leaves it off */
+  public int getWebhookPort();
+
+  /** Path of the Greenhouse webhook endpoint, as entered in Greenhouse's webhook settings */
+  public String getWebhookPath();
+
+  /** Secret key entered in Greenhouse's webhook settings, used to verify each webhook's signature */
+  public String getWebhookSecretKey();
+
+  /** Consecutive failures after which calls to a Harvest endpoint fail fast */
+  public int getCircuitBreakerFailureThreshold();
+
+  /** Seconds an endpoint's calls fail fast for before a probe call is let through */
+  public int getCircuitBreakerOpenSeconds();
+
+  /** Whether slow lookups by id get a duplicate request, the first answer winning */
+  public boolean isHedgingEnabled();
+
+  /** Milliseconds a lookup has to take before it is hedged, even when the endpoint's p95 is lower */
+  public int getHedgeMinDelayMillis();
+
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.configurations.simulator;
+
+/**
+ * Defines a laptop sized load test against the local Harvest simulator
+ */
+
+public class HarvestSimulatorConfigurationProvider implements IHarvestSimulatorConfigurationProvider {
+
+  @Override
+  public int getPort() {
+    return 8089;
+  }
+
+  @Override
+  public int getServerThreads() {
+    return 32;
+  }
+
+  @Override
+  public int getInterviewCount() {
+    return 10000;
+  }
+
+  @Override
+  public int getInterviewsPerApplication() {
+    return 4;
+  }
+
+  @Override
+  public long getRandomSeed() {
+    return 42;
+  }
+
+  @Override
+  public int getLatencyMillis() {
+    return 50;
+  }
+
+  @Override
+  public int getLatencyJitterMillis() {
+    return 25;
+  }
+
+  @Override
+  public int getRateLimitPerWindow() {
+    return 50;
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.configurations.simulator;
+
+/**
+ * Defines the dataset and behaviour of the local Harvest simulator
+ */
+
+public interface IHarvestSimulatorConfigurationProvider {
+
+  /** Port the simulator listens on - 0 picks a free port */
+  public int getPort();
+
+  /** Threads serving simulator requests */
+  public int getServerThreads();
+
+  /** Number of scheduled interviews in the synthetic dataset */
+  public int getInterviewCount();
+
+  /** Number of interviews sharing each application, and so each candidate */
+  public int getInterviewsPerApplication();
+
+  /** Seed for generating the dataset, so runs are repeatable */
+  public long getRandomSeed();
+
+  /** Milliseconds every response is delayed by, to stand in for the network */
+  public int getLatencyMillis();
+
+  /** Up to this many extra milliseconds are randomly added to each response's latency */
+  public int getLatencyJitterMillis();
+
+  /** Requests allowed per 10 second window, as reported in X-RateLimit-Limit - 0 turns rate limiting off */
+  public int getRateLimitPerWindow();
+
+}
@@ -59,6 +59,12 @@ public abstract class ISymphonyConfigurationProvider {
    */
   public abstract String getSymphonyBaseURL();
 
+  /**
+   * Minutes between refreshing the session and key manager tokens - well within their lifetime
+   */
+  public int getTokenRefreshMinutes() {
+    return 60;
+  }
 
   public String getKeystorePassword() {
     return this.getSymphonyKeystorePassword();
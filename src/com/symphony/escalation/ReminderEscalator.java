@@ -0,0 +1,345 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.escalation;
+
+import com.symphony.api.agent.model.V2Message;
+import com.symphony.clients.symphony.SymphonyMessageDispatcher;
+import com.symphony.formatters.GreenhouseMessageMLFormatter;
+import com.symphony.models.Interview;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps reminding interviewers of an interview until one of them acknowledges it
+ *
+ * After a reminder goes out to a stream, the reminder is sent again every few minutes until the
+ * interview starts. A reply in the stream such as "ack" or "on my way" stops every escalation for
+ * that stream. Escalations are kept in a concurrent map by stream id, so a reply read off the
+ * datafeed cancels them with a single lookup and never waits on the escalation thread. A second map
+ * from interview id to stream lets a cancelled or moved interview be dropped or updated on its own.
+ */
+
+public final class ReminderEscalator {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReminderEscalator.class);
+
+  /** Replies that acknowledge a reminder - matched against the start of the reply */
+  private static final Pattern ACKNOWLEDGEMENT = Pattern.compile(
+      "^(ack|acked|acknowledged?|ok|okay|k|got it|on my way|omw|coming|will do|thanks|thank you|" +
+          "thx|sounds good|see you|\\+1)\\b.*");
+
+  private static final Pattern TAGS = Pattern.compile("<[^>]*>");
+
+  private final SymphonyMessageDispatcher messageDispatcher;
+  private final long intervalMillis;
+  private final Clock clock;
+
+  private final ConcurrentHashMap<String, Escalation> escalations;
+  private final ConcurrentHashMap<Integer, String> interviewStreams;
+  private final ScheduledExecutorService escalationScheduler;
+
+  private final AtomicLong escalationCount;
+  private final AtomicLong acknowledgementCount;
+
+  private volatile Long botUserId;
+
+  public ReminderEscalator(SymphonyMessageDispatcher messageDispatcher, long interval,
+      TimeUnit intervalUnit) {
+    this(messageDispatcher, interval, intervalUnit, Clock.systemUTC());
+  }
+
+  /**
+   * @param messageDispatcher
+   * @param interval
+   * @param intervalUnit
+   * @param clock the time interviews start by, i.e. set back when replaying a recording
+   */
+  public ReminderEscalator(SymphonyMessageDispatcher messageDispatcher, long interval,
+      TimeUnit intervalUnit, Clock clock) {
+    this.messageDispatcher = messageDispatcher;
+    this.intervalMillis = intervalUnit.toMillis(interval);
+    this.clock = clock;
+    this.escalations = new ConcurrentHashMap<>();
+    this.interviewStreams = new ConcurrentHashMap<>();
+    this.escalationCount = new AtomicLong();
+    this.acknowledgementCount = new AtomicLong();
+    this.escalationScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "reminder-escalator");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Starts escalating a reminder that was sent to the stream, joining any escalation already there
+   * @param streamId
+   * @param reminder
+   */
+  public void escalate(String streamId, GreenhouseMessageMLFormatter reminder) {
+    int interviewId = reminder.getInterview().getId();
+
+    //An interview is only escalated in one stream, i.e. its panel changed since
+    String previousStreamId = interviewStreams.put(interviewId, streamId);
+    if(previousStreamId != null && !previousStreamId.equals(streamId)) {
+      removeReminder(previousStreamId, interviewId);
+    }
+
+    escalations.compute(streamId, (key, escalation) -> {
+      if(escalation == null) {
+        escalation = new Escalation(streamId);
+        escalation.future = escalationScheduler.scheduleWithFixedDelay(escalation::safelyRemind,
+            intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+      }
+      escalation.reminders.removeIf(existing -> existing.getInterview().getId() == interviewId);
+      escalation.reminders.add(reminder);
+      return escalation;
+    });
+  }
+
+  /**
+   * Stops escalating a cancelled interview, leaving the other reminders in its stream
+   * @param interviewId
+   * @return true if the interview was being escalated
+   */
+  public boolean cancel(int interviewId) {
+    String streamId = interviewStreams.remove(interviewId);
+    if(streamId == null) {
+      return false;
+    }
+
+    removeReminder(streamId, interviewId);
+    LOG.debug("Stopped escalating cancelled interview " + interviewId);
+    return true;
+  }
+
+  /**
+   * Escalates a moved interview with its latest details, i.e. its new start time
+   * @param interview
+   * @return true if the interview was being escalated
+   */
+  public boolean replace(Interview interview) {
+    String streamId = interviewStreams.get(interview.getId());
+    if(streamId == null) {
+      return false;
+    }
+
+    Escalation escalation = escalations.get(streamId);
+    if(escalation == null) {
+      return false;
+    }
+
+    escalation.reminders.replaceAll(reminder -> reminder.getInterview().getId() == interview.getId() ?
+        reminder.withInterview(interview) : reminder);
+    return true;
+  }
+
+  /**
+   * Sets the bot's own user id - its messages never acknowledge a reminder
+   * @param botUserId
+   */
+  public void setBotUserId(Long botUserId) {
+    this.botUserId = botUserId;
+  }
+
+  /**
+   * Stops escalating in the streams whose messages acknowledge a reminder
+   * @param messages
+   */
+  public void onMessages(List<V2Message> messages) {
+    Long ownUserId = botUserId;
+    for(V2Message message : messages) {
+      if(ownUserId != null && ownUserId.equals(message.getFromUserId())) {
+        continue;
+      }
+      if(message.getStreamId() != null && isAcknowledgement(message.getMessage())) {
+        acknowledge(message.getStreamId());
+      }
+    }
+  }
+
+  /**
+   * Stops escalating in the stream
+   * @param streamId
+   * @return true if there was an escalation to stop
+   */
+  public boolean acknowledge(String streamId) {
+    Escalation escalation = escalations.remove(streamId);
+    if(escalation == null) {
+      return false;
+    }
+
+    escalation.future.cancel(false);
+    forgetInterviews(escalation);
+    acknowledgementCount.incrementAndGet();
+    LOG.debug("Reminders acknowledged in stream " + streamId);
+    return true;
+  }
+
+  /**
+   * Returns true if the message is a reply acknowledging a reminder
+   * @param messageML
+   * @return
+   */
+  public static boolean isAcknowledgement(String messageML) {
+    if(messageML == null) {
+      return false;
+    }
+
+    String text = TAGS.matcher(messageML).replaceAll(" ").trim().toLowerCase(Locale.ROOT);
+    return ACKNOWLEDGEMENT.matcher(text).matches();
+  }
+
+  public int getPendingCount() {
+    return escalations.size();
+  }
+
+  public long getEscalationCount() {
+    return escalationCount.get();
+  }
+
+  public long getAcknowledgementCount() {
+    return acknowledgementCount.get();
+  }
+
+  public void shutdown() {
+    escalationScheduler.shutdownNow();
+    escalations.clear();
+    interviewStreams.clear();
+  }
+
+  /**
+   * Removes an interview's reminder from the stream's escalation, stopping it if nothing is left
+   * @param streamId
+   * @param interviewId
+   */
+  private void removeReminder(String streamId, int interviewId) {
+    escalations.computeIfPresent(streamId, (key, escalation) -> {
+      escalation.reminders.removeIf(reminder -> reminder.getInterview().getId() == interviewId);
+      if(!escalation.reminders.isEmpty()) {
+        return escalation;
+      }
+      escalation.future.cancel(false);
+      return null;
+    });
+  }
+
+  /**
+   * Drops the interviews of an escalation that stopped from the interview index
+   * @param escalation
+   */
+  private void forgetInterviews(Escalation escalation) {
+    for(GreenhouseMessageMLFormatter reminder : escalation.reminders) {
+      interviewStreams.remove(reminder.getInterview().getId(), escalation.streamId);
+    }
+  }
+
+  /**
+   * The reminders being escalated in a stream
+   */
+  private final class Escalation {
+    private final String streamId;
+    private final List<GreenhouseMessageMLFormatter> reminders = new CopyOnWriteArrayList<>();
+    private ScheduledFuture<?> future;
+
+    private Escalation(String streamId) {
+      this.streamId = streamId;
+    }
+
+    /**
+     * Reminds, logging failures - an exception would cancel the escalation for good
+     */
+    private void safelyRemind() {
+      try {
+        remind();
+      } catch (RuntimeException exception) {
+        LOG.error("Error escalating reminders in stream " + streamId, exception);
+      }
+    }
+
+    /**
+     * Sends the reminders for interviews that haven't started yet, and stops once they all have
+     */
+    private void remind() {
+      Date now = new Date(clock.millis());
+      List<GreenhouseMessageMLFormatter> upcomingReminders = getUpcomingReminders(now);
+
+      if(upcomingReminders.isEmpty()) {
+        //Checked again under the map's lock, in case a reminder was just added
+        escalations.computeIfPresent(streamId, (key, escalation) -> {
+          if(escalation != this || !getUpcomingReminders(now).isEmpty()) {
+            return escalation;
+          }
+          future.cancel(false);
+          forgetInterviews(this);
+          return null;
+        });
+        return;
+      }
+
+      Date deadline = upcomingReminders.get(0).getInterview().getStartDate();
+      for(GreenhouseMessageMLFormatter reminder : upcomingReminders) {
+        if(reminder.getInterview().getStartDate().before(deadline)) {
+          deadline = reminder.getInterview().getStartDate();
+        }
+      }
+
+      escalationCount.incrementAndGet();
+      messageDispatcher.dispatch(streamId,
+          GreenhouseMessageMLFormatter.getCombinedMessageML(upcomingReminders), deadline)
+          .whenComplete((message, exception) -> {
+            if(exception != null) {
+              LOG.error("Error escalating reminders in stream " + streamId, exception);
+            }
+          });
+    }
+
+    private List<GreenhouseMessageMLFormatter> getUpcomingReminders(Date now) {
+      List<GreenhouseMessageMLFormatter> upcomingReminders = new ArrayList<>();
+      for(GreenhouseMessageMLFormatter reminder : reminders) {
+        Date startDate = reminder.getInterview().getStartDate();
+        if(startDate != null && startDate.after(now)) {
+          upcomingReminders.add(reminder);
+        }
+      }
+      return upcomingReminders;
+    }
+  }
+}
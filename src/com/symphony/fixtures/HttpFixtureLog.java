@@ -0,0 +1,228 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.fixtures;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compact on-disk log of HttpFixtureRecords
+ *
+ * Records are length prefixed binary, gzipped as a whole. Each record is flushed as it is
+ * appended, so a recording cut short by a crash is still readable up to its last record. The
+ * header holds the wall clock time the capture started at, so a replay can rewind to it.
+ */
+
+public final class HttpFixtureLog implements AutoCloseable {
+
+  private static final int MAGIC = 0x47484658;
+  private static final int VERSION = 2;
+
+  /** Logs from before the capture time was recorded still replay, without rewinding the clock */
+  private static final int VERSION_WITHOUT_CAPTURE_TIME = 1;
+
+  private final DataOutputStream output;
+  private final long startedAtNanos;
+  private final long capturedAtMillis;
+  private int recordCount;
+
+  /**
+   * Starts a new log, replacing any log already in the file
+   * @param file
+   */
+  public HttpFixtureLog(File file) {
+    try {
+      File directory = file.getAbsoluteFile().getParentFile();
+      if(directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("Could not create directory " + directory);
+      }
+
+      this.output = new DataOutputStream(new GZIPOutputStream(
+          new BufferedOutputStream(new FileOutputStream(file)), true));
+      this.capturedAtMillis = System.currentTimeMillis();
+      this.output.writeInt(MAGIC);
+      this.output.writeInt(VERSION);
+      this.output.writeLong(capturedAtMillis);
+      this.output.flush();
+    } catch (IOException exception) {
+      throw new RuntimeException("Error creating fixture log: " + file, exception);
+    }
+    this.startedAtNanos = System.nanoTime();
+  }
+
+  /**
+   * Returns the wall clock time the capture started at
+   * @return
+   */
+  public long getCapturedAtMillis() {
+    return capturedAtMillis;
+  }
+
+  /**
+   * Returns the milliseconds since the log was started, for stamping records with
+   * @return
+   */
+  public long getElapsedMillis() {
+    return (System.nanoTime() - startedAtNanos) / 1000000;
+  }
+
+  /**
+   * Appends a record to the log
+   * @param record
+   */
+  public synchronized void append(HttpFixtureRecord record) {
+    try {
+      output.writeUTF(record.getChannel());
+      output.writeUTF(record.getMethod());
+      output.writeUTF(record.getUrl());
+      output.writeUTF(record.getRequestDigest());
+      output.writeLong(record.getStartedAtMillis());
+      output.writeLong(record.getDurationMillis());
+      output.writeShort(record.getStatusCode());
+
+      output.writeShort(record.getHeaders().size());
+      for(Map.Entry<String, String> header : record.getHeaders().entrySet()) {
+        output.writeUTF(header.getKey());
+        output.writeUTF(header.getValue());
+      }
+
+      output.writeInt(record.getBody().length);
+      output.write(record.getBody());
+      output.flush();
+      recordCount++;
+    } catch (IOException exception) {
+      throw new RuntimeException("Error appending to fixture log", exception);
+    }
+  }
+
+  public synchronized int getRecordCount() {
+    return recordCount;
+  }
+
+  @Override
+  public synchronized void close() {
+    try {
+      output.close();
+    } catch (IOException exception) {
+      throw new RuntimeException("Error closing fixture log", exception);
+    }
+  }
+
+  /**
+   * Returns the wall clock time the log's capture started at
+   * @param file
+   * @return the time, or -1 if the log is from before capture times were recorded
+   */
+  public static long readCapturedAtMillis(File file) {
+    try(DataInputStream input = new DataInputStream(new GZIPInputStream(
+        new BufferedInputStream(new FileInputStream(file))))) {
+      return readHeader(input, file);
+    } catch (IOException exception) {
+      throw new RuntimeException("Error reading fixture log: " + file, exception);
+    }
+  }
+
+  /**
+   * Reads every record in a log, in the order they were appended
+   * @param file
+   * @return
+   */
+  public static List<HttpFixtureRecord> read(File file) {
+    List<HttpFixtureRecord> records = new ArrayList<>();
+
+    try(DataInputStream input = new DataInputStream(new GZIPInputStream(
+        new BufferedInputStream(new FileInputStream(file))))) {
+      readHeader(input, file);
+
+      while(true) {
+        String channel;
+        try {
+          channel = input.readUTF();
+        } catch (EOFException endOfLog) {
+          break;
+        }
+
+        String method = input.readUTF();
+        String url = input.readUTF();
+        String requestDigest = input.readUTF();
+        long startedAtMillis = input.readLong();
+        long durationMillis = input.readLong();
+        int statusCode = input.readUnsignedShort();
+
+        int headerCount = input.readUnsignedShort();
+        Map<String, String> headers = new LinkedHashMap<>();
+        for(int i = 0; i < headerCount; i++) {
+          headers.put(input.readUTF(), input.readUTF());
+        }
+
+        byte[] body = new byte[input.readInt()];
+        input.readFully(body);
+
+        records.add(new HttpFixtureRecord(channel, method, url, requestDigest, startedAtMillis,
+            durationMillis, statusCode, headers, body));
+      }
+    } catch (EOFException truncated) {
+      //A recording cut off mid record still replays everything before it
+    } catch (IOException exception) {
+      throw new RuntimeException("Error reading fixture log: " + file, exception);
+    }
+    return records;
+  }
+
+  /**
+   * Private helper method for checking a log's header
+   * @param input
+   * @param file
+   * @return the capture time, or -1 if the log doesn't have one
+   */
+  private static long readHeader(DataInputStream input, File file) throws IOException {
+    if(input.readInt() != MAGIC) {
+      throw new RuntimeException("Not a fixture log: " + file);
+    }
+
+    int version = input.readInt();
+    if(version == VERSION) {
+      return input.readLong();
+    }
+    if(version == VERSION_WITHOUT_CAPTURE_TIME) {
+      return -1;
+    }
+    throw new RuntimeException("Unsupported fixture log version " + version + ": " + file);
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.fixtures;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One captured request/response pair
+ */
+
+public final class HttpFixtureRecord {
+
+  /** Channel of calls made to Greenhouse's Harvest API */
+  public static final String GREENHOUSE = "greenhouse";
+  /** Channel of calls made through the Symphony ApiClients */
+  public static final String SYMPHONY = "symphony";
+
+  private final String channel;
+  private final String method;
+  private final String url;
+  private final String requestDigest;
+  private final long startedAtMillis;
+  private final long durationMillis;
+  private final int statusCode;
+  private final Map<String, String> headers;
+  private final byte[] body;
+
+  public HttpFixtureRecord(String channel, String method, String url, String requestDigest,
+      long startedAtMillis, long durationMillis, int statusCode, Map<String, String> headers,
+      byte[] body) {
+    this.channel = channel;
+    this.method = method;
+    this.url = url;
+    this.requestDigest = requestDigest == null ? "" : requestDigest;
+    this.startedAtMillis = startedAtMillis;
+    this.durationMillis = durationMillis;
+    this.statusCode = statusCode;
+    this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+    this.body = body;
+  }
+
+  public String getChannel() {
+    return channel;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  /**
+   * Returns a digest of the request body, empty for requests without one
+   * @return
+   */
+  public String getRequestDigest() {
+    return requestDigest;
+  }
+
+  /**
+   * Returns when the request was made, relative to the start of the recording
+   * @return
+   */
+  public long getStartedAtMillis() {
+    return startedAtMillis;
+  }
+
+  /**
+   * Returns how long the response took to arrive
+   * @return
+   */
+  public long getDurationMillis() {
+    return durationMillis;
+  }
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  public Map<String, String> getHeaders() {
+    return headers;
+  }
+
+  public byte[] getBody() {
+    return body;
+  }
+
+  @Override
+  public String toString() {
+    return "HttpFixtureRecord{" +
+        "channel='" + channel + '\'' +
+        ", method='" + method + '\'' +
+        ", url='" + url + '\'' +
+        ", durationMillis=" + durationMillis +
+        ", statusCode=" + statusCode +
+        ", bodyLength=" + body.length +
+        '}';
+  }
+}
@@ -0,0 +1,327 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.fixtures;
+
+import com.symphony.configurations.IConfigurationProvider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Records every HTTP exchange the clients make to an HttpFixtureLog, or serves them back
+ *
+ * Shared by the Greenhouse transport and the Symphony ApiClients so a whole poll lands in a
+ * single log. When replaying, each response is delayed by its recorded latency divided by the
+ * replay speed - 1 replays in real time, 10 ten times faster and 0 as fast as possible.
+ *
+ * Recorded responses hold the dates of the day they were captured, so when replaying getClock()
+ * is set back by the time between the capture starting and the replay starting. The bot reads the
+ * time from that clock, so a replayed poll sees the same upcoming interviews the recorded one did.
+ */
+
+public final class HttpFixtures implements AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HttpFixtures.class);
+
+  /** Only the headers the clients read are kept, to keep the log compact */
+  private static final Set<String> RECORDED_HEADERS = new HashSet<>(Arrays.asList(
+      "content-type", "link", "x-ratelimit-limit", "x-ratelimit-remaining", "retry-after"));
+
+  /** Query parameters the clients set from the current time, which never match between runs */
+  private static final Pattern TIME_PARAMETERS = Pattern.compile(
+      "([?&](?:(?:created|updated|starts|ends)_(?:after|before)|since))=[^&]*");
+
+  public enum Mode {
+    /** Requests go to the network and nothing is written */
+    OFF,
+    /** Requests go to the network and every exchange is written to the log */
+    RECORD,
+    /** Requests are answered from the log without touching the network */
+    REPLAY
+  }
+
+  private final Mode mode;
+  private final HttpFixtureLog log;
+  private final double replaySpeed;
+  private final Clock clock;
+  private final Map<String, List<HttpFixtureRecord>> unservedRecords;
+  private final Map<String, HttpFixtureRecord> lastServedRecords;
+  private final AtomicLong replayedCount;
+  private final AtomicLong missedCount;
+
+  private HttpFixtures(Mode mode, HttpFixtureLog log, List<HttpFixtureRecord> records, double replaySpeed,
+      Clock clock) {
+    this.mode = mode;
+    this.log = log;
+    this.replaySpeed = replaySpeed;
+    this.clock = clock;
+    this.unservedRecords = new HashMap<>();
+    this.lastServedRecords = new HashMap<>();
+    this.replayedCount = new AtomicLong();
+    this.missedCount = new AtomicLong();
+
+    for(HttpFixtureRecord record : records) {
+      String key = getKey(record.getChannel(), record.getMethod(), record.getUrl());
+      unservedRecords.computeIfAbsent(key, k -> new ArrayList<>()).add(record);
+    }
+  }
+
+  /**
+   * Returns fixtures that stay out of the way
+   * @return
+   */
+  public static HttpFixtures off() {
+    return new HttpFixtures(Mode.OFF, null, new ArrayList<>(), 0, Clock.systemUTC());
+  }
+
+  /**
+   * Returns fixtures that record to a new log in the file
+   * @param file
+   * @return
+   */
+  public static HttpFixtures record(File file) {
+    LOG.info("Recording HTTP fixtures to " + file);
+    return new HttpFixtures(Mode.RECORD, new HttpFixtureLog(file), new ArrayList<>(), 0, Clock.systemUTC());
+  }
+
+  /**
+   * Returns fixtures that replay the log in the file
+   * @param file
+   * @param replaySpeed multiple of real time to replay at, 0 for as fast as possible
+   * @return
+   */
+  public static HttpFixtures replay(File file, double replaySpeed) {
+    List<HttpFixtureRecord> records = HttpFixtureLog.read(file);
+    long capturedAtMillis = HttpFixtureLog.readCapturedAtMillis(file);
+    LOG.info("Replaying " + records.size() + " HTTP fixtures from " + file + " at " +
+        (replaySpeed > 0 ? replaySpeed + "x" : "max speed"));
+
+    //Rewound to when the capture started, so the recorded interviews are as upcoming as they were
+    Clock clock = Clock.systemUTC();
+    if(capturedAtMillis < 0) {
+      LOG.warn("Fixture log has no capture time, replaying against the current time");
+    } else {
+      clock = Clock.offset(clock, Duration.ofMillis(capturedAtMillis - clock.millis()));
+      LOG.info("Replaying with the clock set back to " + new Date(clock.millis()));
+    }
+    return new HttpFixtures(Mode.REPLAY, null, records, replaySpeed, clock);
+  }
+
+  /**
+   * Returns the fixtures the bot is configured with
+   * @param configurationProvider
+   * @return
+   */
+  public static HttpFixtures fromConfiguration(IConfigurationProvider configurationProvider) {
+    switch(configurationProvider.getHttpFixtureMode()) {
+      case RECORD:
+        return record(configurationProvider.getHttpFixtureFile());
+      case REPLAY:
+        return replay(configurationProvider.getHttpFixtureFile(),
+            configurationProvider.getHttpFixtureReplaySpeed());
+      default:
+        return off();
+    }
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  public boolean isRecording() {
+    return mode == Mode.RECORD;
+  }
+
+  public boolean isReplaying() {
+    return mode == Mode.REPLAY;
+  }
+
+  /**
+   * Returns the clock the bot should read the time from - set back to the capture when replaying
+   * @return
+   */
+  public Clock getClock() {
+    return clock;
+  }
+
+  /**
+   * Returns whether a response header is worth keeping in the log
+   * @param name
+   * @return
+   */
+  public static boolean isRecordedHeader(String name) {
+    return name != null && RECORDED_HEADERS.contains(name.toLowerCase());
+  }
+
+  /**
+   * Returns the time to stamp a request with, for passing back into record
+   * @return
+   */
+  public long getElapsedMillis() {
+    return log == null ? 0 : log.getElapsedMillis();
+  }
+
+  /**
+   * Writes an exchange to the log when recording
+   * @param channel
+   * @param method
+   * @param url
+   * @param requestBody
+   * @param startedAtMillis from getElapsedMillis when the request was made
+   * @param statusCode
+   * @param headers
+   * @param body
+   */
+  public void record(String channel, String method, String url, String requestBody,
+      long startedAtMillis, int statusCode, Map<String, String> headers, byte[] body) {
+    if(!isRecording()) {
+      return;
+    }
+
+    log.append(new HttpFixtureRecord(channel, method, url, digest(requestBody), startedAtMillis,
+        log.getElapsedMillis() - startedAtMillis, statusCode, headers, body));
+  }
+
+  /**
+   * Returns the recorded response to a request, after waiting out its scaled latency
+   * Prefers a recording whose request body matches, then any other recording of the same
+   * request, and repeats the last response served once the recordings run out
+   * @param channel
+   * @param method
+   * @param url
+   * @param requestBody
+   * @return the response, or null when the request was never recorded
+   */
+  public HttpFixtureRecord replay(String channel, String method, String url, String requestBody) {
+    String key = getKey(channel, method, url);
+    String requestDigest = digest(requestBody);
+
+    HttpFixtureRecord record = null;
+    synchronized(this) {
+      List<HttpFixtureRecord> records = unservedRecords.get(key);
+      if(records != null && !records.isEmpty()) {
+        int index = 0;
+        for(int i = 0; i < records.size(); i++) {
+          if(records.get(i).getRequestDigest().equals(requestDigest)) {
+            index = i;
+            break;
+          }
+        }
+        record = records.remove(index);
+        lastServedRecords.put(key, record);
+      } else {
+        record = lastServedRecords.get(key);
+      }
+    }
+
+    if(record == null) {
+      missedCount.incrementAndGet();
+      LOG.warn("No recorded response for " + method + " " + url);
+      return null;
+    }
+
+    replayedCount.incrementAndGet();
+    if(replaySpeed > 0 && record.getDurationMillis() > 0) {
+      try {
+        Thread.sleep((long) (record.getDurationMillis() / replaySpeed));
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted replaying " + method + " " + url, exception);
+      }
+    }
+    return record;
+  }
+
+  /**
+   * Returns how many requests were answered from the log
+   * @return
+   */
+  public long getReplayedCount() {
+    return replayedCount.get();
+  }
+
+  /**
+   * Returns how many requests had nothing recorded to answer them with
+   * @return
+   */
+  public long getMissedCount() {
+    return missedCount.get();
+  }
+
+  @Override
+  public void close() {
+    if(log != null) {
+      log.close();
+      LOG.info("Recorded " + log.getRecordCount() + " HTTP fixtures");
+    }
+  }
+
+  /**
+   * Returns the key recordings are matched on - the request with its time parameters blanked out,
+   * so a poll recorded yesterday still answers a poll made today, in the order they were recorded
+   * @param channel
+   * @param method
+   * @param url
+   * @return
+   */
+  private static String getKey(String channel, String method, String url) {
+    return channel + " " + method + " " + TIME_PARAMETERS.matcher(url).replaceAll("$1=*");
+  }
+
+  private static String digest(String requestBody) {
+    if(requestBody == null || requestBody.isEmpty()) {
+      return "";
+    }
+
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-1").digest(requestBody.getBytes(StandardCharsets.UTF_8));
+      StringBuilder hex = new StringBuilder();
+      for(byte b : hash) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException exception) {
+      throw new RuntimeException("SHA-1 not supported", exception);
+    }
+  }
+}
@@ -47,18 +47,24 @@ public class DateUtil {
   public static final SimpleDateFormat messageTimeFormatter = new SimpleDateFormat("HH:mm zzz");
 
   public static Date getDateFromEpochString(String date){
-    try {
-      epochFormatter.setTimeZone(TimeZone.getTimeZone("GMT"));
-      return epochFormatter.parse(date);
-    }
-    catch(Exception e) {
-      LOGGER.error("Error parsing date", e);
-      return new Date();
+    //SimpleDateFormat is not thread safe and responses are decoded on several threads
+    synchronized(epochFormatter) {
+      try {
+        epochFormatter.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return epochFormatter.parse(date);
+      }
+      catch(Exception e) {
+        LOGGER.error("Error parsing date", e);
+        return new Date();
+      }
     }
   }
 
   public static String getEpochStringFromDate(Date date) {
-    return epochFormatter.format(date);
+    synchronized(epochFormatter) {
+      epochFormatter.setTimeZone(TimeZone.getTimeZone("GMT"));
+      return epochFormatter.format(date);
+    }
   }
 
   public static int getMinutesBetweenDates(Date firstDate, Date secondDate) {
@@ -30,7 +30,10 @@ import com.symphony.models.Interview;
 
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Created by ryan.dsouza on 7/25/16.
@@ -50,8 +53,53 @@ public class GreenhouseMessageMLFormatter {
     this.application = application;
   }
 
+  public Interview getInterview() {
+    return interview;
+  }
+
+  /**
+   * Returns a formatter for the same candidate and application with the interview's latest details
+   * @param interview
+   * @return
+   */
+  public GreenhouseMessageMLFormatter withInterview(Interview interview) {
+    return new GreenhouseMessageMLFormatter(interview, candidate, application);
+  }
+
   public MessageML getMessageML() {
     MessageML messageML = new MessageML();
+    addInterview(messageML);
+    return messageML;
+  }
+
+  /**
+   * Returns one message with an entry per interview, i.e. for an interviewer on back-to-back panels
+   * @param formatters
+   * @return
+   */
+  public static MessageML getCombinedMessageML(List<GreenhouseMessageMLFormatter> formatters) {
+    if(formatters.size() == 1) {
+      return formatters.get(0).getMessageML();
+    }
+
+    //In the order the interviews start
+    List<GreenhouseMessageMLFormatter> sortedFormatters = new ArrayList<>(formatters);
+    sortedFormatters.sort(Comparator.comparing(formatter -> formatter.interview.getStartDate()));
+
+    MessageML messageML = new MessageML();
+    messageML.addParagraph("You have " + formatters.size() + " upcoming interviews");
+    for(GreenhouseMessageMLFormatter formatter : sortedFormatters) {
+      messageML.addLineBreak();
+      formatter.addInterview(messageML);
+    }
+    return messageML;
+  }
+
+  /**
+   * Adds the sentence about this interview to the message
+   * @param messageML
+   */
+  private void addInterview(MessageML messageML) {
 
     //TODO: Remove - just for testing
     messageML.addParagraph(interview.getInterviewers().get(0).getName() + ", ");
@@ -79,7 +127,5 @@ public class GreenhouseMessageMLFormatter {
 
     String jobs = StringUtils.join(application.getJobs());
     messageML.addParagraph(" for " + jobs);
-
-    return messageML;
   }
 }
\ No newline at end of file
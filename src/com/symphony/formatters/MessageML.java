@@ -29,6 +29,11 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Text;
 
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.StringReader;
 import java.io.StringWriter;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -57,6 +62,9 @@ public class MessageML {
 
   private int numChildren;
 
+  //Parsed messages are already indented - indenting again would add to their whitespace
+  private boolean indent = true;
+
   public MessageML() {
 
     try {
@@ -72,6 +80,29 @@ public class MessageML {
     }
   }
 
+  /**
+   * Returns the MessageML a previous toString() returned, i.e. to send a saved message again
+   * @param messageML
+   * @return
+   */
+  public static MessageML fromString(String messageML) {
+    MessageML result = new MessageML();
+    if(messageML.isEmpty()) {
+      return result;
+    }
+
+    try {
+      result.document = result.documentBuilder.parse(new InputSource(new StringReader(messageML)));
+      result.rootElement = result.document.getDocumentElement();
+      result.numChildren = result.rootElement.getChildNodes().getLength();
+      result.indent = false;
+      return result;
+    }
+    catch(SAXException | IOException exception) {
+      throw new RuntimeException("Unable to parse MessageML", exception);
+    }
+  }
+
   /**
    * Helper method to add a simple tag
    * @param parentElement
@@ -219,7 +250,7 @@ public class MessageML {
     try {
       Transformer transformer = TransformerFactory.newInstance().newTransformer();
       transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-      transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+      transformer.setOutputProperty(OutputKeys.INDENT, indent ? "yes" : "no");
       StreamResult result = new StreamResult(new StringWriter());
       DOMSource source = new DOMSource(this.document);
       transformer.transform(source, result);
@@ -42,6 +42,10 @@ public class Application {
   private int candidateId;
   private List<String> jobs;
 
+  public Application() {
+    this.jobs = new ArrayList<>();
+  }
+
   public Application(JSONObject object) {
     this.id = object.getInt("id");
     this.candidateId = object.getInt("candidate_id");
@@ -59,14 +63,26 @@ public class Application {
     return id;
   }
 
+  public void setId(int id) {
+    this.id = id;
+  }
+
   public int getCandidateId() {
     return candidateId;
   }
 
+  public void setCandidateId(int candidateId) {
+    this.candidateId = candidateId;
+  }
+
   public List<String> getJobs() {
     return jobs;
   }
 
+  public void setJobs(List<String> jobs) {
+    this.jobs = jobs;
+  }
+
   @Override
   public String toString() {
     return "Application{" +
@@ -55,6 +55,13 @@ public class Candidate {
   private ArrayList<Tuple<String, String>> emailAddresses;
   private ArrayList<Tuple<String, String>> websites;
 
+  public Candidate() {
+    this.id = -1;
+    this.phoneNumbers = new ArrayList<>();
+    this.emailAddresses = new ArrayList<>();
+    this.websites = new ArrayList<>();
+  }
+
   public Candidate(JSONObject object) {
     this.id = getIntFromObject(object, "id");
     this.firstName = getStringFromObject(object, "first_name");
@@ -74,6 +74,13 @@ public class Interview {
     OTHER
   }
 
+  public Interview() {
+    this.interviewers = new ArrayList<Interviewer>();
+    this.status = Status.OTHER;
+    this.id = -1;
+    this.applicationId = -1;
+  }
+
   public Interview(JSONObject object) {
 
     this.updatedAt = DateUtil.getDateFromEpochString(object.getString("updated_at"));
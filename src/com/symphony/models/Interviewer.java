@@ -39,6 +39,10 @@ public class Interviewer {
   private int id;
   private String email;
 
+  public Interviewer() {
+    this.id = -1;
+  }
+
   public Interviewer(JSONObject object) {
 
     this.scorecardId = getStringFromObject(object, "scorecard_id");
@@ -0,0 +1,138 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.outbox;
+
+import java.util.Date;
+
+/**
+ * A rendered reminder in the outbox, and whether the agent acknowledged it yet
+ *
+ * Reminders are identified by their interview, its start date and how many minutes before the
+ * start they are sent - a rescheduled interview gets a new reminder, a re-fired trigger doesn't.
+ */
+
+public final class OutboxEntry {
+
+  private final long id;
+  private final int interviewId;
+  private final Date startDate;
+  private final int offsetMinutes;
+  private final String streamId;
+  private final String messageML;
+
+  private volatile boolean done;
+
+  //Only in memory - guarded by the outbox
+  private boolean sending;
+  private int attempts;
+
+  public OutboxEntry(long id, int interviewId, Date startDate, int offsetMinutes, String streamId,
+      String messageML) {
+    this.id = id;
+    this.interviewId = interviewId;
+    this.startDate = startDate;
+    this.offsetMinutes = offsetMinutes;
+    this.streamId = streamId;
+    this.messageML = messageML;
+  }
+
+  /**
+   * Returns the key reminders are deduplicated by
+   * @param interviewId
+   * @param startDate
+   * @param offsetMinutes
+   * @return
+   */
+  public static String getKey(int interviewId, Date startDate, int offsetMinutes) {
+    return interviewId + ":" + (startDate == null ? 0 : startDate.getTime()) + ":" + offsetMinutes;
+  }
+
+  public String getKey() {
+    return getKey(interviewId, startDate, offsetMinutes);
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public int getInterviewId() {
+    return interviewId;
+  }
+
+  public Date getStartDate() {
+    return startDate;
+  }
+
+  public int getOffsetMinutes() {
+    return offsetMinutes;
+  }
+
+  public String getStreamId() {
+    return streamId;
+  }
+
+  public String getMessageML() {
+    return messageML;
+  }
+
+  public boolean isDone() {
+    return done;
+  }
+
+  void setDone(boolean done) {
+    this.done = done;
+  }
+
+  boolean isSending() {
+    return sending;
+  }
+
+  void setSending(boolean sending) {
+    this.sending = sending;
+  }
+
+  /**
+   * Returns how many times this run has tried to send the reminder
+   * @return
+   */
+  public int getAttempts() {
+    return attempts;
+  }
+
+  void incrementAttempts() {
+    attempts++;
+  }
+
+  @Override
+  public String toString() {
+    return "OutboxEntry{" +
+        "id=" + id +
+        ", key=" + getKey() +
+        ", streamId='" + streamId + '\'' +
+        ", done=" + done +
+        '}';
+  }
+}
@@ -0,0 +1,475 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.outbox;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, write-ahead log of reminders, so none are lost or sent twice across a crash
+ *
+ * A reminder is appended before it is sent and marked done once the agent acknowledges it. On
+ * startup the log is read back: reminders that were never marked done are handed back for
+ * sending, and reminders that were are remembered so a re-fired trigger doesn't send them again.
+ *
+ * Every record is "length, CRC32, payload", so a record torn by a crash is detected and cut off.
+ * Appends use group commit: a caller writes its record and then waits for an fsync that covers
+ * it - whoever gets there first forces everything written so far, so a burst of appends shares a
+ * handful of fsyncs instead of paying for one each. A caller with a batch of reminders appends them
+ * all at once and waits for a single fsync.
+ */
+
+public final class ReminderOutbox implements AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReminderOutbox.class);
+
+  private static final byte ENTRY_RECORD = 1;
+  private static final byte DONE_RECORD = 2;
+
+  /** Size the log is compacted at */
+  private static final long MAX_LOG_BYTES = 16 * 1024 * 1024;
+
+  /** How long done reminders are remembered after their interview started */
+  private static final long DONE_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+  private final File file;
+  private final Map<String, OutboxEntry> entries;
+
+  //Guards writing to the channel
+  private final Object writeLock;
+
+  //Held by whoever is running the fsync, everyone else waiting on it queues behind
+  private final Object syncLock;
+
+  private FileChannel channel;
+  private long nextId;
+  private long fileBytes;
+
+  //Positions are bytes ever written, so compacting the file doesn't move them
+  private long writtenBytes;
+  private final AtomicLong durableBytes;
+
+  private long appendCount;
+  private long syncCount;
+
+  /**
+   * Opens the log, reading back what a previous run left in it and compacting it
+   * @param file
+   */
+  public ReminderOutbox(File file) {
+    this.file = file;
+    this.entries = new LinkedHashMap<>();
+    this.writeLock = new Object();
+    this.syncLock = new Object();
+    this.durableBytes = new AtomicLong();
+
+    try {
+      File directory = file.getAbsoluteFile().getParentFile();
+      if(directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("Could not create directory " + directory);
+      }
+
+      load();
+      rewrite(System.currentTimeMillis());
+    } catch (IOException exception) {
+      throw new RuntimeException("Error opening reminder outbox: " + file, exception);
+    }
+  }
+
+  /**
+   * Logs a reminder before it is sent - returns once the record is on disk
+   * @param interviewId
+   * @param startDate
+   * @param offsetMinutes
+   * @param streamId
+   * @param messageML
+   * @return the entry to mark done once sent or release if sending fails - an earlier entry for this
+   * reminder whose send failed is handed back to retry - or null if this reminder was already sent or
+   * is being sent
+   */
+  public OutboxEntry append(int interviewId, Date startDate, int offsetMinutes, String streamId,
+      String messageML) {
+    return appendAll(Collections.singletonList(
+        new OutboxEntry(-1, interviewId, startDate, offsetMinutes, streamId, messageML))).get(0);
+  }
+
+  /**
+   * Logs a batch of reminders before they are sent - returns once all of them are on disk,
+   * after one fsync for the whole batch
+   * The ids of the reminders passed in are ignored, each one logged gets the next id
+   * @param reminders
+   * @return for each reminder, in order, the entry to mark done or release as with append - or null
+   * if that reminder was already sent or is being sent
+   */
+  public List<OutboxEntry> appendAll(List<OutboxEntry> reminders) {
+    List<OutboxEntry> appendedEntries = new ArrayList<>(reminders.size());
+    long position = 0;
+
+    synchronized(writeLock) {
+      for(OutboxEntry reminder : reminders) {
+        OutboxEntry existingEntry = entries.get(reminder.getKey());
+        if(existingEntry != null) {
+          appendedEntries.add(claim(existingEntry) ? existingEntry : null);
+          continue;
+        }
+
+        OutboxEntry entry = new OutboxEntry(nextId++, reminder.getInterviewId(), reminder.getStartDate(),
+            reminder.getOffsetMinutes(), reminder.getStreamId(), reminder.getMessageML());
+        entry.setSending(true);
+        entry.incrementAttempts();
+        position = write(encodeEntry(entry));
+        entries.put(entry.getKey(), entry);
+        appendedEntries.add(entry);
+        appendCount++;
+      }
+    }
+
+    awaitDurable(position);
+    return appendedEntries;
+  }
+
+  /**
+   * Claims a pending reminder for sending, so nothing else sends it at the same time
+   * @param entry
+   * @return false if the reminder was already sent or is being sent
+   */
+  public boolean claim(OutboxEntry entry) {
+    synchronized(writeLock) {
+      if(entry.isDone() || entry.isSending()) {
+        return false;
+      }
+      entry.setSending(true);
+      entry.incrementAttempts();
+      return true;
+    }
+  }
+
+  /**
+   * Gives up the claim on a reminder whose send failed, so the next append for it hands it back
+   * @param entry
+   * @return how many times this run has tried to send the reminder
+   */
+  public int release(OutboxEntry entry) {
+    synchronized(writeLock) {
+      entry.setSending(false);
+      return entry.getAttempts();
+    }
+  }
+
+  /**
+   * Marks a reminder as sent - returns once the record is on disk
+   * @param entry
+   */
+  public void markDone(OutboxEntry entry) {
+    long position;
+    synchronized(writeLock) {
+      if(entry.isDone()) {
+        return;
+      }
+      entry.setDone(true);
+      entry.setSending(false);
+      position = write(encodeDone(entry.getId()));
+    }
+    awaitDurable(position);
+  }
+
+  /**
+   * Returns the reminders that were logged but never marked done
+   * @return
+   */
+  public List<OutboxEntry> getPendingEntries() {
+    List<OutboxEntry> pendingEntries = new ArrayList<>();
+    synchronized(writeLock) {
+      for(OutboxEntry entry : entries.values()) {
+        if(!entry.isDone()) {
+          pendingEntries.add(entry);
+        }
+      }
+    }
+    return pendingEntries;
+  }
+
+  /**
+   * Rewrites the log without the reminders that no longer matter, if it has grown large
+   */
+  public void compactIfNeeded() {
+    synchronized(writeLock) {
+      if(fileBytes < MAX_LOG_BYTES) {
+        return;
+      }
+
+      try {
+        rewrite(System.currentTimeMillis());
+      } catch (IOException exception) {
+        LOG.error("Error compacting reminder outbox", exception);
+      }
+    }
+  }
+
+  public long getAppendCount() {
+    synchronized(writeLock) {
+      return appendCount;
+    }
+  }
+
+  public long getSyncCount() {
+    synchronized(syncLock) {
+      return syncCount;
+    }
+  }
+
+  @Override
+  public void close() {
+    synchronized(writeLock) {
+      try {
+        channel.force(false);
+        channel.close();
+      } catch (IOException exception) {
+        throw new RuntimeException("Error closing reminder outbox", exception);
+      }
+    }
+  }
+
+  /**
+   * Appends a framed record to the channel
+   * @param payload
+   * @return the log size once the record is written
+   */
+  private long write(byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+
+    ByteBuffer buffer = ByteBuffer.allocate(8 + payload.length);
+    buffer.putInt(payload.length);
+    buffer.putInt((int) crc.getValue());
+    buffer.put(payload);
+    buffer.flip();
+
+    try {
+      while(buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } catch (IOException exception) {
+      throw new RuntimeException("Error appending to reminder outbox", exception);
+    }
+
+    fileBytes += buffer.limit();
+    writtenBytes += buffer.limit();
+    return writtenBytes;
+  }
+
+  /**
+   * Waits until the log is on disk up to the position, running the fsync if nobody else is
+   * @param position
+   */
+  private void awaitDurable(long position) {
+    while(durableBytes.get() < position) {
+      synchronized(syncLock) {
+        //The fsync we queued behind may already have covered us
+        if(durableBytes.get() >= position) {
+          return;
+        }
+
+        //Everything written so far goes to disk in this one fsync
+        long target;
+        FileChannel syncChannel;
+        synchronized(writeLock) {
+          target = writtenBytes;
+          syncChannel = channel;
+        }
+
+        try {
+          syncChannel.force(false);
+        } catch (ClosedChannelException compacted) {
+          //Compacting forced everything written before it, so the loop ends on the next check
+          continue;
+        } catch (IOException exception) {
+          throw new RuntimeException("Error syncing reminder outbox", exception);
+        }
+
+        durableBytes.accumulateAndGet(target, Math::max);
+        syncCount++;
+      }
+    }
+  }
+
+  /**
+   * Reads every intact record in the log into memory
+   */
+  private void load() throws IOException {
+    if(!file.exists()) {
+      return;
+    }
+
+    Map<Long, OutboxEntry> entriesById = new HashMap<>();
+    ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+    while(log.remaining() >= 8) {
+      int length = log.getInt();
+      int expectedCrc = log.getInt();
+      if(length < 1 || length > log.remaining()) {
+        LOG.warn("Reminder outbox ends in a torn record, ignoring it");
+        break;
+      }
+
+      byte[] payload = new byte[length];
+      log.get(payload);
+      CRC32 crc = new CRC32();
+      crc.update(payload);
+      if((int) crc.getValue() != expectedCrc) {
+        LOG.warn("Reminder outbox has a corrupt record, ignoring the rest of it");
+        break;
+      }
+
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+      byte type = input.readByte();
+      if(type == ENTRY_RECORD) {
+        OutboxEntry entry = decodeEntry(input);
+        entriesById.put(entry.getId(), entry);
+        entries.put(entry.getKey(), entry);
+        nextId = Math.max(nextId, entry.getId() + 1);
+      } else if(type == DONE_RECORD) {
+        OutboxEntry entry = entriesById.get(input.readLong());
+        if(entry != null) {
+          entry.setDone(true);
+        }
+      }
+    }
+
+    LOG.info("Restored " + entries.size() + " reminders, " + getPendingEntries().size() +
+        " not sent yet");
+  }
+
+  /**
+   * Replaces the log with one holding only what still matters - pending reminders, and done
+   * reminders whose interview started less than a day ago, without their message
+   */
+  private void rewrite(long now) throws IOException {
+    Iterator<OutboxEntry> iterator = entries.values().iterator();
+    while(iterator.hasNext()) {
+      OutboxEntry entry = iterator.next();
+      if(entry.isDone() && entry.getStartDate() != null &&
+          entry.getStartDate().getTime() < now - DONE_RETENTION_MILLIS) {
+        iterator.remove();
+      }
+    }
+
+    File compactedFile = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+    if(channel != null) {
+      channel.close();
+    }
+    channel = FileChannel.open(compactedFile.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    fileBytes = 0;
+    long compactedFromBytes = writtenBytes;
+
+    for(OutboxEntry entry : entries.values()) {
+      if(entry.isDone()) {
+        write(encodeEntry(new OutboxEntry(entry.getId(), entry.getInterviewId(), entry.getStartDate(),
+            entry.getOffsetMinutes(), entry.getStreamId(), "")));
+        write(encodeDone(entry.getId()));
+      } else {
+        write(encodeEntry(entry));
+      }
+    }
+    channel.force(false);
+    channel.close();
+
+    Files.move(compactedFile.toPath(), file.toPath(),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+    //Everything written before compacting is in the compacted file, which is on disk
+    writtenBytes = compactedFromBytes;
+    durableBytes.accumulateAndGet(writtenBytes, Math::max);
+  }
+
+  private static byte[] encodeEntry(OutboxEntry entry) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(bytes);
+      output.writeByte(ENTRY_RECORD);
+      output.writeLong(entry.getId());
+      output.writeInt(entry.getInterviewId());
+      output.writeLong(entry.getStartDate() == null ? 0 : entry.getStartDate().getTime());
+      output.writeInt(entry.getOffsetMinutes());
+      output.writeUTF(entry.getStreamId());
+
+      byte[] messageML = entry.getMessageML().getBytes(StandardCharsets.UTF_8);
+      output.writeInt(messageML.length);
+      output.write(messageML);
+      output.flush();
+      return bytes.toByteArray();
+    } catch (IOException exception) {
+      throw new RuntimeException("Error encoding outbox entry", exception);
+    }
+  }
+
+  private static OutboxEntry decodeEntry(DataInputStream input) throws IOException {
+    long id = input.readLong();
+    int interviewId = input.readInt();
+    long startMillis = input.readLong();
+    int offsetMinutes = input.readInt();
+    String streamId = input.readUTF();
+
+    byte[] messageML = new byte[input.readInt()];
+    input.readFully(messageML);
+
+    return new OutboxEntry(id, interviewId, startMillis == 0 ? null : new Date(startMillis),
+        offsetMinutes, streamId, new String(messageML, StandardCharsets.UTF_8));
+  }
+
+  private static byte[] encodeDone(long id) {
+    ByteBuffer buffer = ByteBuffer.allocate(9);
+    buffer.put(DONE_RECORD);
+    buffer.putLong(id);
+    return buffer.array();
+  }
+}
@@ -0,0 +1,413 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.scheduling;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs a handler for each reminder id when its time comes, on a hierarchical timing wheel
+ *
+ * Reminders are kept in a concurrent map by id, so scheduling, rescheduling and cancelling are a map
+ * operation and a queue offer - nothing waits on a global lock. One driver thread owns the wheels:
+ * every tick it moves new and cancelled reminders in and out of their buckets in constant time,
+ * cascades reminders from the coarser wheels down as their bucket comes up, and hands the reminders
+ * that are due to a pool of workers. Reminders fire at most one tick late.
+ */
+
+public final class ReminderScheduler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReminderScheduler.class);
+
+  /** Enough wheels for any Date, however small the tick */
+  private static final int MAX_WHEELS = 8;
+
+  private final Consumer<String> handler;
+  private final Clock clock;
+  private final long tickMillis;
+  private final int wheelSize;
+  private final int wheelBits;
+
+  private final ConcurrentHashMap<String, Reminder> reminders;
+  private final Queue<Reminder> scheduled;
+  private final Queue<Reminder> cancelled;
+  private final ExecutorService workers;
+  private final Thread driver;
+
+  private final AtomicLong firedCount;
+
+  //Only touched by the driver thread
+  private final List<Bucket[]> wheels;
+  private long currentTick;
+
+  private volatile boolean running;
+
+  /**
+   * @param handler called with the id of each reminder that comes due
+   * @param tickDuration how often the wheel turns - reminders fire up to this late
+   * @param tickUnit
+   * @param wheelSize buckets per wheel, rounded up to a power of two
+   * @param workerThreads threads the handler runs on
+   */
+  public ReminderScheduler(Consumer<String> handler, long tickDuration, TimeUnit tickUnit, int wheelSize,
+      int workerThreads) {
+    this(handler, tickDuration, tickUnit, wheelSize, workerThreads, Clock.systemUTC());
+  }
+
+  /**
+   * @param handler called with the id of each reminder that comes due
+   * @param tickDuration how often the wheel turns - reminders fire up to this late
+   * @param tickUnit
+   * @param wheelSize buckets per wheel, rounded up to a power of two
+   * @param workerThreads threads the handler runs on
+   * @param clock the time reminders come due by, i.e. set back when replaying a recording
+   */
+  public ReminderScheduler(Consumer<String> handler, long tickDuration, TimeUnit tickUnit, int wheelSize,
+      int workerThreads, Clock clock) {
+    this.handler = handler;
+    this.clock = clock;
+    this.tickMillis = Math.max(1, tickUnit.toMillis(tickDuration));
+    this.wheelBits = 32 - Integer.numberOfLeadingZeros(Math.max(2, wheelSize) - 1);
+    this.wheelSize = 1 << wheelBits;
+
+    this.reminders = new ConcurrentHashMap<>();
+    this.scheduled = new ConcurrentLinkedQueue<>();
+    this.cancelled = new ConcurrentLinkedQueue<>();
+    this.firedCount = new AtomicLong();
+    this.wheels = new ArrayList<>();
+    this.currentTick = clock.millis() / tickMillis;
+
+    AtomicInteger workerNumber = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(Math.max(1, workerThreads), runnable -> {
+      Thread worker = new Thread(runnable, "reminder-scheduler-" + workerNumber.incrementAndGet());
+      worker.setDaemon(true);
+      return worker;
+    });
+
+    this.driver = new Thread(this::drive, "reminder-scheduler");
+    this.driver.setDaemon(true);
+  }
+
+  public void start() {
+    running = true;
+    driver.start();
+  }
+
+  public void stop() {
+    running = false;
+    driver.interrupt();
+    workers.shutdown();
+  }
+
+  /**
+   * Schedules the reminder for the date, replacing any reminder already scheduled with the id
+   * Dates that already passed fire on the next tick
+   * @param id
+   * @param date
+   * @return true if an earlier reminder with the id was replaced
+   */
+  public boolean schedule(String id, Date date) {
+    //Rounded up, so a reminder never fires before its date
+    Reminder reminder = new Reminder(id, Math.floorDiv(date.getTime() + tickMillis - 1, tickMillis));
+    Reminder replaced = reminders.put(id, reminder);
+    if(replaced != null) {
+      discard(replaced);
+    }
+    scheduled.offer(reminder);
+    return replaced != null;
+  }
+
+  /**
+   * Cancels the reminder with the id, if it hasn't fired yet
+   * @param id
+   * @return true if there was a reminder to cancel
+   */
+  public boolean cancel(String id) {
+    Reminder reminder = reminders.remove(id);
+    if(reminder == null) {
+      return false;
+    }
+    discard(reminder);
+    return true;
+  }
+
+  /**
+   * Returns whether a reminder with the id is waiting to fire
+   * @param id
+   * @return
+   */
+  public boolean isScheduled(String id) {
+    return reminders.containsKey(id);
+  }
+
+  /**
+   * Returns the number of reminders waiting to fire
+   * @return
+   */
+  public int size() {
+    return reminders.size();
+  }
+
+  public long getFiredCount() {
+    return firedCount.get();
+  }
+
+  /**
+   * Marks a reminder that was replaced or cancelled, so the driver drops it from its bucket
+   * @param reminder
+   */
+  private void discard(Reminder reminder) {
+    reminder.cancelled = true;
+    cancelled.offer(reminder);
+  }
+
+  /**
+   * Turns the wheels once per tick until stopped
+   */
+  private void drive() {
+    while(running) {
+      try {
+        long nowTick = clock.millis() / tickMillis;
+        while(currentTick < nowTick) {
+          advance(currentTick + 1);
+        }
+        transfer();
+
+        long sleepMillis = (currentTick + 1) * tickMillis - clock.millis();
+        if(sleepMillis > 0) {
+          Thread.sleep(sleepMillis);
+        }
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException exception) {
+        //Keep turning - one bad reminder shouldn't stop the rest
+        LOG.error("Error turning the reminder wheel", exception);
+      }
+    }
+  }
+
+  /**
+   * Moves newly scheduled reminders into their buckets and cancelled ones out of theirs
+   * Package-private for the benchmark, which calls it on a scheduler it never starts - only one
+   * thread may ever touch the wheels
+   */
+  void transfer() {
+    Reminder reminder;
+    while((reminder = scheduled.poll()) != null) {
+      if(!reminder.cancelled) {
+        place(reminder);
+      }
+    }
+    while((reminder = cancelled.poll()) != null) {
+      if(reminder.bucket != null) {
+        reminder.bucket.remove(reminder);
+      }
+    }
+  }
+
+  /**
+   * Moves the clock to the tick: cascades the coarser wheels whose bucket came up, then fires the finest
+   * @param tick
+   */
+  private void advance(long tick) {
+    currentTick = tick;
+
+    for(int level = wheels.size() - 1; level > 0; level--) {
+      int shift = level * wheelBits;
+      if((tick & ((1L << shift) - 1)) == 0) {
+        Bucket bucket = wheels.get(level)[(int) ((tick >>> shift) & (wheelSize - 1))];
+        if(bucket != null) {
+          //Detached first, as a reminder beyond the last wheel lands back in the same bucket
+          Reminder reminder = bucket.removeAll();
+          while(reminder != null) {
+            Reminder next = reminder.unlink();
+            place(reminder);
+            reminder = next;
+          }
+        }
+      }
+    }
+
+    if(!wheels.isEmpty()) {
+      Bucket bucket = wheels.get(0)[(int) (tick & (wheelSize - 1))];
+      if(bucket != null) {
+        Reminder reminder = bucket.removeAll();
+        while(reminder != null) {
+          Reminder next = reminder.unlink();
+          fire(reminder);
+          reminder = next;
+        }
+      }
+    }
+  }
+
+  /**
+   * Puts the reminder in the finest wheel whose span reaches its tick, or fires it if it's due
+   * @param reminder
+   */
+  private void place(Reminder reminder) {
+    if(reminder.tick <= currentTick) {
+      fire(reminder);
+      return;
+    }
+
+    for(int level = 0; level < MAX_WHEELS; level++) {
+      int shift = level * wheelBits;
+      long slotsAhead = (reminder.tick >>> shift) - (currentTick >>> shift);
+      if(slotsAhead < wheelSize || level == MAX_WHEELS - 1 || shift + wheelBits >= 63) {
+        while(wheels.size() <= level) {
+          wheels.add(new Bucket[wheelSize]);
+        }
+        Bucket[] wheel = wheels.get(level);
+        int index = (int) ((reminder.tick >>> shift) & (wheelSize - 1));
+        if(wheel[index] == null) {
+          wheel[index] = new Bucket();
+        }
+        wheel[index].add(reminder);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Hands the reminder to a worker, unless it was cancelled or replaced in the meantime
+   * @param reminder
+   */
+  private void fire(Reminder reminder) {
+    if(reminder.cancelled || !reminders.remove(reminder.id, reminder)) {
+      return;
+    }
+
+    firedCount.incrementAndGet();
+    workers.execute(() -> {
+      try {
+        handler.accept(reminder.id);
+      } catch (RuntimeException exception) {
+        LOG.error("Error handling reminder " + reminder.id, exception);
+      }
+    });
+  }
+
+  @Override
+  public String toString() {
+    return "ReminderScheduler{" +
+        "scheduled=" + reminders.size() +
+        ", fired=" + firedCount.get() +
+        ", wheels=" + wheels.size() +
+        '}';
+  }
+
+  /**
+   * A reminder id and the tick it fires at, linked into the bucket it waits in
+   */
+  private static final class Reminder {
+    private final String id;
+    private final long tick;
+    private volatile boolean cancelled;
+
+    //Only touched by the driver thread
+    private Bucket bucket;
+    private Reminder previous;
+    private Reminder next;
+
+    private Reminder(String id, long tick) {
+      this.id = id;
+      this.tick = tick;
+    }
+
+    /**
+     * Clears the reminder's links once its bucket was emptied
+     * @return the reminder that came after it
+     */
+    private Reminder unlink() {
+      Reminder after = next;
+      bucket = null;
+      previous = null;
+      next = null;
+      return after;
+    }
+  }
+
+  /**
+   * The reminders in one slot of a wheel, as a doubly linked list so any of them can be removed at once
+   */
+  private static final class Bucket {
+    private Reminder head;
+    private Reminder tail;
+
+    private void add(Reminder reminder) {
+      reminder.bucket = this;
+      reminder.previous = tail;
+      reminder.next = null;
+      if(tail == null) {
+        head = reminder;
+      } else {
+        tail.next = reminder;
+      }
+      tail = reminder;
+    }
+
+    private void remove(Reminder reminder) {
+      if(reminder.previous == null) {
+        head = reminder.next;
+      } else {
+        reminder.previous.next = reminder.next;
+      }
+      if(reminder.next == null) {
+        tail = reminder.previous;
+      } else {
+        reminder.next.previous = reminder.previous;
+      }
+      reminder.unlink();
+    }
+
+    /**
+     * Empties the bucket
+     * @return the first of the reminders it held, still linked to the rest
+     */
+    private Reminder removeAll() {
+      Reminder first = head;
+      head = null;
+      tail = null;
+      return first;
+    }
+  }
+}
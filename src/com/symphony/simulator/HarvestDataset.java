@@ -0,0 +1,227 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.simulator;
+
+import com.symphony.models.Application;
+import com.symphony.models.Candidate;
+import com.symphony.models.Interview;
+import com.symphony.models.InterviewType;
+import com.symphony.models.Interviewer;
+import com.symphony.models.Organizer;
+import com.symphony.models.Tuple;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synthetic, repeatable set of Harvest records for the simulator to serve
+ *
+ * Interviews start anywhere from a day ago to a month out, and every few interviews share
+ * an application - and so a candidate - the way a real interview loop does
+ */
+
+public final class HarvestDataset {
+
+  private static final String[] FIRST_NAMES = {"Ada", "Grace", "Alan", "Edsger", "Barbara", "Donald",
+      "Frances", "Ken", "Margaret", "Dennis"};
+  private static final String[] LAST_NAMES = {"Lovelace", "Hopper", "Turing", "Dijkstra", "Liskov",
+      "Knuth", "Allen", "Thompson", "Hamilton", "Ritchie"};
+  private static final String[] JOBS = {"Software Engineer", "Site Reliability Engineer",
+      "Product Manager", "Designer", "Sales Engineer"};
+  private static final String[] INTERVIEW_TYPES = {"Phone Screen", "Coding", "System Design",
+      "Behavioral", "Lunch"};
+  private static final String[] DEPARTMENTS = {"Engineering", "Product", "Design", "Sales"};
+
+  private static final int INTERVIEWER_POOL_SIZE = 200;
+
+  private final List<Interview> interviews;
+  private final Map<Integer, Interview> interviewsById;
+  private final Map<Integer, Application> applicationsById;
+  private final List<Application> applications;
+  private final Map<Integer, Candidate> candidatesById;
+  private final List<Candidate> candidates;
+
+  /**
+   * Generates the dataset
+   * @param interviewCount
+   * @param interviewsPerApplication
+   * @param seed
+   */
+  public HarvestDataset(int interviewCount, int interviewsPerApplication, long seed) {
+    Random random = new Random(seed);
+    long now = System.currentTimeMillis();
+    int perApplication = Math.max(1, interviewsPerApplication);
+
+    List<Interviewer> interviewerPool = new ArrayList<>();
+    for(int id = 1; id <= INTERVIEWER_POOL_SIZE; id++) {
+      Interviewer interviewer = new Interviewer();
+      interviewer.setId(id);
+      interviewer.setName(FIRST_NAMES[id % FIRST_NAMES.length] + " " + LAST_NAMES[(id / FIRST_NAMES.length) % LAST_NAMES.length]);
+      interviewer.setEmail("interviewer" + id + "@example.com");
+      interviewerPool.add(interviewer);
+    }
+
+    this.interviews = new ArrayList<>(interviewCount);
+    this.interviewsById = new HashMap<>();
+    this.applications = new ArrayList<>();
+    this.applicationsById = new HashMap<>();
+    this.candidates = new ArrayList<>();
+    this.candidatesById = new HashMap<>();
+
+    for(int id = 1; id <= interviewCount; id++) {
+      int applicationId = (id - 1) / perApplication + 1;
+      if(!applicationsById.containsKey(applicationId)) {
+        addApplication(applicationId, random, now);
+      }
+
+      Interview interview = new Interview();
+      interview.setId(id);
+      interview.setApplicationId(applicationId);
+
+      Date createdAt = new Date(now - TimeUnit.MINUTES.toMillis(random.nextInt(30 * 24 * 60)));
+      interview.setCreatedAt(createdAt);
+      interview.setUpdatedAt(new Date(createdAt.getTime() + (long) (random.nextDouble() * (now - createdAt.getTime()))));
+
+      //Start on a quarter hour, between a day ago and a month from now
+      long startMinutes = (random.nextInt(31 * 24 * 4) - 24 * 4) * 15L;
+      long start = now - now % TimeUnit.MINUTES.toMillis(15) + TimeUnit.MINUTES.toMillis(startMinutes);
+      interview.setStartDate(new Date(start));
+      interview.setEndDate(new Date(start + TimeUnit.MINUTES.toMillis(45)));
+      interview.setLocation("Room " + (100 + random.nextInt(20)));
+      interview.setStatus("scheduled");
+
+      InterviewType interviewType = new InterviewType();
+      interviewType.setId(random.nextInt(INTERVIEW_TYPES.length) + 1);
+      interviewType.setName(INTERVIEW_TYPES[interviewType.getId() - 1]);
+      interview.setInterviewType(interviewType);
+
+      ArrayList<Interviewer> interviewers = new ArrayList<>();
+      int interviewerCount = 1 + random.nextInt(3);
+      for(int i = 0; i < interviewerCount; i++) {
+        Interviewer interviewer = interviewerPool.get(random.nextInt(interviewerPool.size()));
+        if(!interviewers.contains(interviewer)) {
+          interviewers.add(interviewer);
+        }
+      }
+      interview.setInterviewers(interviewers);
+
+      Organizer organizer = new Organizer();
+      organizer.setId(interviewers.get(0).getId());
+      organizer.setName(interviewers.get(0).getName());
+      interview.setOrganizer(organizer);
+
+      interviews.add(interview);
+      interviewsById.put(id, interview);
+    }
+  }
+
+  /**
+   * Returns every interview, in id order
+   * @return
+   */
+  public List<Interview> getInterviews() {
+    return Collections.unmodifiableList(interviews);
+  }
+
+  public Interview getInterview(int interviewId) {
+    return interviewsById.get(interviewId);
+  }
+
+  /**
+   * Returns every application, in id order
+   * @return
+   */
+  public List<Application> getApplications() {
+    return Collections.unmodifiableList(applications);
+  }
+
+  public Application getApplication(int applicationId) {
+    return applicationsById.get(applicationId);
+  }
+
+  /**
+   * Returns every candidate, in id order
+   * @return
+   */
+  public List<Candidate> getCandidates() {
+    return Collections.unmodifiableList(candidates);
+  }
+
+  public Candidate getCandidate(int candidateId) {
+    return candidatesById.get(candidateId);
+  }
+
+  /**
+   * Returns the names of the departments, whose ids are their position plus one
+   * @return
+   */
+  public static String[] getDepartments() {
+    return DEPARTMENTS.clone();
+  }
+
+  /**
+   * Private helper method for adding an application and its candidate, who share an id
+   * @param id
+   * @param random
+   * @param now
+   */
+  private void addApplication(int id, Random random, long now) {
+    Candidate candidate = new Candidate();
+    candidate.setId(id);
+    candidate.setFirstName(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]);
+    candidate.setLastName(LAST_NAMES[random.nextInt(LAST_NAMES.length)]);
+    candidate.setCompany("Company " + random.nextInt(1000));
+    candidate.setTitle(JOBS[random.nextInt(JOBS.length)]);
+    candidate.setCreatedAt(new Date(now - TimeUnit.DAYS.toMillis(30 + random.nextInt(60))));
+
+    ArrayList<Tuple<String, String>> emailAddresses = new ArrayList<>();
+    emailAddresses.add(new Tuple<>("candidate" + id + "@example.com", "personal"));
+    candidate.setEmailAddresses(emailAddresses);
+
+    ArrayList<Tuple<String, String>> phoneNumbers = new ArrayList<>();
+    phoneNumbers.add(new Tuple<>(String.format("555-%04d", id % 10000), "mobile"));
+    candidate.setPhoneNumbers(phoneNumbers);
+    candidate.setWebsites(new ArrayList<>());
+
+    Application application = new Application();
+    application.setId(id);
+    application.setCandidateId(id);
+    List<String> jobs = new ArrayList<>();
+    jobs.add(JOBS[random.nextInt(JOBS.length)]);
+    application.setJobs(jobs);
+
+    candidates.add(candidate);
+    candidatesById.put(id, candidate);
+    applications.add(application);
+    applicationsById.put(id, application);
+  }
+}
@@ -0,0 +1,498 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.simulator;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.symphony.clients.greenhouse.GreenhouseJsonEncoder;
+import com.symphony.configurations.simulator.IHarvestSimulatorConfigurationProvider;
+import com.symphony.formatters.DateUtil;
+import com.symphony.models.Application;
+import com.symphony.models.Candidate;
+import com.symphony.models.Interview;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Local stand-in for the Harvest API, served from the JDK's built in HTTP server
+ *
+ * Serves scheduled_interviews, applications, candidates and departments from a synthetic
+ * HarvestDataset with Harvest's Link header pagination, X-RateLimit headers and 429s, and
+ * a configurable delay on every response. Point IGreenhouseConfigurationProvider.getBaseURL()
+ * at getBaseURL() to run the clients and the bot against it with no network.
+ */
+
+public final class HarvestSimulator {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HarvestSimulator.class);
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private static final String API_PATH = "/v1/";
+  private static final int DEFAULT_PER_PAGE = 100;
+  private static final int MAX_PER_PAGE = 500;
+  private static final long RATE_LIMIT_WINDOW_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+  private final IHarvestSimulatorConfigurationProvider configurationProvider;
+  private final HarvestDataset dataset;
+  private final AtomicLong requestCount;
+  private final AtomicLong rateLimitedCount;
+
+  private HttpServer server;
+  private ExecutorService serverExecutor;
+
+  private long rateLimitWindowStart;
+  private int rateLimitWindowRequests;
+
+  public HarvestSimulator(IHarvestSimulatorConfigurationProvider configurationProvider) {
+    this(configurationProvider, new HarvestDataset(configurationProvider.getInterviewCount(),
+        configurationProvider.getInterviewsPerApplication(), configurationProvider.getRandomSeed()));
+  }
+
+  public HarvestSimulator(IHarvestSimulatorConfigurationProvider configurationProvider,
+      HarvestDataset dataset) {
+    this.configurationProvider = configurationProvider;
+    this.dataset = dataset;
+    this.requestCount = new AtomicLong();
+    this.rateLimitedCount = new AtomicLong();
+  }
+
+  /**
+   * Starts serving requests
+   */
+  public synchronized void start() {
+    if(server != null) {
+      return;
+    }
+
+    //Without TCP_NODELAY every response on a kept-alive connection waits out a delayed ACK,
+    //adding ~40ms of latency that isn't Harvest's
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+
+    try {
+      server = HttpServer.create(new InetSocketAddress("localhost", configurationProvider.getPort()), 0);
+    } catch (IOException exception) {
+      throw new RuntimeException("Error starting Harvest simulator on port: " +
+          configurationProvider.getPort(), exception);
+    }
+
+    serverExecutor = Executors.newFixedThreadPool(Math.max(1, configurationProvider.getServerThreads()));
+    server.setExecutor(serverExecutor);
+    server.createContext(API_PATH, this::handle);
+    server.start();
+
+    LOG.info("Harvest simulator serving " + dataset.getInterviews().size() + " interviews at " + getBaseURL());
+  }
+
+  /**
+   * Stops serving requests
+   */
+  public synchronized void stop() {
+    if(server == null) {
+      return;
+    }
+
+    server.stop(0);
+    serverExecutor.shutdownNow();
+    server = null;
+    serverExecutor = null;
+  }
+
+  /**
+   * Returns the URL to use as the Greenhouse base URL
+   * @return
+   */
+  public synchronized String getBaseURL() {
+    if(server == null) {
+      throw new RuntimeException("Harvest simulator is not running");
+    }
+    return "http://localhost:" + server.getAddress().getPort() + API_PATH;
+  }
+
+  public HarvestDataset getDataset() {
+    return dataset;
+  }
+
+  /**
+   * Returns how many requests have been received, including rate limited ones
+   * @return
+   */
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  /**
+   * Returns how many requests were answered with a 429
+   * @return
+   */
+  public long getRateLimitedCount() {
+    return rateLimitedCount.get();
+  }
+
+  /**
+   * Private helper method for answering a request
+   * @param exchange
+   * @throws IOException
+   */
+  private void handle(HttpExchange exchange) throws IOException {
+    requestCount.incrementAndGet();
+
+    try {
+      simulateLatency();
+
+      if(!"GET".equals(exchange.getRequestMethod())) {
+        sendStatus(exchange, 405);
+        return;
+      }
+
+      String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+      if(authorization == null || !authorization.startsWith("Basic ")) {
+        sendStatus(exchange, 401);
+        return;
+      }
+
+      if(!applyRateLimit(exchange)) {
+        rateLimitedCount.incrementAndGet();
+        sendStatus(exchange, 429);
+        return;
+      }
+
+      String[] path = exchange.getRequestURI().getPath().substring(API_PATH.length()).split("/");
+      Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+
+      switch(path[0]) {
+        case "scheduled_interviews":
+          if(path.length > 1) {
+            Interview interview = dataset.getInterview(parseId(path[1]));
+            if(interview == null) {
+              sendStatus(exchange, 404);
+            } else {
+              sendJson(exchange, stream -> GreenhouseJsonEncoder.writeInterview(stream, interview));
+            }
+          } else {
+            List<Interview> interviews = getPage(exchange, parameters,
+                filterInterviews(dataset.getInterviews(), parameters));
+            sendJson(exchange, stream -> GreenhouseJsonEncoder.writeInterviews(stream, interviews));
+          }
+          break;
+        case "applications":
+          if(path.length > 1) {
+            Application application = dataset.getApplication(parseId(path[1]));
+            if(application == null) {
+              sendStatus(exchange, 404);
+            } else {
+              sendJson(exchange, stream -> GreenhouseJsonEncoder.writeApplication(stream, application));
+            }
+          } else {
+            List<Application> applications = getPage(exchange, parameters, dataset.getApplications());
+            sendJson(exchange, stream -> GreenhouseJsonEncoder.writeApplications(stream, applications));
+          }
+          break;
+        case "candidates":
+          if(path.length > 1) {
+            Candidate candidate = dataset.getCandidate(parseId(path[1]));
+            if(candidate == null) {
+              sendStatus(exchange, 404);
+            } else {
+              sendJson(exchange, stream -> GreenhouseJsonEncoder.writeCandidate(stream, candidate));
+            }
+          } else {
+            List<Candidate> candidates = getPage(exchange, parameters,
+                filterCandidates(dataset.getCandidates(), parameters));
+            sendJson(exchange, stream -> GreenhouseJsonEncoder.writeCandidates(stream, candidates));
+          }
+          break;
+        case "departments":
+          sendJson(exchange, HarvestSimulator::writeDepartments);
+          break;
+        default:
+          sendStatus(exchange, 404);
+      }
+    } catch (RuntimeException exception) {
+      LOG.error("Error answering simulated request: " + exchange.getRequestURI(), exception);
+      sendStatus(exchange, 500);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Private helper method for counting a request against the current window
+   * Sets the X-RateLimit headers, plus Retry-After when the request is over the limit
+   * @param exchange
+   * @return whether the request is allowed
+   */
+  private boolean applyRateLimit(HttpExchange exchange) {
+    int limit = configurationProvider.getRateLimitPerWindow();
+    if(limit <= 0) {
+      return true;
+    }
+
+    long now = System.currentTimeMillis();
+    int remaining;
+    long windowEnd;
+    synchronized(this) {
+      if(now - rateLimitWindowStart >= RATE_LIMIT_WINDOW_MILLIS) {
+        rateLimitWindowStart = now;
+        rateLimitWindowRequests = 0;
+      }
+      rateLimitWindowRequests++;
+      remaining = limit - rateLimitWindowRequests;
+      windowEnd = rateLimitWindowStart + RATE_LIMIT_WINDOW_MILLIS;
+    }
+
+    exchange.getResponseHeaders().set("X-RateLimit-Limit", String.valueOf(limit));
+    exchange.getResponseHeaders().set("X-RateLimit-Remaining", String.valueOf(Math.max(0, remaining)));
+    if(remaining < 0) {
+      long retryAfterSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(windowEnd - now + 999));
+      exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+      return false;
+    }
+    return true;
+  }
+
+  private void simulateLatency() {
+    int latency = configurationProvider.getLatencyMillis();
+    int jitter = configurationProvider.getLatencyJitterMillis();
+    if(jitter > 0) {
+      latency += ThreadLocalRandom.current().nextInt(jitter + 1);
+    }
+    if(latency <= 0) {
+      return;
+    }
+
+    try {
+      Thread.sleep(latency);
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Private helper method for applying the created_after, updated_after, starts_after and
+   * starts_before filters
+   * @param interviews
+   * @param parameters
+   * @return
+   */
+  private static List<Interview> filterInterviews(List<Interview> interviews, Map<String, String> parameters) {
+    List<Predicate<Interview>> filters = new ArrayList<>();
+    Date createdAfter = parseDate(parameters.get("created_after"));
+    if(createdAfter != null) {
+      filters.add(interview -> interview.getCreatedAt().after(createdAfter));
+    }
+    Date updatedAfter = parseDate(parameters.get("updated_after"));
+    if(updatedAfter != null) {
+      filters.add(interview -> interview.getUpdatedAt().after(updatedAfter));
+    }
+    Date startsAfter = parseDate(parameters.get("starts_after"));
+    if(startsAfter != null) {
+      filters.add(interview -> interview.getStartDate().after(startsAfter));
+    }
+    Date startsBefore = parseDate(parameters.get("starts_before"));
+    if(startsBefore != null) {
+      filters.add(interview -> interview.getStartDate().before(startsBefore));
+    }
+    if(filters.isEmpty()) {
+      return interviews;
+    }
+
+    List<Interview> filtered = new ArrayList<>();
+    for(Interview interview : interviews) {
+      if(filters.stream().allMatch(filter -> filter.test(interview))) {
+        filtered.add(interview);
+      }
+    }
+    return filtered;
+  }
+
+  /**
+   * Private helper method for applying the candidate_ids filter
+   * @param candidates
+   * @param parameters
+   * @return
+   */
+  private List<Candidate> filterCandidates(List<Candidate> candidates, Map<String, String> parameters) {
+    String candidateIds = parameters.get("candidate_ids");
+    if(candidateIds == null || candidateIds.isEmpty()) {
+      return candidates;
+    }
+
+    List<Candidate> filtered = new ArrayList<>();
+    for(String candidateId : candidateIds.split(",")) {
+      Candidate candidate = dataset.getCandidate(parseId(candidateId));
+      if(candidate != null) {
+        filtered.add(candidate);
+      }
+    }
+    return filtered;
+  }
+
+  /**
+   * Private helper method for cutting out the requested page, setting the Link header
+   * to the next, prev and last pages the way Harvest does
+   * @param exchange
+   * @param parameters
+   * @param records
+   * @return
+   */
+  private <T> List<T> getPage(HttpExchange exchange, Map<String, String> parameters, List<T> records) {
+    int perPage = Math.min(MAX_PER_PAGE, Math.max(1, parseInt(parameters.get("per_page"), DEFAULT_PER_PAGE)));
+    int page = Math.max(1, parseInt(parameters.get("page"), 1));
+    int lastPage = Math.max(1, (records.size() + perPage - 1) / perPage);
+
+    StringBuilder link = new StringBuilder();
+    if(page < lastPage) {
+      appendLink(link, exchange, parameters, page + 1, "next");
+    }
+    if(page > 1) {
+      appendLink(link, exchange, parameters, page - 1, "prev");
+    }
+    appendLink(link, exchange, parameters, lastPage, "last");
+    exchange.getResponseHeaders().set("Link", link.toString());
+
+    int start = Math.min(records.size(), (page - 1) * perPage);
+    return records.subList(start, Math.min(records.size(), start + perPage));
+  }
+
+  private void appendLink(StringBuilder link, HttpExchange exchange, Map<String, String> parameters,
+      int page, String rel) {
+    Map<String, String> pageParameters = new LinkedHashMap<>(parameters);
+    pageParameters.put("page", String.valueOf(page));
+
+    StringBuilder url = new StringBuilder(getBaseURL())
+        .append(exchange.getRequestURI().getPath().substring(API_PATH.length()));
+    char separator = '?';
+    for(Map.Entry<String, String> parameter : pageParameters.entrySet()) {
+      url.append(separator).append(parameter.getKey()).append('=').append(parameter.getValue());
+      separator = '&';
+    }
+
+    link.append(link.length() == 0 ? "" : ",").append('<').append(url).append(">; rel=\"").append(rel).append('"');
+  }
+
+  private static void writeDepartments(OutputStream stream) throws IOException {
+    String[] departments = HarvestDataset.getDepartments();
+    try(JsonGenerator generator = JSON_FACTORY.createGenerator(stream, JsonEncoding.UTF8)) {
+      generator.writeStartArray();
+      for(int i = 0; i < departments.length; i++) {
+        generator.writeStartObject();
+        generator.writeNumberField("id", i + 1);
+        generator.writeStringField("name", departments[i]);
+        generator.writeNullField("parent_id");
+        generator.writeArrayFieldStart("child_ids");
+        generator.writeEndArray();
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+    }
+  }
+
+  private static void sendJson(HttpExchange exchange, BodyWriter bodyWriter) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+
+    //Length 0 streams the body chunked, so large pages are never buffered
+    exchange.sendResponseHeaders(200, 0);
+    try(OutputStream stream = exchange.getResponseBody()) {
+      bodyWriter.write(stream);
+    }
+  }
+
+  private static void sendStatus(HttpExchange exchange, int statusCode) throws IOException {
+    exchange.sendResponseHeaders(statusCode, -1);
+  }
+
+  private static Map<String, String> parseQuery(String query) {
+    Map<String, String> parameters = new LinkedHashMap<>();
+    if(query == null || query.isEmpty()) {
+      return parameters;
+    }
+
+    for(String pair : query.split("&")) {
+      int separator = pair.indexOf('=');
+      if(separator > 0) {
+        parameters.put(decode(pair.substring(0, separator)), decode(pair.substring(separator + 1)));
+      }
+    }
+    return parameters;
+  }
+
+  private static String decode(String value) {
+    try {
+      return URLDecoder.decode(value, "UTF-8");
+    } catch (UnsupportedEncodingException exception) {
+      throw new RuntimeException("UTF-8 not supported", exception);
+    }
+  }
+
+  private static Date parseDate(String value) {
+    return value == null || value.isEmpty() ? null : DateUtil.getDateFromEpochString(value);
+  }
+
+  private static int parseId(String value) {
+    return parseInt(value, -1);
+  }
+
+  private static int parseInt(String value, int defaultValue) {
+    if(value == null) {
+      return defaultValue;
+    }
+
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException exception) {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Writes a response body
+   */
+  private interface BodyWriter {
+    void write(OutputStream stream) throws IOException;
+  }
+}
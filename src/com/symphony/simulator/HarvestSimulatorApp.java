@@ -0,0 +1,115 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.simulator;
+
+import com.symphony.clients.greenhouse.GreenhouseClient;
+import com.symphony.configurations.greenhouse.GreenhouseConfigurationProvider;
+import com.symphony.configurations.simulator.HarvestSimulatorConfigurationProvider;
+import com.symphony.configurations.simulator.IHarvestSimulatorConfigurationProvider;
+import com.symphony.models.Interview;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures poll throughput against the local Harvest simulator
+ *
+ * Runs the same requests a bot poll makes - the upcoming schedule, then every application and
+ * candidate behind it - and logs how long each took. Pass the interview count as the first
+ * argument to try other dataset sizes, i.e. 100000
+ */
+
+public class HarvestSimulatorApp {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HarvestSimulatorApp.class);
+
+  public static void main(String[] args) {
+    int interviewCount = args.length > 0 ? Integer.parseInt(args[0]) : -1;
+    IHarvestSimulatorConfigurationProvider simulatorConfigurationProvider =
+        new HarvestSimulatorConfigurationProvider() {
+          @Override
+          public int getInterviewCount() {
+            return interviewCount > 0 ? interviewCount : super.getInterviewCount();
+          }
+        };
+
+    HarvestSimulator simulator = new HarvestSimulator(simulatorConfigurationProvider);
+    simulator.start();
+    String baseURL = simulator.getBaseURL();
+
+    GreenhouseClient greenhouseClient = new GreenhouseClient(new GreenhouseConfigurationProvider() {
+      @Override
+      public String getBaseURL() {
+        return baseURL;
+      }
+
+      @Override
+      public String getApiToken() {
+        return "simulator";
+      }
+    });
+
+    try {
+      long start = System.nanoTime();
+      ArrayList<Interview> interviews = greenhouseClient.getScheduledInterviewsStartingAfterNow();
+      long scheduleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+      Set<Integer> applicationIds = new HashSet<>();
+      for(Interview interview : interviews) {
+        applicationIds.add(interview.getApplicationId());
+      }
+
+      start = System.nanoTime();
+      int applicationCount = greenhouseClient.getApplications(applicationIds).size();
+      long applicationsMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+      //Simulated applications and candidates share ids
+      start = System.nanoTime();
+      int candidateCount = greenhouseClient.getCandidates(applicationIds).size();
+      long candidatesMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+      LOG.info("Schedule: " + interviews.size() + " interviews in " + scheduleMillis + "ms (" +
+          perSecond(interviews.size(), scheduleMillis) + "/s)");
+      LOG.info("Applications: " + applicationCount + " in " + applicationsMillis + "ms (" +
+          perSecond(applicationCount, applicationsMillis) + "/s)");
+      LOG.info("Candidates: " + candidateCount + " in " + candidatesMillis + "ms (" +
+          perSecond(candidateCount, candidatesMillis) + "/s)");
+      LOG.info("Simulator answered " + simulator.getRequestCount() + " requests, " +
+          simulator.getRateLimitedCount() + " of them rate limited");
+    } finally {
+      simulator.stop();
+    }
+  }
+
+  private static long perSecond(int count, long millis) {
+    return millis == 0 ? count : count * 1000L / millis;
+  }
+}
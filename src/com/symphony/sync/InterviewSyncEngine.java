@@ -0,0 +1,368 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.sync;
+
+import com.symphony.clients.greenhouse.GreenhouseJsonDecoder;
+import com.symphony.clients.greenhouse.GreenhouseJsonEncoder;
+import com.symphony.clients.greenhouse.IGreenhouseClient;
+import com.symphony.configurations.IConfigurationProvider;
+import com.symphony.formatters.DateUtil;
+import com.symphony.models.Interview;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps an in-memory copy of the upcoming interview schedule in sync with Greenhouse
+ *
+ * A full baseline download runs every minutesBetweenFullSyncs() - in between, only interviews
+ * updated after the watermark are fetched and merged in. Deleted interviews never show up in
+ * that feed, so each delta also re-downloads the interviews whose reminders can come due before
+ * the next poll and drops the ones Greenhouse no longer has. The watermark and the schedule are
+ * stored in the state directory so a restart resumes with delta polls.
+ */
+
+public class InterviewSyncEngine {
+
+  private static final Logger LOG = LoggerFactory.getLogger(InterviewSyncEngine.class);
+
+  private static final String STATE_FILE = "greenhouse-sync.properties";
+  private static final String SCHEDULE_FILE = "greenhouse-sync-schedule.json";
+  private static final String WATERMARK_KEY = "watermark";
+  private static final String LAST_BASELINE_KEY = "lastBaseline";
+
+  /** Overlap between consecutive delta windows so clock skew never hides an update */
+  private static final long WATERMARK_OVERLAP_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  private final IGreenhouseClient greenhouseClient;
+  private final IConfigurationProvider configurationProvider;
+  private final Clock clock;
+  private final File stateDirectory;
+
+  private final Map<Integer, Interview> schedule;
+  private Date watermark;
+  private Date lastBaseline;
+
+  public InterviewSyncEngine(IGreenhouseClient greenhouseClient,
+      IConfigurationProvider configurationProvider) {
+    this(greenhouseClient, configurationProvider, Clock.systemUTC());
+  }
+
+  /**
+   * @param greenhouseClient
+   * @param configurationProvider
+   * @param clock the time interviews are upcoming from, i.e. set back when replaying a recording
+   */
+  public InterviewSyncEngine(IGreenhouseClient greenhouseClient,
+      IConfigurationProvider configurationProvider, Clock clock) {
+    this.greenhouseClient = greenhouseClient;
+    this.configurationProvider = configurationProvider;
+    this.clock = clock;
+    this.stateDirectory = configurationProvider.getStateDirectory();
+    this.schedule = new ConcurrentHashMap<>();
+
+    loadState();
+  }
+
+  /**
+   * Brings the schedule up to date, running a full baseline if one is due
+   */
+  public synchronized void sync() {
+    Date now = new Date(clock.millis());
+
+    if(isBaselineDue(now)) {
+      runBaseline(now);
+    } else {
+      runDelta(now);
+      verifyUpcomingInterviews(now);
+    }
+
+    saveState();
+  }
+
+  /**
+   * Returns a snapshot of every upcoming interview in the schedule
+   * @return
+   */
+  public Collection<Interview> getSchedule() {
+    return Collections.unmodifiableCollection(new ArrayList<>(schedule.values()));
+  }
+
+  /**
+   * Returns the upcoming interview with the id, or null if it isn't in the schedule
+   * @param interviewId
+   * @return
+   */
+  public Interview getInterview(int interviewId) {
+    return schedule.get(interviewId);
+  }
+
+  public Date getWatermark() {
+    return watermark;
+  }
+
+  /**
+   * Merges an interview learned about outside of a sync, i.e. from a webhook
+   * The watermark is left alone so the next delta still covers anything missed before it
+   * @param interview
+   * @return true if the interview is upcoming and new or changed, and so needs handling
+   */
+  public synchronized boolean merge(Interview interview) {
+    if(interview.getStartDate() == null || interview.getStartDate().before(new Date(clock.millis()))) {
+      schedule.remove(interview.getId());
+      return false;
+    }
+
+    Interview previous = schedule.put(interview.getId(), interview);
+    return previous == null || !sameDate(previous.getUpdatedAt(), interview.getUpdatedAt());
+  }
+
+  /**
+   * Removes an interview that won't happen from the schedule
+   * @param interviewId
+   * @return true if the interview was in the schedule
+   */
+  public synchronized boolean remove(int interviewId) {
+    return schedule.remove(interviewId) != null;
+  }
+
+  private boolean isBaselineDue(Date now) {
+    if(watermark == null || lastBaseline == null) {
+      return true;
+    }
+
+    long minutesSinceBaseline = TimeUnit.MILLISECONDS.toMinutes(now.getTime() - lastBaseline.getTime());
+    return minutesSinceBaseline >= configurationProvider.minutesBetweenFullSyncs();
+  }
+
+  /**
+   * Replaces the schedule with a full download of every upcoming interview
+   */
+  private void runBaseline(Date now) {
+    ArrayList<Interview> interviews = greenhouseClient.getScheduledInterviewsStartingAfter(now);
+
+    //Updated in place rather than cleared and refilled, so readers never see a half-built schedule
+    Set<Integer> baselineIds = new HashSet<>();
+    Date newWatermark = new Date(now.getTime() - WATERMARK_OVERLAP_MILLIS);
+    for(Interview interview : interviews) {
+      schedule.put(interview.getId(), interview);
+      baselineIds.add(interview.getId());
+      newWatermark = laterOf(newWatermark, interview.getUpdatedAt());
+    }
+    schedule.keySet().retainAll(baselineIds);
+
+    watermark = newWatermark;
+    lastBaseline = now;
+    LOG.info("Baseline sync loaded " + schedule.size() + " upcoming interviews");
+  }
+
+  /**
+   * Merges interviews updated after the watermark into the schedule
+   */
+  private void runDelta(Date now) {
+    Date since = new Date(watermark.getTime() - WATERMARK_OVERLAP_MILLIS);
+    ArrayList<Interview> updatedInterviews = greenhouseClient.getScheduledInterviewsUpdatedAfter(since);
+
+    int changedCount = 0;
+    Date newWatermark = watermark;
+    for(Interview interview : updatedInterviews) {
+      newWatermark = laterOf(newWatermark, interview.getUpdatedAt());
+
+      //Updates to interviews that already started (i.e. feedback submitted) don't matter
+      if(interview.getStartDate() == null || interview.getStartDate().before(now)) {
+        schedule.remove(interview.getId());
+        continue;
+      }
+
+      Interview previous = schedule.put(interview.getId(), interview);
+      if(previous == null || !sameDate(previous.getUpdatedAt(), interview.getUpdatedAt())) {
+        changedCount++;
+      }
+    }
+
+    watermark = newWatermark;
+    removeStartedInterviews(now);
+    LOG.info("Delta sync merged " + changedCount + " of " + updatedInterviews.size() +
+        " updated interviews, " + schedule.size() + " upcoming");
+  }
+
+  /**
+   * Re-downloads the interviews whose reminders can come due before the next poll, dropping the
+   * ones Greenhouse no longer returns so a deleted interview isn't reminded about
+   * A failure keeps the schedule as it is - the next poll verifies it again
+   */
+  private void verifyUpcomingInterviews(Date now) {
+    Date verifyUntil = new Date(now.getTime() + TimeUnit.MINUTES.toMillis(getMinutesToVerify()));
+
+    ArrayList<Interview> upcomingInterviews;
+    try {
+      upcomingInterviews = greenhouseClient.getScheduledInterviewsStartingBetween(now, verifyUntil);
+    } catch (RuntimeException exception) {
+      LOG.error("Error verifying interviews starting before " + verifyUntil, exception);
+      return;
+    }
+
+    Set<Integer> upcomingIds = new HashSet<>();
+    for(Interview interview : upcomingInterviews) {
+      upcomingIds.add(interview.getId());
+      if(interview.getStartDate() != null && !interview.getStartDate().before(now)) {
+        schedule.put(interview.getId(), interview);
+      }
+    }
+
+    int removedCount = 0;
+    Iterator<Interview> iterator = schedule.values().iterator();
+    while(iterator.hasNext()) {
+      Interview interview = iterator.next();
+      if(interview.getStartDate().before(verifyUntil) && !upcomingIds.contains(interview.getId())) {
+        iterator.remove();
+        removedCount++;
+      }
+    }
+
+    if(removedCount > 0) {
+      LOG.info("Removed " + removedCount + " interviews starting before " + verifyUntil +
+          " that Greenhouse no longer has");
+    }
+  }
+
+  /**
+   * Returns how far ahead to verify interviews - far enough to cover every reminder, early
+   * reminder for offline interviewers included, that can come due before the next poll
+   * @return
+   */
+  private int getMinutesToVerify() {
+    int minutesBeforeToSendMessage = configurationProvider.minutesBeforeInterviewToSendMessage();
+    int minutesBetweenPolls = Math.max(minutesBeforeToSendMessage,
+        configurationProvider.minutesBetweenReconciliationPolls());
+    return minutesBeforeToSendMessage + 1 + configurationProvider.minutesEarlierForOfflineInterviewers() +
+        minutesBetweenPolls;
+  }
+
+  private void removeStartedInterviews(Date now) {
+    Iterator<Interview> iterator = schedule.values().iterator();
+    while(iterator.hasNext()) {
+      Date startDate = iterator.next().getStartDate();
+      if(startDate == null || startDate.before(now)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Restores the watermark and schedule saved by a previous run, if any
+   */
+  private void loadState() {
+    File stateFile = new File(stateDirectory, STATE_FILE);
+    File scheduleFile = new File(stateDirectory, SCHEDULE_FILE);
+    if(!stateFile.exists() || !scheduleFile.exists()) {
+      return;
+    }
+
+    try(InputStream stateStream = new FileInputStream(stateFile);
+        InputStream scheduleStream = new FileInputStream(scheduleFile)) {
+      Properties properties = new Properties();
+      properties.load(stateStream);
+
+      GreenhouseJsonDecoder.readInterviews(scheduleStream,
+          interview -> schedule.put(interview.getId(), interview));
+      removeStartedInterviews(new Date(clock.millis()));
+
+      watermark = DateUtil.getDateFromEpochString(properties.getProperty(WATERMARK_KEY));
+      lastBaseline = DateUtil.getDateFromEpochString(properties.getProperty(LAST_BASELINE_KEY));
+      LOG.info("Restored " + schedule.size() + " upcoming interviews with watermark " + watermark);
+    } catch (IOException | RuntimeException exception) {
+      LOG.error("Error restoring sync state, running a full baseline instead", exception);
+      schedule.clear();
+      watermark = null;
+      lastBaseline = null;
+    }
+  }
+
+  /**
+   * Saves the watermark and schedule, replacing the files atomically
+   */
+  private void saveState() {
+    if(!stateDirectory.isDirectory() && !stateDirectory.mkdirs()) {
+      LOG.error("Unable to create state directory " + stateDirectory);
+      return;
+    }
+
+    try {
+      File scheduleFile = new File(stateDirectory, SCHEDULE_FILE + ".tmp");
+      try(OutputStream stream = new FileOutputStream(scheduleFile)) {
+        GreenhouseJsonEncoder.writeInterviews(stream, schedule.values());
+      }
+
+      File stateFile = new File(stateDirectory, STATE_FILE + ".tmp");
+      Properties properties = new Properties();
+      properties.setProperty(WATERMARK_KEY, DateUtil.getEpochStringFromDate(watermark));
+      properties.setProperty(LAST_BASELINE_KEY, DateUtil.getEpochStringFromDate(lastBaseline));
+      try(OutputStream stream = new FileOutputStream(stateFile)) {
+        properties.store(stream, "Greenhouse sync state");
+      }
+
+      Files.move(scheduleFile.toPath(), new File(stateDirectory, SCHEDULE_FILE).toPath(),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      Files.move(stateFile.toPath(), new File(stateDirectory, STATE_FILE).toPath(),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException exception) {
+      LOG.error("Error saving sync state", exception);
+    }
+  }
+
+  private static Date laterOf(Date first, Date second) {
+    if(second == null || (first != null && !second.after(first))) {
+      return first;
+    }
+    return second;
+  }
+
+  private static boolean sameDate(Date first, Date second) {
+    return first == null ? second == null : first.equals(second);
+  }
+}
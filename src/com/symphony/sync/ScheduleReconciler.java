@@ -0,0 +1,243 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.sync;
+
+import com.symphony.models.Interview;
+import com.symphony.models.Interviewer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Works out the smallest set of scheduling operations that brings the reminders in line with the schedule
+ *
+ * An index of interview id to start date, updated at and interviewer set remembers what each reminder
+ * was scheduled for. Every poll the sync engine's schedule is diffed against the index: new interviews
+ * are added, interviews whose start date or panel changed are moved, and interviews that dropped out of
+ * the schedule - cancelled, or removed by a baseline - are cancelled. Unchanged interviews cost two map
+ * lookups and no HTTP calls, so reconciling tens of thousands of interviews takes milliseconds.
+ */
+
+public final class ScheduleReconciler {
+
+  public enum Operation {
+    ADD,
+    MOVE,
+    CANCEL,
+    NONE
+  }
+
+  private final Map<Integer, Entry> index;
+
+  public ScheduleReconciler() {
+    this.index = new HashMap<>();
+  }
+
+  /**
+   * Diffs the whole schedule against the index, and updates the index to match it
+   * @param schedule every upcoming interview
+   * @return the interviews to add or move, and the ids of the interviews to cancel
+   */
+  public synchronized Reconciliation reconcile(Collection<Interview> schedule) {
+    long start = System.nanoTime();
+    List<Interview> added = new ArrayList<>();
+    List<Interview> moved = new ArrayList<>();
+    List<Integer> cancelled = new ArrayList<>();
+
+    Set<Integer> seenIds = new HashSet<>(schedule.size() * 2);
+    for(Interview interview : schedule) {
+      seenIds.add(interview.getId());
+      switch(put(interview)) {
+        case ADD:
+          added.add(interview);
+          break;
+        case MOVE:
+          moved.add(interview);
+          break;
+        default:
+          break;
+      }
+    }
+
+    //Whatever the schedule no longer has won't happen - or already started
+    Iterator<Integer> iterator = index.keySet().iterator();
+    while(iterator.hasNext()) {
+      Integer interviewId = iterator.next();
+      if(!seenIds.contains(interviewId)) {
+        iterator.remove();
+        cancelled.add(interviewId);
+      }
+    }
+
+    int unchanged = schedule.size() - added.size() - moved.size();
+    return new Reconciliation(added, moved, cancelled, unchanged, System.nanoTime() - start);
+  }
+
+  /**
+   * Diffs a single interview against the index, i.e. one that arrived by webhook
+   * @param interview
+   * @return ADD, MOVE or NONE
+   */
+  public synchronized Operation reconcile(Interview interview) {
+    return put(interview);
+  }
+
+  /**
+   * Removes an interview from the index, i.e. one that was deleted
+   * @param interviewId
+   * @return CANCEL if the interview was indexed, otherwise NONE
+   */
+  public synchronized Operation remove(int interviewId) {
+    return index.remove(interviewId) != null ? Operation.CANCEL : Operation.NONE;
+  }
+
+  public synchronized int size() {
+    return index.size();
+  }
+
+  /**
+   * Indexes the interview, returning the operation that brings its reminder up to date
+   * @param interview
+   * @return
+   */
+  private Operation put(Interview interview) {
+    Entry entry = index.get(interview.getId());
+    if(entry == null) {
+      index.put(interview.getId(), new Entry(interview));
+      return Operation.ADD;
+    }
+
+    //Greenhouse bumps updated at on every change, so an unchanged interview skips the comparison
+    if(entry.updatedAt != null && entry.updatedAt.equals(interview.getUpdatedAt())) {
+      return Operation.NONE;
+    }
+
+    Entry updatedEntry = new Entry(interview);
+    index.put(interview.getId(), updatedEntry);
+    if(!sameDate(entry.startDate, updatedEntry.startDate) ||
+        !entry.interviewerEmails.equals(updatedEntry.interviewerEmails)) {
+      return Operation.MOVE;
+    }
+    return Operation.NONE;
+  }
+
+  private static boolean sameDate(Date first, Date second) {
+    return first == null ? second == null : first.equals(second);
+  }
+
+  /**
+   * What a reminder was last scheduled for
+   */
+  private static final class Entry {
+    private final Date startDate;
+    private final Date updatedAt;
+    private final Set<String> interviewerEmails;
+
+    private Entry(Interview interview) {
+      this.startDate = interview.getStartDate();
+      this.updatedAt = interview.getUpdatedAt();
+
+      Set<String> emails = new HashSet<>();
+      for(Interviewer interviewer : interview.getInterviewers()) {
+        if(interviewer.getEmail() != null) {
+          emails.add(interviewer.getEmail().toLowerCase(Locale.ROOT));
+        }
+      }
+      this.interviewerEmails = emails;
+    }
+  }
+
+  /**
+   * The operations one poll needs
+   */
+  public static final class Reconciliation {
+    private final List<Interview> added;
+    private final List<Interview> moved;
+    private final List<Integer> cancelled;
+    private final int unchanged;
+    private final long nanos;
+
+    private Reconciliation(List<Interview> added, List<Interview> moved, List<Integer> cancelled,
+        int unchanged, long nanos) {
+      this.added = Collections.unmodifiableList(added);
+      this.moved = Collections.unmodifiableList(moved);
+      this.cancelled = Collections.unmodifiableList(cancelled);
+      this.unchanged = unchanged;
+      this.nanos = nanos;
+    }
+
+    public List<Interview> getAdded() {
+      return added;
+    }
+
+    public List<Interview> getMoved() {
+      return moved;
+    }
+
+    public List<Integer> getCancelled() {
+      return cancelled;
+    }
+
+    /**
+     * Returns the interviews that were added or moved, and so need scheduling or sending
+     * @return
+     */
+    public List<Interview> getChangedInterviews() {
+      List<Interview> changed = new ArrayList<>(added.size() + moved.size());
+      changed.addAll(added);
+      changed.addAll(moved);
+      return changed;
+    }
+
+    public int getUnchanged() {
+      return unchanged;
+    }
+
+    public long getNanos() {
+      return nanos;
+    }
+
+    @Override
+    public String toString() {
+      return "Reconciliation{" +
+          "added=" + added.size() +
+          ", moved=" + moved.size() +
+          ", cancelled=" + cancelled.size() +
+          ", unchanged=" + unchanged +
+          ", micros=" + nanos / 1000 +
+          '}';
+    }
+  }
+}
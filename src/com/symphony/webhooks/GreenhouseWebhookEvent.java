@@ -0,0 +1,149 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.webhooks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.symphony.clients.greenhouse.GreenhouseJsonDecoder;
+import com.symphony.models.Interview;
+
+import java.io.IOException;
+
+/**
+ * An interview webhook Greenhouse pushed to us
+ *
+ * Carries the interview itself when Greenhouse sent the full scheduled_interview, otherwise
+ * only its id so the interview can be looked up
+ */
+
+public final class GreenhouseWebhookEvent {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  /** Sent by Greenhouse when a webhook is created, to check the endpoint is reachable */
+  public static final String PING_ACTION = "ping";
+
+  private final String action;
+  private final int interviewId;
+  private final Interview interview;
+
+  public GreenhouseWebhookEvent(String action, int interviewId, Interview interview) {
+    this.action = action;
+    this.interviewId = interviewId;
+    this.interview = interview;
+  }
+
+  public String getAction() {
+    return action;
+  }
+
+  /**
+   * Returns the id of the interview the event is about, or -1 if it isn't about an interview
+   * @return
+   */
+  public int getInterviewId() {
+    return interviewId;
+  }
+
+  /**
+   * Returns the interview as sent in the event, or null when only its id was sent
+   * @return
+   */
+  public Interview getInterview() {
+    return interview;
+  }
+
+  public boolean isPing() {
+    return PING_ACTION.equals(action);
+  }
+
+  /**
+   * Returns true if the event means the interview won't happen, i.e. interview_deleted
+   * @return
+   */
+  public boolean isDeletion() {
+    return action != null && (action.contains("delete") || action.contains("cancel"));
+  }
+
+  /**
+   * Parses a webhook body of the form {"action": ..., "payload": {"scheduled_interview": {...}}}
+   * An "interview" object in the payload is read the same way
+   * @param body
+   * @return
+   * @throws IOException
+   */
+  public static GreenhouseWebhookEvent parse(byte[] body) throws IOException {
+    String action = null;
+    int interviewId = -1;
+    Interview interview = null;
+
+    try(JsonParser parser = JSON_FACTORY.createParser(body)) {
+      if(parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Webhook body is not a JSON object");
+      }
+
+      while(parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+
+        if(field.equals("action")) {
+          action = parser.getValueAsString();
+        } else if(field.equals("payload") && parser.getCurrentToken() == JsonToken.START_OBJECT) {
+          while(parser.nextToken() == JsonToken.FIELD_NAME) {
+            String payloadField = parser.getCurrentName();
+            parser.nextToken();
+
+            if((payloadField.equals("scheduled_interview") || payloadField.equals("interview"))
+                && parser.getCurrentToken() == JsonToken.START_OBJECT) {
+              Interview payloadInterview = GreenhouseJsonDecoder.readInterview(parser);
+              interviewId = payloadInterview.getId();
+
+              //Deletions and other partial payloads only carry the id
+              if(payloadInterview.getStartDate() != null) {
+                interview = payloadInterview;
+              }
+            } else {
+              parser.skipChildren();
+            }
+          }
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+
+    return new GreenhouseWebhookEvent(action, interviewId, interview);
+  }
+
+  @Override
+  public String toString() {
+    return "GreenhouseWebhookEvent{" +
+        "action='" + action + '\'' +
+        ", interviewId=" + interviewId +
+        '}';
+  }
+}
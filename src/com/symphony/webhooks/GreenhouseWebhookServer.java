@@ -0,0 +1,236 @@
+/*
+ *
+ *
+ * Copyright 2016 Symphony Communication Services, LLC
+ *
+ * Licensed to Symphony Communication Services, LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package com.symphony.webhooks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.symphony.configurations.greenhouse.IGreenhouseConfigurationProvider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Embedded endpoint Greenhouse pushes interview webhooks to
+ *
+ * Every request must carry a "Signature: sha256 <hex>" header holding the HMAC-SHA256 of the
+ * body under the webhook's secret key, anything else is rejected. Verified events are
+ * acknowledged straight away and handed to the listener one at a time, in the order received.
+ */
+
+public final class GreenhouseWebhookServer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GreenhouseWebhookServer.class);
+
+  private static final String SIGNATURE_HEADER = "Signature";
+  private static final String SIGNATURE_PREFIX = "sha256 ";
+  private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+  /** Greenhouse's webhook bodies are small, anything much bigger isn't from Greenhouse */
+  private static final int MAX_BODY_BYTES = 1024 * 1024;
+
+  private final IGreenhouseConfigurationProvider configurationProvider;
+  private final Consumer<GreenhouseWebhookEvent> listener;
+  private final ExecutorService eventExecutor;
+
+  private HttpServer server;
+
+  public GreenhouseWebhookServer(IGreenhouseConfigurationProvider configurationProvider,
+      Consumer<GreenhouseWebhookEvent> listener) {
+    this.configurationProvider = configurationProvider;
+    this.listener = listener;
+    this.eventExecutor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "greenhouse-webhook-events");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Starts accepting webhooks
+   */
+  public synchronized void start() {
+    if(server != null) {
+      return;
+    }
+
+    try {
+      server = HttpServer.create(new InetSocketAddress(configurationProvider.getWebhookPort()), 0);
+    } catch (IOException exception) {
+      throw new RuntimeException("Error starting webhook server on port: " +
+          configurationProvider.getWebhookPort(), exception);
+    }
+
+    server.createContext(configurationProvider.getWebhookPath(), this::handle);
+    server.start();
+    LOG.info("Accepting Greenhouse webhooks on port " + server.getAddress().getPort() +
+        configurationProvider.getWebhookPath());
+  }
+
+  /**
+   * Stops accepting webhooks, dropping any events not yet handled
+   */
+  public synchronized void stop() {
+    if(server != null) {
+      server.stop(0);
+      server = null;
+    }
+    eventExecutor.shutdownNow();
+  }
+
+  /**
+   * Returns the port the server is listening on
+   * @return
+   */
+  public synchronized int getPort() {
+    if(server == null) {
+      throw new RuntimeException("Webhook server is not running");
+    }
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Private helper method for answering a webhook
+   * @param exchange
+   * @throws IOException
+   */
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      if(!"POST".equals(exchange.getRequestMethod())) {
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+
+      byte[] body = readBody(exchange.getRequestBody());
+      if(body == null) {
+        exchange.sendResponseHeaders(413, -1);
+        return;
+      }
+
+      String signature = exchange.getRequestHeaders().getFirst(SIGNATURE_HEADER);
+      if(!isSignatureValid(body, signature, configurationProvider.getWebhookSecretKey())) {
+        LOG.warn("Rejected webhook with an invalid signature from " + exchange.getRemoteAddress());
+        exchange.sendResponseHeaders(401, -1);
+        return;
+      }
+
+      GreenhouseWebhookEvent event;
+      try {
+        event = GreenhouseWebhookEvent.parse(body);
+      } catch (IOException exception) {
+        LOG.warn("Rejected unreadable webhook", exception);
+        exchange.sendResponseHeaders(400, -1);
+        return;
+      }
+
+      if(!event.isPing() && event.getInterviewId() > 0) {
+        eventExecutor.execute(() -> {
+          try {
+            listener.accept(event);
+          } catch (RuntimeException exception) {
+            LOG.error("Error handling webhook " + event, exception);
+          }
+        });
+      } else {
+        LOG.debug("Ignoring webhook " + event);
+      }
+      exchange.sendResponseHeaders(200, -1);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Returns true if the Signature header is the HMAC-SHA256 of the body under the secret key
+   * @param body
+   * @param signatureHeader
+   * @param secretKey
+   * @return
+   */
+  public static boolean isSignatureValid(byte[] body, String signatureHeader, String secretKey) {
+    if(signatureHeader == null || secretKey == null || secretKey.isEmpty() ||
+        !signatureHeader.startsWith(SIGNATURE_PREFIX)) {
+      return false;
+    }
+
+    byte[] expected = sign(body, secretKey).getBytes(StandardCharsets.US_ASCII);
+    byte[] actual = signatureHeader.substring(SIGNATURE_PREFIX.length()).trim().toLowerCase()
+        .getBytes(StandardCharsets.US_ASCII);
+
+    //Constant time, so the signature can't be guessed a byte at a time
+    return MessageDigest.isEqual(expected, actual);
+  }
+
+  /**
+   * Returns the hex HMAC-SHA256 of the body under the secret key
+   * @param body
+   * @param secretKey
+   * @return
+   */
+  public static String sign(byte[] body, String secretKey) {
+    try {
+      Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+      mac.init(new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+
+      StringBuilder hex = new StringBuilder();
+      for(byte b : mac.doFinal(body)) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException | InvalidKeyException exception) {
+      throw new RuntimeException("Error signing webhook body", exception);
+    }
+  }
+
+  /**
+   * Reads the whole body, or returns null if it is too big
+   */
+  private static byte[] readBody(InputStream stream) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] chunk = new byte[8192];
+    int read;
+    while((read = stream.read(chunk)) != -1) {
+      body.write(chunk, 0, read);
+      if(body.size() > MAX_BODY_BYTES) {
+        return null;
+      }
+    }
+    return body.toByteArray();
+  }
+}